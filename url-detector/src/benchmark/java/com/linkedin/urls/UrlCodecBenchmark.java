@@ -0,0 +1,97 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Compares the throughput of reading urls back from UrlCodec records with parsing them again from their text. It only
+ * prints the times, so it is run by hand with "gradle benchmark" and not by the tests.
+ *
+ * Each way is run for a number of rounds over the same urls, and the fastest round is printed, so the first rounds
+ * warm up the JIT. Each url's host is read, so that the parsed urls do the work a caller would make them do.
+ */
+public final class UrlCodecBenchmark {
+
+  private static final int URL_COUNT = 200000;
+  private static final int ROUNDS = 10;
+
+  private UrlCodecBenchmark() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : URL_COUNT;
+    List<Url> urls = detectUrls(count);
+    List<String> fullUrls = new ArrayList<String>(urls.size());
+    List<byte[]> records = new ArrayList<byte[]>(urls.size());
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (UrlRecordWriter writer = new UrlRecordWriter(outputStream)) {
+      for (Url url : urls) {
+        fullUrls.add(url.getFullUrl());
+        records.add(UrlCodec.encode(url));
+        writer.write(url);
+      }
+    }
+    byte[] stream = outputStream.toByteArray();
+
+    long parseTime = Long.MAX_VALUE;
+    long decodeTime = Long.MAX_VALUE;
+    long readTime = Long.MAX_VALUE;
+    //summed up and printed, so the JIT can't drop the work.
+    long hostLengths = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (String fullUrl : fullUrls) {
+        hostLengths += Url.create(fullUrl).getHost().length();
+      }
+      parseTime = Math.min(parseTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      for (byte[] record : records) {
+        hostLengths += UrlCodec.decode(record).getHost().length();
+      }
+      decodeTime = Math.min(decodeTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      try (UrlRecordReader reader = new UrlRecordReader(new ByteArrayInputStream(stream))) {
+        for (Url url = reader.read(); url != null; url = reader.read()) {
+          hostLengths += url.getHost().length();
+        }
+      }
+      readTime = Math.min(readTime, System.nanoTime() - start);
+    }
+
+    System.out.println(urls.size() + " urls, " + stream.length + " bytes of records, " + hostLengths + " host chars");
+    print("parse", parseTime, urls.size());
+    print("decode", decodeTime, urls.size());
+    print("read stream", readTime, urls.size());
+  }
+
+  private static void print(String name, long time, int count) {
+    System.out.println(String.format("%-12s %8.1f ns/url %12.0f urls/s", name, (double) time / count,
+        count * 1e9 / time));
+  }
+
+  private static List<Url> detectUrls(int count) {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      content.append("see https://user@www.host").append(i % 97).append(".com:8080/path/").append(i)
+          .append("?q=").append(i * 7).append("#frag and www.other").append(i).append(".org/x ");
+    }
+    return new UrlDetector(content.toString(), UrlDetectorOptions.Default).detect().subList(0, count);
+  }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+
+/**
+ * Checks ip addresses against a list of address ranges in CIDR notation, such as "10.0.0.0/8" or "2001:db8::/32".
+ *
+ * Each range is turned into its first and last address, and the ranges that overlap or touch are merged, so that the
+ * matcher is a sorted list of disjoint intervals; checking an address is a binary search. IPv4 ranges are kept as
+ * pairs of ints and IPv6 ranges as pairs of two longs, so hundreds of thousands of ranges stay compact. IPv4 addresses
+ * are the same as their IPv4-mapped IPv6 addresses (::ffff:a.b.c.d), like in NormalizedUrl.getHostBytes().
+ * A matcher is immutable and can be shared between threads.
+ */
+public final class CidrMatcher {
+
+  /**
+   * The high and low long of the IPv4-mapped IPv6 range ::ffff:0.0.0.0/96.
+   */
+  private static final long IPV4_MAPPED_HIGH = 0L;
+  private static final long IPV4_MAPPED_LOW = 0xffffL << 32;
+
+  private static final int IPV4_BITS = 32;
+  private static final int IPV6_BITS = 128;
+
+  /**
+   * The first and last address of each IPv4 interval, compared as unsigned ints and sorted.
+   */
+  private final int[] _ipv4Starts;
+  private final int[] _ipv4Ends;
+
+  /**
+   * The first and last address of each IPv6 interval, as high and low longs compared as unsigned, and sorted.
+   */
+  private final long[] _ipv6StartHighs;
+  private final long[] _ipv6StartLows;
+  private final long[] _ipv6EndHighs;
+  private final long[] _ipv6EndLows;
+
+  private CidrMatcher(int[] ipv4Starts, int[] ipv4Ends, long[] ipv6StartHighs, long[] ipv6StartLows,
+      long[] ipv6EndHighs, long[] ipv6EndLows) {
+    _ipv4Starts = ipv4Starts;
+    _ipv4Ends = ipv4Ends;
+    _ipv6StartHighs = ipv6StartHighs;
+    _ipv6StartLows = ipv6StartLows;
+    _ipv6EndHighs = ipv6EndHighs;
+    _ipv6EndLows = ipv6EndLows;
+  }
+
+  /**
+   * Creates a matcher from ranges such as "10.0.0.0/8", "2001:db8::/32" or "[2001:db8::]/32". An address without a
+   * prefix length is a range of only that address. The bits of the address after the prefix are ignored. The address
+   * is read like the host of a url, so IPv4 addresses can also be written in the other forms the detector knows.
+   * @param cidrs The ranges.
+   * @return The matcher.
+   * @throws IllegalArgumentException If one of the ranges is not valid.
+   */
+  public static CidrMatcher create(Collection<String> cidrs) {
+    Intervals ipv4 = new Intervals(cidrs.size());
+    Intervals ipv6 = new Intervals(0);
+    for (String cidr : cidrs) {
+      int slash = cidr.indexOf('/');
+      String address = slash == -1 ? cidr : cidr.substring(0, slash);
+      boolean isIpv6 = address.indexOf(':') != -1;
+      if (isIpv6 && !address.startsWith("[")) {
+        address = "[" + address + "]";
+      }
+      byte[] bytes = new HostNormalizer(address).getBytes();
+      if (bytes == null) {
+        throw new IllegalArgumentException("Invalid ip address in range: " + cidr);
+      }
+
+      int prefixLength;
+      try {
+        prefixLength = slash == -1 ? (isIpv6 ? IPV6_BITS : IPV4_BITS) : Integer.parseInt(cidr.substring(slash + 1));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid prefix length in range: " + cidr, e);
+      }
+      if (prefixLength < 0 || prefixLength > (isIpv6 ? IPV6_BITS : IPV4_BITS)) {
+        throw new IllegalArgumentException("Invalid prefix length in range: " + cidr);
+      }
+      if (!isIpv6) {
+        prefixLength += IPV6_BITS - IPV4_BITS;
+      }
+      addRange(ipv4, ipv6, toLong(bytes, 0), toLong(bytes, 8), prefixLength);
+    }
+    ipv4.sortAndMerge();
+    ipv6.sortAndMerge();
+
+    int[] ipv4Starts = new int[ipv4._size];
+    int[] ipv4Ends = new int[ipv4._size];
+    for (int i = 0; i < ipv4._size; i++) {
+      ipv4Starts[i] = (int) ipv4._startLows[i];
+      ipv4Ends[i] = (int) ipv4._endLows[i];
+    }
+    return new CidrMatcher(ipv4Starts, ipv4Ends, Arrays.copyOf(ipv6._startHighs, ipv6._size),
+        Arrays.copyOf(ipv6._startLows, ipv6._size), Arrays.copyOf(ipv6._endHighs, ipv6._size),
+        Arrays.copyOf(ipv6._endLows, ipv6._size));
+  }
+
+  /**
+   * @return The number of disjoint intervals left after merging the ranges.
+   */
+  public int size() {
+    return _ipv4Starts.length + _ipv6StartHighs.length;
+  }
+
+  /**
+   * @param address The IPv4 address, such as NormalizedUrl.getIpv4Address() returns.
+   * @return True if the address is in one of the ranges.
+   */
+  public boolean containsIpv4(int address) {
+    //find the last interval that starts at or before the address.
+    int low = 0;
+    int high = _ipv4Starts.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (Integer.compareUnsigned(_ipv4Starts[middle], address) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high >= 0 && Integer.compareUnsigned(address, _ipv4Ends[high]) <= 0;
+  }
+
+  /**
+   * @param addressHigh The first 8 bytes of the IPv6 address, such as NormalizedUrl.getIpv6AddressHigh() returns.
+   * @param addressLow The last 8 bytes of the IPv6 address.
+   * @return True if the address is in one of the ranges. IPv4-mapped addresses are checked as IPv4 addresses.
+   */
+  public boolean containsIpv6(long addressHigh, long addressLow) {
+    if (addressHigh == IPV4_MAPPED_HIGH && (addressLow & ~0xffffffffL) == IPV4_MAPPED_LOW) {
+      return containsIpv4((int) addressLow);
+    }
+    int low = 0;
+    int high = _ipv6StartHighs.length - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (compare(_ipv6StartHighs[middle], _ipv6StartLows[middle], addressHigh, addressLow) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high >= 0 && compare(addressHigh, addressLow, _ipv6EndHighs[high], _ipv6EndLows[high]) <= 0;
+  }
+
+  /**
+   * @param url The url to check.
+   * @return True if the host of the url is an ip address that is in one of the ranges. False if the host is not an ip
+   *     address.
+   */
+  public boolean contains(NormalizedUrl url) {
+    return url.getHostBytes() != null && containsIpv6(url.getIpv6AddressHigh(), url.getIpv6AddressLow());
+  }
+
+  /**
+   * Adds the range of the prefix to the IPv4 intervals, the IPv6 intervals or both.
+   */
+  private static void addRange(Intervals ipv4, Intervals ipv6, long high, long low, int prefixLength) {
+    long highMask = prefixLength >= 64 ? -1L : prefixLength == 0 ? 0 : -1L << (64 - prefixLength);
+    long lowMask = prefixLength <= 64 ? 0 : prefixLength == IPV6_BITS ? -1L : -1L << (IPV6_BITS - prefixLength);
+    long startHigh = high & highMask;
+    long startLow = low & lowMask;
+    long endHigh = startHigh | ~highMask;
+    long endLow = startLow | ~lowMask;
+
+    boolean isInMappedRange = startHigh == IPV4_MAPPED_HIGH && endHigh == IPV4_MAPPED_HIGH
+        && (startLow & ~0xffffffffL) == IPV4_MAPPED_LOW && (endLow & ~0xffffffffL) == IPV4_MAPPED_LOW;
+    if (isInMappedRange) {
+      ipv4.add(0, startLow & 0xffffffffL, 0, endLow & 0xffffffffL);
+      return;
+    }
+    //the ranges are aligned, so a range that is not inside the mapped range either holds all of it or none of it.
+    if (compare(startHigh, startLow, IPV4_MAPPED_HIGH, IPV4_MAPPED_LOW) <= 0
+        && compare(endHigh, endLow, IPV4_MAPPED_HIGH, IPV4_MAPPED_LOW | 0xffffffffL) >= 0) {
+      ipv4.add(0, 0, 0, 0xffffffffL);
+    }
+    ipv6.add(startHigh, startLow, endHigh, endLow);
+  }
+
+  /**
+   * @return The 8 bytes at the offset, big endian.
+   */
+  static long toLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = offset; i < offset + 8; i++) {
+      value = value << 8 | (bytes[i] & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * Compares two 128 bit numbers as unsigned.
+   */
+  private static int compare(long high1, long low1, long high2, long low2) {
+    int comparison = Long.compareUnsigned(high1, high2);
+    return comparison != 0 ? comparison : Long.compareUnsigned(low1, low2);
+  }
+
+  /**
+   * The intervals of 128 bit numbers collected while creating a matcher. IPv4 intervals only use the low longs.
+   */
+  private static final class Intervals {
+    private long[] _startHighs;
+    private long[] _startLows;
+    private long[] _endHighs;
+    private long[] _endLows;
+    private int _size = 0;
+
+    Intervals(int capacity) {
+      capacity = Math.max(capacity, 4);
+      _startHighs = new long[capacity];
+      _startLows = new long[capacity];
+      _endHighs = new long[capacity];
+      _endLows = new long[capacity];
+    }
+
+    void add(long startHigh, long startLow, long endHigh, long endLow) {
+      if (_size == _startHighs.length) {
+        int capacity = _size * 2;
+        _startHighs = Arrays.copyOf(_startHighs, capacity);
+        _startLows = Arrays.copyOf(_startLows, capacity);
+        _endHighs = Arrays.copyOf(_endHighs, capacity);
+        _endLows = Arrays.copyOf(_endLows, capacity);
+      }
+      _startHighs[_size] = startHigh;
+      _startLows[_size] = startLow;
+      _endHighs[_size] = endHigh;
+      _endLows[_size] = endLow;
+      _size++;
+    }
+
+    /**
+     * Sorts the intervals by start, and merges the ones that overlap or touch.
+     */
+    void sortAndMerge() {
+      Integer[] order = new Integer[_size];
+      for (int i = 0; i < _size; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer first, Integer second) {
+          return CidrMatcher.compare(_startHighs[first], _startLows[first], _startHighs[second], _startLows[second]);
+        }
+      });
+
+      long[] startHighs = new long[_size];
+      long[] startLows = new long[_size];
+      long[] endHighs = new long[_size];
+      long[] endLows = new long[_size];
+      int size = 0;
+      for (int index : order) {
+        if (size > 0 && isAdjacentOrOverlapping(endHighs[size - 1], endLows[size - 1], _startHighs[index],
+            _startLows[index])) {
+          if (compare(_endHighs[index], _endLows[index], endHighs[size - 1], endLows[size - 1]) > 0) {
+            endHighs[size - 1] = _endHighs[index];
+            endLows[size - 1] = _endLows[index];
+          }
+          continue;
+        }
+        startHighs[size] = _startHighs[index];
+        startLows[size] = _startLows[index];
+        endHighs[size] = _endHighs[index];
+        endLows[size] = _endLows[index];
+        size++;
+      }
+      _startHighs = startHighs;
+      _startLows = startLows;
+      _endHighs = endHighs;
+      _endLows = endLows;
+      _size = size;
+    }
+
+    /**
+     * @return True if the interval starting at start begins at most one after the interval ending at end.
+     */
+    private static boolean isAdjacentOrOverlapping(long endHigh, long endLow, long startHigh, long startLow) {
+      if (compare(startHigh, startLow, endHigh, endLow) <= 0) {
+        return true;
+      }
+      //end + 1, unless end is the highest number.
+      long nextLow = endLow + 1;
+      long nextHigh = nextLow == 0 ? endHigh + 1 : endHigh;
+      boolean isMax = endHigh == -1L && endLow == -1L;
+      return !isMax && nextHigh == startHigh && nextLow == startLow;
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import com.linkedin.urls.detection.UrlHandler;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A small, immutable form of a Url for holding large numbers of urls. It keeps a reference to the text the url was
+ * found in and a single array with the location of the url and of each of its parts in that text. Many CompactUrls
+ * share the same text, so no characters are copied per url.
+ *
+ * The parts are returned as CharSequence views of the text and have the same values as the matching Url getters. Use
+ * toString() on a part, or toUrl(), when a String or the full Url object is needed.
+ */
+public final class CompactUrl {
+
+  private static final String DEFAULT_SCHEME = "http";
+  private static final String DEFAULT_PATH = "/";
+
+  /**
+   * Indices of the start and end of the url in _offsets. The index of each part is stored after them, at
+   * PARTS + urlPart.ordinal().
+   */
+  private static final int START = 0;
+  private static final int END = 1;
+  private static final int PARTS = 2;
+
+  /**
+   * The text the url is a range of.
+   */
+  private final String _source;
+
+  /**
+   * The start and end of the url, then the index of each part, all relative to the start of _source. A part that
+   * doesn't exist has the index -1.
+   */
+  private final int[] _offsets;
+
+  private CompactUrl(String source, int[] offsets) {
+    _source = source;
+    _offsets = offsets;
+  }
+
+  /**
+   * Creates a compact url out of the result of the UrlDetector, for use inside of a UrlHandler.
+   * @param source The text the url was detected in.
+   * @param urlMarker The marker of the detected url.
+   * @param start The index of the url in the source, or -1 if the url is not an exact copy of the source.
+   */
+  public static CompactUrl create(String source, UrlMarker urlMarker, int start) {
+    if (start == -1) {
+      source = urlMarker.getOriginalUrl();
+      start = 0;
+    }
+    int[] offsets = new int[PARTS + UrlPart.values().length];
+    offsets[START] = start;
+    offsets[END] = start + urlMarker.getOriginalUrl().length();
+    for (UrlPart urlPart : UrlPart.values()) {
+      int index = urlMarker.indexOf(urlPart);
+      offsets[PARTS + urlPart.ordinal()] = index == -1 ? -1 : start + index;
+    }
+    return new CompactUrl(source, offsets);
+  }
+
+  /**
+   * Creates a compact url with the same parts as the url.
+   */
+  public static CompactUrl create(Url url) {
+    return create(url.getOriginalUrl(), url.getUrlMarker(), 0);
+  }
+
+  /**
+   * Detects the urls in the content. All of the returned urls share the content instead of copying it.
+   * @param content The content to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting the content.
+   * @return The detected urls, in the order they were found.
+   */
+  public static List<CompactUrl> detect(final String content, UrlDetectorOptions options) {
+    final List<CompactUrl> urls = new ArrayList<CompactUrl>();
+    new UrlDetector(content, options).detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        urls.add(create(content, urlMarker, start));
+        return true;
+      }
+    });
+    return urls;
+  }
+
+  /**
+   * @return The text this url is a range of. It may contain other urls.
+   */
+  public String getSource() {
+    return _source;
+  }
+
+  /**
+   * @return The index in the source of the first character of the url.
+   */
+  public int getStart() {
+    return _offsets[START];
+  }
+
+  /**
+   * @return The index in the source right after the last character of the url.
+   */
+  public int getEnd() {
+    return _offsets[END];
+  }
+
+  /**
+   * @param urlPart The part you want the index of.
+   * @return The index of the part in the source, or -1 if the url doesn't have that part.
+   */
+  public int indexOf(UrlPart urlPart) {
+    return _offsets[PARTS + urlPart.ordinal()];
+  }
+
+  /**
+   * @return The url as it appears in the source, same as Url.getOriginalUrl().
+   */
+  public CharSequence getOriginalUrl() {
+    return new StringSlice(_source, getStart(), getEnd());
+  }
+
+  public CharSequence getScheme() {
+    int index = indexOf(UrlPart.SCHEME);
+    if (index == -1) {
+      return _source.startsWith("//", getStart()) ? "" : DEFAULT_SCHEME;
+    }
+    int end = endOf(UrlPart.SCHEME);
+    int colon = _source.indexOf(':', index);
+    return new StringSlice(_source, index, colon != -1 && colon < end ? colon : end);
+  }
+
+  public CharSequence getUsername() {
+    int index = indexOf(UrlPart.USERNAME_PASSWORD);
+    if (index == -1) {
+      return "";
+    }
+    int end = trimColons(index, endOf(UrlPart.USERNAME_PASSWORD) - 1);
+    int colon = indexOfColon(index, end);
+    if (colon == -1) {
+      return new StringSlice(_source, index, end);
+    }
+    return indexOfColon(colon + 1, end) == -1 ? new StringSlice(_source, index, colon) : "";
+  }
+
+  public CharSequence getPassword() {
+    int index = indexOf(UrlPart.USERNAME_PASSWORD);
+    if (index == -1) {
+      return "";
+    }
+    int end = trimColons(index, endOf(UrlPart.USERNAME_PASSWORD) - 1);
+    int colon = indexOfColon(index, end);
+    if (colon == -1 || indexOfColon(colon + 1, end) != -1) {
+      return "";
+    }
+    return new StringSlice(_source, colon + 1, end);
+  }
+
+  /**
+   * @return The host of the url, or null if it has none, such as an opaque url like a data: uri.
+   */
+  public CharSequence getHost() {
+    int index = indexOf(UrlPart.HOST);
+    if (index == -1) {
+      return null;
+    }
+    int end = endOf(UrlPart.HOST);
+    if (indexOf(UrlPart.PORT) != -1) {
+      end--;
+    }
+    return new StringSlice(_source, index, end);
+  }
+
+  /**
+   * @return The port of the url, the default port of the scheme if there is none, or -1 if neither is known.
+   */
+  public int getPort() {
+    int index = indexOf(UrlPart.PORT);
+    int end = index == -1 ? -1 : endOf(UrlPart.PORT);
+    if (index != -1 && end > index) {
+      try {
+        return Integer.parseInt(_source.substring(index, end));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    return Url.getDefaultPort(getScheme().toString());
+  }
+
+  public CharSequence getPath() {
+    return exists(UrlPart.PATH) ? part(UrlPart.PATH) : DEFAULT_PATH;
+  }
+
+  public CharSequence getQuery() {
+    return exists(UrlPart.QUERY) ? part(UrlPart.QUERY) : "";
+  }
+
+  public CharSequence getFragment() {
+    return exists(UrlPart.FRAGMENT) ? part(UrlPart.FRAGMENT) : "";
+  }
+
+  /**
+   * Creates the full Url object. Nothing is cached, so each call creates a new Url.
+   */
+  public Url toUrl() {
+    int start = getStart();
+    UrlMarker urlMarker = new UrlMarker();
+    urlMarker.setOriginalUrl(_source.substring(start, getEnd()));
+    for (UrlPart urlPart : UrlPart.values()) {
+      int index = indexOf(urlPart);
+      urlMarker.setIndex(urlPart, index == -1 ? -1 : index - start);
+    }
+    return urlMarker.createUrl();
+  }
+
+  /**
+   * @return The same value as Url.toString().
+   */
+  @Override
+  public String toString() {
+    return toUrl().toString();
+  }
+
+  private boolean exists(UrlPart urlPart) {
+    return indexOf(urlPart) != -1;
+  }
+
+  private CharSequence part(UrlPart urlPart) {
+    return new StringSlice(_source, indexOf(urlPart), endOf(urlPart));
+  }
+
+  /**
+   * @return The index of the next existing part after this one, or the end of the url.
+   */
+  private int endOf(UrlPart urlPart) {
+    for (UrlPart nextPart = urlPart.getNextPart(); nextPart != null; nextPart = nextPart.getNextPart()) {
+      int index = indexOf(nextPart);
+      if (index != -1) {
+        return index;
+      }
+    }
+    return getEnd();
+  }
+
+  /**
+   * Moves the end back over trailing colons, which String.split() ignores when Url splits the username and password.
+   */
+  private int trimColons(int start, int end) {
+    while (end > start && _source.charAt(end - 1) == ':') {
+      end--;
+    }
+    return end;
+  }
+
+  private int indexOfColon(int start, int end) {
+    int colon = _source.indexOf(':', start);
+    return colon < end ? colon : -1;
+  }
+}
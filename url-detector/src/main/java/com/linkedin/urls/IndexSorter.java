@@ -0,0 +1,72 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+/**
+ * Sorts a range of indexes of data kept in arrays of primitives, such as offsets into a byte array or parallel arrays
+ * of keys and values, which Arrays.sort() can't sort without boxing them. A subclass compares and swaps the entries
+ * at two indexes, so it decides how the data is laid out.
+ *
+ * The sort is a quicksort that takes the middle entry as the pivot and ends with an insertion sort of the short
+ * ranges. It is not stable, so entries that must keep their order have to compare by their index as well. A sorter
+ * holds no state of its own, so different ranges of the same data can be sorted by different threads.
+ */
+abstract class IndexSorter {
+
+  /**
+   * Ranges up to this long are sorted with an insertion sort.
+   */
+  private static final int INSERTION_SORT_LENGTH = 16;
+
+  /**
+   * @return A negative number, zero or a positive number if the entry at i is less than, equal to or greater than
+   *     the entry at j.
+   */
+  abstract int compare(int i, int j);
+
+  abstract void swap(int i, int j);
+
+  /**
+   * Sorts the entries in [low, high].
+   */
+  final void sort(int low, int high) {
+    while (high - low > INSERTION_SORT_LENGTH) {
+      //the pivot is kept at low while the rest of the range is split around it.
+      swap(low, (low + high) >>> 1);
+      int i = low + 1;
+      int j = high;
+      while (i <= j) {
+        while (i <= j && compare(i, low) < 0) {
+          i++;
+        }
+        while (compare(j, low) > 0) {
+          j--;
+        }
+        if (i <= j) {
+          swap(i++, j--);
+        }
+      }
+      swap(low, j);
+      //recurse into the smaller side and loop over the larger one, so the stack stays shallow.
+      if (j - low < high - i) {
+        sort(low, j - 1);
+        low = i;
+      } else {
+        sort(i, high);
+        high = j - 1;
+      }
+    }
+    for (int i = low + 1; i <= high; i++) {
+      for (int j = i; j > low && compare(j, j - 1) < 0; j--) {
+        swap(j, j - 1);
+      }
+    }
+  }
+}
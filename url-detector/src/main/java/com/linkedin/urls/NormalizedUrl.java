@@ -17,11 +17,26 @@ import java.net.MalformedURLException;
  */
 public class NormalizedUrl extends Url {
 
+  /**
+   * The number of bytes before the IPv4 address in an IPv4-mapped IPv6 address: ten zeros and two 0xff.
+   */
+  private static final int IPV4_MAPPED_PREFIX_LENGTH = 12;
+
   private boolean _isPopulated = false;
   private byte[] _hostBytes;
+  private final QueryNormalizer _queryNormalizer;
+  private boolean _isQueryNormalized = false;
 
   public NormalizedUrl(UrlMarker urlMarker) {
+    this(urlMarker, null);
+  }
+
+  /**
+   * @param queryNormalizer Normalizes the query as well, or null to keep the query as is.
+   */
+  public NormalizedUrl(UrlMarker urlMarker, QueryNormalizer queryNormalizer) {
     super(urlMarker);
+    _queryNormalizer = queryNormalizer;
   }
 
   /**
@@ -31,6 +46,13 @@ public class NormalizedUrl extends Url {
     return Url.create(url).normalize();
   }
 
+  /**
+   * Returns a normalized url given a single url, with the query normalized by the query normalizer as well.
+   */
+  public static NormalizedUrl create(String url, QueryNormalizer queryNormalizer) throws MalformedURLException {
+    return Url.create(url).normalize(queryNormalizer);
+  }
+
   @Override
   public String getHost() {
     if (getRawHost() == null) {
@@ -39,14 +61,124 @@ public class NormalizedUrl extends Url {
     return getRawHost();
   }
 
+  /**
+   * Returns the normalized path, or the path as is for an opaque url, such as a data: uri, whose path isn't made of
+   * segments.
+   */
   @Override
   public String getPath() {
+    if (isOpaque()) {
+      return super.getPath();
+    }
     if (getRawPath() == null) {
       setRawPath(new PathNormalizer().normalizePath(super.getPath()));
     }
     return getRawPath();
   }
 
+  /**
+   * Returns the query normalized by the query normalizer, or the query as is if there is no query normalizer.
+   */
+  @Override
+  public String getQuery() {
+    if (_queryNormalizer == null) {
+      return super.getQuery();
+    }
+    if (!_isQueryNormalized) {
+      setRawQuery(_queryNormalizer.normalizeQuery(super.getQuery()));
+      _isQueryNormalized = true;
+    }
+    return getRawQuery();
+  }
+
+  /**
+   * Returns the public suffix of the host, such as "co.uk" for www.linkedin.co.uk, using the default
+   * PublicSuffixList. Returns null if the host is an ip address or not a valid host name.
+   */
+  public CharSequence getPublicSuffix() {
+    String host = getHost();
+    return host == null || getHostBytes() != null ? null : PublicSuffixList.getDefault().getPublicSuffix(host);
+  }
+
+  /**
+   * Returns the registrable domain of the host, which is the public suffix and the label before it, such as
+   * "linkedin.co.uk" for www.linkedin.co.uk. Returns null if the host is an ip address, is itself a public suffix or
+   * is not a valid host name.
+   */
+  public CharSequence getRegistrableDomain() {
+    String host = getHost();
+    return host == null || getHostBytes() != null ? null : PublicSuffixList.getDefault().getRegistrableDomain(host);
+  }
+
+  /**
+   * Returns a key for the url in the style of a SURT (Sort-friendly URI Reordering Transform), such as
+   * "com,example,www)/path?query" for http://www.Example.com/path?query. The labels of the host are reversed, so all of
+   * the urls of a domain sort together and can be read with a range scan over the keys starting with "com,example,".
+   * The scheme, the username and password, and the fragment are left out. A port is kept after the host, unless it is
+   * the default port of the scheme, as in "com,example:8080)/". An ip address is kept in the usual order.
+   */
+  public String getSurtKey() {
+    String host = getHost();
+    if (host == null) {
+      host = "";
+    }
+    String path = getPath();
+    String query = getQuery();
+    int port = getShownPort();
+    StringBuilder key = new StringBuilder(host.length() + path.length() + query.length() + 8);
+    if (getHostBytes() != null) {
+      key.append(host);
+    } else {
+      //one pass from the end of the host, writing each label as soon as the dot before it is found.
+      int labelEnd = host.length();
+      for (int i = labelEnd - 1; i >= -1; i--) {
+        if (i == -1 || host.charAt(i) == '.') {
+          if (labelEnd < host.length()) {
+            key.append(',');
+          }
+          for (int j = i + 1; j < labelEnd; j++) {
+            char c = host.charAt(j);
+            key.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+          }
+          labelEnd = i;
+        }
+      }
+    }
+    if (port != 0) {
+      key.append(':').append(port);
+    }
+    return key.append(')').append(path).append(query).toString();
+  }
+
+  /**
+   * Returns where each label of the host starts in getHost(), from left to right, followed by the length of the host
+   * plus one. Label i is host.substring(offsets[i], offsets[i + 1] - 1), so www.example.com gives {0, 4, 12, 16}. This
+   * is for callers that build their own keys from the labels without splitting the host. An ip address is one label,
+   * and a url without a host gives {1}.
+   */
+  public int[] getHostLabelOffsets() {
+    String host = getHost();
+    if (host == null) {
+      return new int[] {1};
+    }
+    boolean isIp = getHostBytes() != null;
+    int labels = 1;
+    for (int i = 0; !isIp && i < host.length(); i++) {
+      if (host.charAt(i) == '.') {
+        labels++;
+      }
+    }
+    int[] offsets = new int[labels + 1];
+    int label = 1;
+    for (int i = 0; !isIp && i < host.length(); i++) {
+      if (host.charAt(i) == '.') {
+        offsets[label++] = i + 1;
+      }
+    }
+    offsets[labels] = host.length() + 1;
+    return offsets;
+  }
+
   /**
    * Returns the byte representation of the ip address. If the host is not an ip address, it returns null.
    */
@@ -58,6 +190,69 @@ public class NormalizedUrl extends Url {
     return _hostBytes;
   }
 
+  /**
+   * @return True if the host is an IPv4 address. See getIpv4Address().
+   */
+  public boolean isIpv4() {
+    byte[] bytes = getHostBytes();
+    if (bytes == null) {
+      return false;
+    }
+    for (int i = 0; i < IPV4_MAPPED_PREFIX_LENGTH - 2; i++) {
+      if (bytes[i] != 0) {
+        return false;
+      }
+    }
+    return bytes[IPV4_MAPPED_PREFIX_LENGTH - 2] == (byte) 0xff && bytes[IPV4_MAPPED_PREFIX_LENGTH - 1] == (byte) 0xff;
+  }
+
+  /**
+   * Returns the IPv4 address of the host as an int, without creating a byte array. The first part of the dotted form
+   * is the highest byte, so 1.2.3.4 is 0x01020304.
+   * @throws IllegalStateException If the host is not an IPv4 address.
+   */
+  public int getIpv4Address() {
+    if (!isIpv4()) {
+      throw new IllegalStateException("The host is not an IPv4 address: " + getHost());
+    }
+    return (int) CidrMatcher.toLong(getHostBytes(), 8);
+  }
+
+  /**
+   * Returns the first 8 bytes of the IPv6 address of the host as a long. An IPv4 address is returned as its
+   * IPv4-mapped IPv6 address, ::ffff:a.b.c.d, like getHostBytes() does.
+   * @throws IllegalStateException If the host is not an ip address.
+   */
+  public long getIpv6AddressHigh() {
+    return CidrMatcher.toLong(getIpHostBytes(), 0);
+  }
+
+  /**
+   * Returns the last 8 bytes of the IPv6 address of the host as a long. See getIpv6AddressHigh().
+   * @throws IllegalStateException If the host is not an ip address.
+   */
+  public long getIpv6AddressLow() {
+    return CidrMatcher.toLong(getIpHostBytes(), 8);
+  }
+
+  private byte[] getIpHostBytes() {
+    byte[] bytes = getHostBytes();
+    if (bytes == null) {
+      throw new IllegalStateException("The host is not an ip address: " + getHost());
+    }
+    return bytes;
+  }
+
+  /**
+   * Sets the host to the result of normalizing the same host earlier, so that it isn't normalized again.
+   */
+  void setNormalizedHost(HostNormalizer hostNormalizer) {
+    setRawHost(hostNormalizer.getNormalizedHost());
+    byte[] bytes = hostNormalizer.getBytes();
+    _hostBytes = bytes == null ? null : bytes.clone();
+    _isPopulated = true;
+  }
+
   private void populateHostAndHostBytes() {
     if (!_isPopulated) {
       HostNormalizer hostNormalizer = new HostNormalizer(super.getHost());
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+
+/**
+ * The result of creating many urls at once, such as a column of url strings. This does the same as calling
+ * Url.create() or NormalizedUrl.create() on each string, but the strings that don't hold exactly one url are reported
+ * with a status instead of by throwing a MalformedURLException.
+ *
+ * The strings are handled in chunks. Within a chunk, each distinct host is normalized once and the result is shared by
+ * all the urls with that host. The chunks can be handled in parallel.
+ */
+public final class ParsedUrls {
+
+  /**
+   * The number of strings handled together; this is also the unit of work when running in parallel.
+   */
+  private static final int CHUNK_SIZE = 4096;
+
+  /**
+   * Whether the url at an index could be created.
+   */
+  public enum Status {
+    /**
+     * The string holds exactly one url.
+     */
+    OK,
+    /**
+     * The string was null.
+     */
+    NULL,
+    /**
+     * No url was found in the string.
+     */
+    NO_URL,
+    /**
+     * More than one url was found in the string.
+     */
+    MULTIPLE_URLS
+  }
+
+  private static final Status[] STATUSES = Status.values();
+
+  private final Url[] _urls;
+
+  /**
+   * The ordinal of the status of each url.
+   */
+  private final byte[] _statuses;
+
+  private final boolean _normalized;
+
+  private ParsedUrls(int size, boolean normalized) {
+    _urls = new Url[size];
+    _statuses = new byte[size];
+    _normalized = normalized;
+  }
+
+  /**
+   * Creates the url of each string, like Url.create().
+   * @param urls The strings, each holding a single url.
+   * @param parallel True to create the urls on multiple threads.
+   */
+  public static ParsedUrls parse(String[] urls, boolean parallel) {
+    return create(urls, parallel, false);
+  }
+
+  /**
+   * Creates the url of each string, like Url.create().
+   * @param urls The strings, each holding a single url.
+   * @param parallel True to create the urls on multiple threads.
+   */
+  public static ParsedUrls parse(List<String> urls, boolean parallel) {
+    return create(urls.toArray(new String[urls.size()]), parallel, false);
+  }
+
+  /**
+   * Creates the normalized url of each string, like NormalizedUrl.create(). The host and path of each url are
+   * normalized right away.
+   * @param urls The strings, each holding a single url.
+   * @param parallel True to create the urls on multiple threads.
+   */
+  public static ParsedUrls normalize(String[] urls, boolean parallel) {
+    return create(urls, parallel, true);
+  }
+
+  /**
+   * Creates the normalized url of each string, like NormalizedUrl.create(). The host and path of each url are
+   * normalized right away.
+   * @param urls The strings, each holding a single url.
+   * @param parallel True to create the urls on multiple threads.
+   */
+  public static ParsedUrls normalize(List<String> urls, boolean parallel) {
+    return create(urls.toArray(new String[urls.size()]), parallel, true);
+  }
+
+  /**
+   * @return The number of strings that were given.
+   */
+  public int size() {
+    return _urls.length;
+  }
+
+  /**
+   * @return The status of the string at the index.
+   */
+  public Status getStatus(int index) {
+    return STATUSES[_statuses[index]];
+  }
+
+  /**
+   * @return True if the string at the index holds exactly one url.
+   */
+  public boolean isValid(int index) {
+    return _urls[index] != null;
+  }
+
+  /**
+   * @return The url of the string at the index, or null if its status is not OK. The url is a NormalizedUrl if these
+   *     urls were normalized.
+   */
+  public Url getUrl(int index) {
+    return _urls[index];
+  }
+
+  /**
+   * @return The normalized url of the string at the index, or null if its status is not OK.
+   * @throws IllegalStateException If these urls were not normalized.
+   */
+  public NormalizedUrl getNormalizedUrl(int index) {
+    if (!_normalized) {
+      throw new IllegalStateException("The urls were not normalized.");
+    }
+    return (NormalizedUrl) _urls[index];
+  }
+
+  /**
+   * @return The number of strings that don't hold exactly one url.
+   */
+  public int getFailureCount() {
+    int count = 0;
+    for (Url url : _urls) {
+      if (url == null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static ParsedUrls create(final String[] urls, boolean parallel, boolean normalize) {
+    final ParsedUrls result = new ParsedUrls(urls.length, normalize);
+    int chunks = (urls.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream stream = IntStream.range(0, chunks);
+    if (parallel) {
+      stream = stream.parallel();
+    }
+    stream.forEach(new IntConsumer() {
+      @Override
+      public void accept(int chunk) {
+        int start = chunk * CHUNK_SIZE;
+        result.createChunk(urls, start, Math.min(urls.length, start + CHUNK_SIZE));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Creates the urls from start to end. Each chunk writes to its own range of the arrays.
+   */
+  private void createChunk(String[] urls, int start, int end) {
+    Map<String, HostNormalizer> hosts = _normalized ? new HashMap<String, HostNormalizer>() : null;
+    for (int i = start; i < end; i++) {
+      Url url = createUrl(urls[i], i);
+      if (url != null && _normalized) {
+        NormalizedUrl normalizedUrl = url.normalize();
+        String host = url.getHost();
+        HostNormalizer hostNormalizer = hosts.get(host);
+        if (hostNormalizer == null) {
+          hostNormalizer = new HostNormalizer(host);
+          hosts.put(host, hostNormalizer);
+        }
+        normalizedUrl.setNormalizedHost(hostNormalizer);
+        normalizedUrl.getPath();
+        url = normalizedUrl;
+      }
+      _urls[i] = url;
+    }
+  }
+
+  private Url createUrl(String url, int index) {
+    if (url == null) {
+      _statuses[index] = (byte) Status.NULL.ordinal();
+      return null;
+    }
+
+    UrlMarker urlMarker = UrlParser.parse(url);
+    if (urlMarker != null) {
+      return urlMarker.createUrl();
+    }
+
+    List<Url> urls = Url.detectSingleUrl(url);
+    if (urls.size() == 1) {
+      return urls.get(0);
+    }
+    _statuses[index] = (byte) (urls.isEmpty() ? Status.NO_URL : Status.MULTIPLE_URLS).ordinal();
+    return null;
+  }
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Finds the public suffix (such as "com" or "co.uk") and the registrable domain (the public suffix plus one more
+ * label, such as "linkedin.com") of host names, using the rules of the Public Suffix List from publicsuffix.org.
+ *
+ * The rules are kept in a trie of the labels read from right to left, packed into a few arrays. Looking up a host
+ * walks the trie over the characters of the host in place, so it doesn't allocate. A copy of the list is bundled and
+ * loaded the first time this class is used; a newer copy can be loaded from a file with load() and setDefault().
+ *
+ * The rules of the list are applied as described at https://publicsuffix.org/list/: the matching rule with the most
+ * labels wins, exception rules win over all other rules, and a host that matches no rule has its last label as public
+ * suffix. Rules from both the ICANN and the private sections of the list are used. Internationalized rules are
+ * converted to their ASCII form, so hosts have to be in ASCII form too, as returned by NormalizedUrl.getHost().
+ */
+public final class PublicSuffixList {
+
+  private static final String RESOURCE = "public_suffix_list.dat";
+
+  private static final byte RULE = 1;
+  private static final byte EXCEPTION = 2;
+  private static final byte WILDCARD = 4;
+
+  private static final AtomicReference<PublicSuffixList> DEFAULT =
+      new AtomicReference<PublicSuffixList>(loadResource());
+
+  /**
+   * All of the labels of the trie, one after the other.
+   */
+  private final String _labels;
+
+  /**
+   * For each node: where its label starts in _labels, and its length.
+   */
+  private final int[] _labelStarts;
+  private final int[] _labelLengths;
+
+  /**
+   * For each node: the index of its first child and its number of children. The children of a node are next to each
+   * other and sorted by label. Node 0 is the root.
+   */
+  private final int[] _firstChildren;
+  private final int[] _childCounts;
+
+  /**
+   * For each node: whether it ends a rule, ends an exception rule, or has a "*" child rule.
+   */
+  private final byte[] _flags;
+
+  private PublicSuffixList(String labels, int[] labelStarts, int[] labelLengths, int[] firstChildren,
+      int[] childCounts, byte[] flags) {
+    _labels = labels;
+    _labelStarts = labelStarts;
+    _labelLengths = labelLengths;
+    _firstChildren = firstChildren;
+    _childCounts = childCounts;
+    _flags = flags;
+  }
+
+  /**
+   * @return The list that NormalizedUrl uses, which is the bundled list unless setDefault() was called.
+   */
+  public static PublicSuffixList getDefault() {
+    return DEFAULT.get();
+  }
+
+  /**
+   * Replaces the list that NormalizedUrl uses, for example with a newer list loaded from a file.
+   */
+  public static void setDefault(PublicSuffixList publicSuffixList) {
+    if (publicSuffixList == null) {
+      throw new IllegalArgumentException("The public suffix list can't be null.");
+    }
+    DEFAULT.set(publicSuffixList);
+  }
+
+  /**
+   * Loads a list in the format of https://publicsuffix.org/list/public_suffix_list.dat.
+   */
+  public static PublicSuffixList load(Path file) throws IOException {
+    try (InputStream inputStream = Files.newInputStream(file)) {
+      return load(inputStream);
+    }
+  }
+
+  /**
+   * Loads a list in the format of https://publicsuffix.org/list/public_suffix_list.dat. The stream is not closed.
+   */
+  public static PublicSuffixList load(InputStream inputStream) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    Builder builder = new Builder();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("//")) {
+        continue;
+      }
+      //only the text up to the first whitespace is part of the rule.
+      int end = 0;
+      while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+        end++;
+      }
+      builder.addRule(line.substring(0, end));
+    }
+    return builder.build();
+  }
+
+  /**
+   * @param host A host name in ASCII form, such as "www.linkedin.co.uk". A trailing dot is ignored.
+   * @return The index in the host where the public suffix starts, such as 12 for "co.uk", or -1 if the host is empty
+   *     or starts or ends with an empty label.
+   */
+  public int getPublicSuffixStart(CharSequence host) {
+    int end = hostEnd(host);
+    if (end == 0 || host.charAt(0) == '.' || host.charAt(end - 1) == '.') {
+      return -1;
+    }
+
+    //a host that matches no rule has its last label as public suffix.
+    int labelStart = lastIndexOfDot(host, end) + 1;
+    int suffixStart = labelStart;
+    int node = 0;
+    int labelEnd = end;
+    while (true) {
+      int child = findChild(node, host, labelStart, labelEnd);
+      if (child != -1 && (_flags[child] & EXCEPTION) != 0) {
+        //the exception rule means the label is not part of the suffix.
+        return labelEnd == end ? -1 : labelEnd + 1;
+      }
+      if ((child != -1 && (_flags[child] & RULE) != 0) || (_flags[node] & WILDCARD) != 0) {
+        suffixStart = labelStart;
+      }
+      if (child == -1 || labelStart == 0) {
+        return suffixStart;
+      }
+      node = child;
+      labelEnd = labelStart - 1;
+      labelStart = lastIndexOfDot(host, labelEnd) + 1;
+      if (labelStart == labelEnd) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * @param host A host name in ASCII form, such as "www.linkedin.co.uk". A trailing dot is ignored.
+   * @return The index in the host where the registrable domain starts, such as 4 for "linkedin.co.uk", or -1 if the
+   *     host is itself a public suffix or is not valid.
+   */
+  public int getRegistrableDomainStart(CharSequence host) {
+    int suffixStart = getPublicSuffixStart(host);
+    if (suffixStart <= 0) {
+      return -1;
+    }
+    int start = lastIndexOfDot(host, suffixStart - 1) + 1;
+    return start < suffixStart - 1 ? start : -1;
+  }
+
+  /**
+   * @return The public suffix of the host, or null if it doesn't have one. See getPublicSuffixStart().
+   */
+  public CharSequence getPublicSuffix(String host) {
+    int start = getPublicSuffixStart(host);
+    return start == -1 ? null : new StringSlice(host, start, hostEnd(host));
+  }
+
+  /**
+   * @return The registrable domain of the host, or null if it doesn't have one. See getRegistrableDomainStart().
+   */
+  public CharSequence getRegistrableDomain(String host) {
+    int start = getRegistrableDomainStart(host);
+    return start == -1 ? null : new StringSlice(host, start, hostEnd(host));
+  }
+
+  /**
+   * @return The number of nodes in the trie.
+   */
+  int size() {
+    return _flags.length;
+  }
+
+  private static int hostEnd(CharSequence host) {
+    int end = host.length();
+    return end > 0 && host.charAt(end - 1) == '.' ? end - 1 : end;
+  }
+
+  private static int lastIndexOfDot(CharSequence host, int end) {
+    for (int i = end - 1; i >= 0; i--) {
+      if (host.charAt(i) == '.') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the child of the node with the label host[start, end), ignoring the case of the host.
+   * @return The child node, or -1 if there is none.
+   */
+  private int findChild(int node, CharSequence host, int start, int end) {
+    int low = _firstChildren[node];
+    int high = low + _childCounts[node] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compareLabel(middle, host, start, end);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  private int compareLabel(int node, CharSequence host, int start, int end) {
+    int labelStart = _labelStarts[node];
+    int labelLength = _labelLengths[node];
+    int length = Math.min(labelLength, end - start);
+    for (int i = 0; i < length; i++) {
+      char hostChar = host.charAt(start + i);
+      if (hostChar >= 'A' && hostChar <= 'Z') {
+        hostChar += 'a' - 'A';
+      }
+      int comparison = _labels.charAt(labelStart + i) - hostChar;
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return labelLength - (end - start);
+  }
+
+  private static PublicSuffixList loadResource() {
+    try (InputStream inputStream = PublicSuffixList.class.getResourceAsStream(RESOURCE)) {
+      if (inputStream == null) {
+        throw new IllegalStateException("The bundled public suffix list " + RESOURCE + " is missing.");
+      }
+      return load(inputStream);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Collects the rules in a tree of maps, then packs the tree into arrays.
+   */
+  private static final class Builder {
+    private final Node _root = new Node();
+
+    void addRule(String rule) {
+      byte flag = RULE;
+      if (rule.startsWith("!")) {
+        flag = EXCEPTION;
+        rule = rule.substring(1);
+      }
+
+      String[] labels = rule.toLowerCase(Locale.ROOT).split("\\.");
+      Node node = _root;
+      for (int i = labels.length - 1; i >= 0; i--) {
+        String label = labels[i];
+        if (label.isEmpty()) {
+          return;
+        }
+        if (i == 0 && label.equals("*")) {
+          node._flags |= WILDCARD;
+          return;
+        }
+        node = node.child(toAscii(label));
+      }
+      node._flags |= flag;
+    }
+
+    PublicSuffixList build() {
+      //number the nodes breadth first, so the children of each node are next to each other.
+      List<Node> nodes = new ArrayList<Node>();
+      nodes.add(_root);
+      for (int i = 0; i < nodes.size(); i++) {
+        Node node = nodes.get(i);
+        node._firstChild = nodes.size();
+        nodes.addAll(node._children.values());
+      }
+
+      StringBuilder labels = new StringBuilder();
+      int size = nodes.size();
+      int[] labelStarts = new int[size];
+      int[] labelLengths = new int[size];
+      int[] firstChildren = new int[size];
+      int[] childCounts = new int[size];
+      byte[] flags = new byte[size];
+      for (int i = 0; i < size; i++) {
+        Node node = nodes.get(i);
+        labelStarts[i] = labels.length();
+        if (node._label != null) {
+          labels.append(node._label);
+          labelLengths[i] = node._label.length();
+        }
+        firstChildren[i] = node._firstChild;
+        childCounts[i] = node._children.size();
+        flags[i] = node._flags;
+      }
+      return new PublicSuffixList(labels.toString(), labelStarts, labelLengths, firstChildren, childCounts, flags);
+    }
+
+    private static String toAscii(String label) {
+      for (int i = 0; i < label.length(); i++) {
+        if (label.charAt(i) >= 0x80) {
+          return IDN.toASCII(label).toLowerCase(Locale.ROOT);
+        }
+      }
+      return label;
+    }
+  }
+
+  private static final class Node {
+    private final String _label;
+    private final Map<String, Node> _children = new TreeMap<String, Node>();
+    private byte _flags = 0;
+    private int _firstChild = 0;
+
+    Node() {
+      this(null);
+    }
+
+    Node(String label) {
+      _label = label;
+    }
+
+    Node child(String label) {
+      Node child = _children.get(label);
+      if (child == null) {
+        child = new Node(label);
+        _children.put(label, child);
+      }
+      return child;
+    }
+  }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import com.linkedin.urls.detection.CharUtils;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+
+/**
+ * Puts a query string in a canonical form, so that urls which only differ in the order of their parameters, in the
+ * way the parameters are encoded or in tracking parameters end up with the same query:
+ * - Removes the parameters whose decoded key is one of the removed keys or starts with one of the removed prefixes.
+ * - Removes empty parameters, such as in "a=1&amp;&amp;b=2".
+ * - Decodes each key and value and encodes it again: unreserved characters and the characters that mean the same
+ *     encoded or not in a query are written as is, and everything else is percent encoded as UTF-8 with upper case
+ *     hex. A "+" is a space, which is written as %20.
+ * - Sorts the parameters by key. Parameters with the same key keep their order.
+ *
+ * For example: ?b=2&amp;utm_source=mail&amp;a=%7e+x becomes ?a=~%20x&amp;b=2 with the default tracking parameters.
+ * The query is read once, each parameter decoded and encoded again into buffers that each thread reuses, and the
+ * parameters are sorted as an array of their offsets, so only the normalized query is allocated. This class is
+ * immutable and can be shared.
+ */
+public class QueryNormalizer {
+
+  /**
+   * Removes the common tracking parameters: utm_*, fbclid, gclid, and similar.
+   */
+  public static final QueryNormalizer DEFAULT = new QueryNormalizer(
+      Arrays.asList("fbclid", "gclid", "gclsrc", "dclid", "msclkid", "yclid", "twclid", "igshid", "mc_cid", "mc_eid",
+          "_ga", "_gl"),
+      Collections.singletonList("utm_"));
+
+  private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+  /**
+   * The buffers of a thread are dropped instead of kept after a query that made them larger than this.
+   */
+  private static final int MAX_KEPT_BUFFER_LENGTH = 64 * 1024;
+
+  private static final ThreadLocal<Buffers> BUFFERS = new ThreadLocal<Buffers>() {
+    @Override
+    protected Buffers initialValue() {
+      return new Buffers();
+    }
+  };
+
+  /**
+   * The removed keys are few, so they are compared one by one with the decoded key in its buffer, which saves
+   * creating a string of every key to look it up.
+   */
+  private final String[] _removedKeys;
+  private final String[] _removedKeyPrefixes;
+
+  /**
+   * @param removedKeys The decoded keys of the parameters to remove. They are matched exactly.
+   * @param removedKeyPrefixes The parameters whose decoded key starts with one of these are removed.
+   */
+  public QueryNormalizer(Collection<String> removedKeys, Collection<String> removedKeyPrefixes) {
+    _removedKeys = removedKeys.toArray(new String[removedKeys.size()]);
+    _removedKeyPrefixes = removedKeyPrefixes.toArray(new String[removedKeyPrefixes.size()]);
+  }
+
+  /**
+   * @param query The query, with or without the leading "?".
+   * @return The normalized query with the leading "?", or "" if no parameters are left.
+   */
+  public String normalizeQuery(String query) {
+    int start = query.startsWith("?") ? 1 : 0;
+    return normalizeQuery(query, start, query.length());
+  }
+
+  /**
+   * Normalizes the query found between start and end of the source.
+   */
+  String normalizeQuery(String source, int start, int end) {
+    Buffers buffers = BUFFERS.get();
+    StringBuilder decoded = buffers._decoded;
+    //the encoded parameters are written one after the other, and the offsets of each are kept for sorting.
+    StringBuilder encoded = buffers._encoded;
+    encoded.setLength(0);
+    int count = 0;
+
+    QueryParameters parameters = new QueryParameters(source, start, end);
+    while (parameters.next()) {
+      decoded.setLength(0);
+      QueryParameters.decode(source, parameters.getKeyStart(), parameters.getKeyEnd(), decoded);
+      if (isRemoved(decoded)) {
+        continue;
+      }
+      buffers.ensureCapacity(count + 1);
+      buffers._keyStarts[count] = encoded.length();
+      encode(encoded, decoded);
+      buffers._keyEnds[count] = encoded.length();
+      if (parameters.hasValue()) {
+        encoded.append('=');
+        decoded.setLength(0);
+        QueryParameters.decode(source, parameters.getValueStart(), parameters.getValueEnd(), decoded);
+        encode(encoded, decoded);
+      }
+      count++;
+    }
+    if (count == 0) {
+      return "";
+    }
+
+    int[] order = buffers._order;
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    buffers.sort(0, count - 1);
+
+    StringBuilder query = buffers._query;
+    query.setLength(0);
+    int[] keyStarts = buffers._keyStarts;
+    for (int i = 0; i < count; i++) {
+      int index = order[i];
+      query.append(i == 0 ? '?' : '&');
+      query.append(encoded, keyStarts[index], index + 1 < count ? keyStarts[index + 1] : encoded.length());
+    }
+    String normalizedQuery = query.toString();
+    if (encoded.capacity() > MAX_KEPT_BUFFER_LENGTH || decoded.capacity() > MAX_KEPT_BUFFER_LENGTH) {
+      BUFFERS.remove();
+    }
+    return normalizedQuery;
+  }
+
+  private boolean isRemoved(CharSequence key) {
+    for (String removedKey : _removedKeys) {
+      if (key.length() == removedKey.length() && startsWith(key, removedKey)) {
+        return true;
+      }
+    }
+    for (String prefix : _removedKeyPrefixes) {
+      if (startsWith(key, prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean startsWith(CharSequence text, String prefix) {
+    if (text.length() < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (text.charAt(i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int compare(CharSequence text, int start1, int end1, int start2, int end2) {
+    int length = Math.min(end1 - start1, end2 - start2);
+    for (int i = 0; i < length; i++) {
+      char c1 = text.charAt(start1 + i);
+      char c2 = text.charAt(start2 + i);
+      if (c1 != c2) {
+        return c1 - c2;
+      }
+    }
+    return (end1 - start1) - (end2 - start2);
+  }
+
+  /**
+   * Appends the decoded text, encoded in the canonical way. Characters that aren't ASCII are encoded as UTF-8, and a
+   * lone surrogate as "?", like String.getBytes() does.
+   */
+  private static void encode(StringBuilder builder, CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      char curr = text.charAt(i);
+      if (isLiteral(curr)) {
+        builder.append(curr);
+      } else if (curr < 0x80) {
+        appendEncodedByte(builder, curr);
+      } else if (curr < 0x800) {
+        appendEncodedByte(builder, 0xc0 | curr >> 6);
+        appendEncodedByte(builder, 0x80 | curr & 0x3f);
+      } else if (Character.isHighSurrogate(curr) && i + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(curr, text.charAt(++i));
+        appendEncodedByte(builder, 0xf0 | codePoint >> 18);
+        appendEncodedByte(builder, 0x80 | codePoint >> 12 & 0x3f);
+        appendEncodedByte(builder, 0x80 | codePoint >> 6 & 0x3f);
+        appendEncodedByte(builder, 0x80 | codePoint & 0x3f);
+      } else if (Character.isSurrogate(curr)) {
+        appendEncodedByte(builder, '?');
+      } else {
+        appendEncodedByte(builder, 0xe0 | curr >> 12);
+        appendEncodedByte(builder, 0x80 | curr >> 6 & 0x3f);
+        appendEncodedByte(builder, 0x80 | curr & 0x3f);
+      }
+    }
+  }
+
+  private static void appendEncodedByte(StringBuilder builder, int b) {
+    builder.append('%');
+    builder.append(HEX[(b >> 4) & 0xF]);
+    builder.append(HEX[b & 0xF]);
+  }
+
+  /**
+   * @return True if the character means the same in a query key or value whether it is encoded or not.
+   */
+  private static boolean isLiteral(char curr) {
+    if (CharUtils.isUnreserved(curr)) {
+      return true;
+    }
+    switch (curr) {
+      case '!':
+      case '$':
+      case '\'':
+      case '(':
+      case ')':
+      case '*':
+      case ',':
+      case ';':
+      case ':':
+      case '@':
+      case '/':
+      case '?':
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The buffers a thread reuses for each query: the decoded key or value being read, the encoded parameters, the
+   * range of the key of each parameter in them, the order of the parameters and the normalized query.
+   */
+  private static final class Buffers extends IndexSorter {
+    private final StringBuilder _decoded = new StringBuilder();
+    private final StringBuilder _encoded = new StringBuilder();
+    private final StringBuilder _query = new StringBuilder();
+    private int[] _keyStarts = new int[8];
+    private int[] _keyEnds = new int[8];
+    private int[] _order = new int[8];
+
+    void ensureCapacity(int count) {
+      if (count > _keyStarts.length) {
+        int length = Math.max(count, _keyStarts.length * 2);
+        _keyStarts = Arrays.copyOf(_keyStarts, length);
+        _keyEnds = Arrays.copyOf(_keyEnds, length);
+        _order = new int[length];
+      }
+    }
+
+    /**
+     * Compares the parameters of _order by key. Parameters with the same key are ordered by their index, so they keep
+     * their order.
+     */
+    @Override
+    int compare(int i, int j) {
+      int first = _order[i];
+      int second = _order[j];
+      int result = QueryNormalizer.compare(_encoded, _keyStarts[first], _keyEnds[first], _keyStarts[second],
+          _keyEnds[second]);
+      return result != 0 ? result : Integer.compare(first, second);
+    }
+
+    @Override
+    void swap(int i, int j) {
+      int index = _order[i];
+      _order[i] = _order[j];
+      _order[j] = index;
+    }
+  }
+}
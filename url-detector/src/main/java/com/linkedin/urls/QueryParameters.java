@@ -0,0 +1,253 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import com.linkedin.urls.detection.CharUtils;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Walks the parameters of a query string in place, one at a time:
+ *
+ * <pre>
+ *   QueryParameters parameters = url.getQueryParameters();
+ *   while (parameters.next()) {
+ *     parameters.getKey(); parameters.getDecodedValue(); ...
+ *   }
+ * </pre>
+ *
+ * Nothing is copied or decoded until it is asked for. The offsets refer to the string the parameters are read from,
+ * which is the original url for the parameters of a Url. The parameters are separated by "&amp;", and the key and
+ * value by the first "=". A parameter without "=" has no value, and empty parameters, such as in "a=1&amp;&amp;b=2",
+ * are skipped.
+ */
+public final class QueryParameters {
+
+  private final String _source;
+  private final int _end;
+
+  /**
+   * Where the next parameter starts.
+   */
+  private int _position;
+
+  private int _keyStart = -1;
+  private int _keyEnd = -1;
+  private int _valueStart = -1;
+  private int _valueEnd = -1;
+
+  /**
+   * @param source The string that holds the query.
+   * @param start The index of the first parameter, right after the "?".
+   * @param end The index right after the last parameter.
+   */
+  QueryParameters(String source, int start, int end) {
+    _source = source;
+    _position = start;
+    _end = end;
+  }
+
+  /**
+   * Moves to the next parameter.
+   * @return False if there are no more parameters.
+   */
+  public boolean next() {
+    while (_position < _end) {
+      int start = _position;
+      int end = _source.indexOf('&', start);
+      if (end == -1 || end > _end) {
+        end = _end;
+      }
+      _position = end + 1;
+      if (end == start) {
+        continue;
+      }
+
+      int equals = start;
+      while (equals < end && _source.charAt(equals) != '=') {
+        equals++;
+      }
+      _keyStart = start;
+      if (equals < end) {
+        _keyEnd = equals;
+        _valueStart = equals + 1;
+        _valueEnd = end;
+      } else {
+        _keyEnd = end;
+        _valueStart = -1;
+        _valueEnd = -1;
+      }
+      return true;
+    }
+    _keyStart = -1;
+    _keyEnd = -1;
+    _valueStart = -1;
+    _valueEnd = -1;
+    return false;
+  }
+
+  /**
+   * @return The index of the key of the current parameter in the source.
+   */
+  public int getKeyStart() {
+    return _keyStart;
+  }
+
+  /**
+   * @return The index right after the key of the current parameter.
+   */
+  public int getKeyEnd() {
+    return _keyEnd;
+  }
+
+  /**
+   * @return The index of the value of the current parameter in the source, or -1 if it has no value.
+   */
+  public int getValueStart() {
+    return _valueStart;
+  }
+
+  /**
+   * @return The index right after the value of the current parameter, or -1 if it has no value.
+   */
+  public int getValueEnd() {
+    return _valueEnd;
+  }
+
+  /**
+   * @return True if the current parameter has a "=", even if the value after it is empty.
+   */
+  public boolean hasValue() {
+    return _valueStart != -1;
+  }
+
+  /**
+   * @return The key of the current parameter as it appears in the source.
+   */
+  public CharSequence getKey() {
+    checkCurrent();
+    return new StringSlice(_source, _keyStart, _keyEnd);
+  }
+
+  /**
+   * @return The value of the current parameter as it appears in the source, or null if it has no value.
+   */
+  public CharSequence getValue() {
+    checkCurrent();
+    return hasValue() ? new StringSlice(_source, _valueStart, _valueEnd) : null;
+  }
+
+  /**
+   * @return The decoded key of the current parameter.
+   */
+  public String getDecodedKey() {
+    checkCurrent();
+    return decode(_source, _keyStart, _keyEnd);
+  }
+
+  /**
+   * @return The decoded value of the current parameter, or null if it has no value.
+   */
+  public String getDecodedValue() {
+    checkCurrent();
+    return hasValue() ? decode(_source, _valueStart, _valueEnd) : null;
+  }
+
+  /**
+   * Checks the key of the current parameter without decoding it, unless it has encoded characters.
+   * @param key The decoded key to compare to.
+   * @return True if the decoded key of the current parameter is the key.
+   */
+  public boolean keyEquals(String key) {
+    checkCurrent();
+    if (!isEncoded(_source, _keyStart, _keyEnd)) {
+      return _keyEnd - _keyStart == key.length() && _source.regionMatches(_keyStart, key, 0, key.length());
+    }
+    return key.equals(decode(_source, _keyStart, _keyEnd));
+  }
+
+  /**
+   * Decodes a key or value of a query string: "+" becomes a space and %XX sequences are decoded as UTF-8. A "%" that is
+   * not followed by two hex characters is kept as is.
+   * @param source The string holding the query.
+   * @param start The start of the key or value.
+   * @param end The end of the key or value.
+   * @return The decoded string.
+   */
+  static String decode(String source, int start, int end) {
+    if (!isEncoded(source, start, end)) {
+      return source.substring(start, end);
+    }
+    StringBuilder decoded = new StringBuilder(end - start);
+    decode(source, start, end, decoded);
+    return decoded.toString();
+  }
+
+  /**
+   * Appends the decoded key or value to the builder, see decode(). Only runs of encoded bytes that aren't ASCII need
+   * a buffer to be decoded together as UTF-8.
+   */
+  static void decode(String source, int start, int end, StringBuilder decoded) {
+    byte[] bytes = null;
+    int index = start;
+    while (index < end) {
+      char curr = source.charAt(index);
+      if (curr == '+') {
+        decoded.append(' ');
+        index++;
+      } else if (isEncodedByte(source, index, end)) {
+        int value = readEncodedByte(source, index);
+        if (value < 0x80) {
+          decoded.append((char) value);
+          index += 3;
+          continue;
+        }
+        //collect the run of encoded bytes of multi byte characters, so that they are decoded together.
+        if (bytes == null) {
+          bytes = new byte[(end - start) / 3];
+        }
+        int length = 0;
+        while (isEncodedByte(source, index, end) && (value = readEncodedByte(source, index)) >= 0x80) {
+          bytes[length++] = (byte) value;
+          index += 3;
+        }
+        decoded.append(new String(bytes, 0, length, StandardCharsets.UTF_8));
+      } else {
+        decoded.append(curr);
+        index++;
+      }
+    }
+  }
+
+  private static int readEncodedByte(String source, int index) {
+    return Character.digit(source.charAt(index + 1), 16) << 4 | Character.digit(source.charAt(index + 2), 16);
+  }
+
+  private static boolean isEncoded(String source, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char curr = source.charAt(i);
+      if (curr == '%' || curr == '+') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isEncodedByte(String source, int index, int end) {
+    return index + 2 < end && source.charAt(index) == '%' && CharUtils.isHex(source.charAt(index + 1))
+        && CharUtils.isHex(source.charAt(index + 2));
+  }
+
+  private void checkCurrent() {
+    if (_keyStart == -1) {
+      throw new IllegalStateException("There is no current parameter; next() has to return true first.");
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Finds which of many signatures, such as known phishing kit paths or exploit parameters, appear in the path and query
+ * of urls. The id of a signature is its index in the list it was compiled from.
+ *
+ * The signatures are compiled into an Aho-Corasick automaton, so the path and query of a url are read once no matter
+ * how many signatures there are. The path and query are read in place from the original url, as written; they are not
+ * decoded or normalized. A matcher is immutable and can be shared between threads.
+ */
+public final class SignatureMatcher {
+
+  private static final int[] NO_MATCHES = new int[0];
+
+  private final int _size;
+  private final boolean _ignoreCase;
+
+  /**
+   * The transitions of state s are at [_transitionStarts[s], _transitionStarts[s + 1]) of _transitionChars and
+   * _transitionTargets, sorted by character. State 0 is the start.
+   */
+  private final int[] _transitionStarts;
+  private final char[] _transitionChars;
+  private final int[] _transitionTargets;
+
+  /**
+   * The state for the longest proper suffix of what state s has read that is also in the automaton.
+   */
+  private final int[] _failures;
+
+  /**
+   * The ids of the signatures that end at state s are at [_outputStarts[s], _outputStarts[s + 1]) of _outputIds.
+   */
+  private final int[] _outputStarts;
+  private final int[] _outputIds;
+
+  /**
+   * The closest state along the failures of state s that has signatures ending at it, or -1 if there is none.
+   */
+  private final int[] _outputLinks;
+
+  private SignatureMatcher(int size, boolean ignoreCase, int[] transitionStarts, char[] transitionChars,
+      int[] transitionTargets, int[] failures, int[] outputStarts, int[] outputIds, int[] outputLinks) {
+    _size = size;
+    _ignoreCase = ignoreCase;
+    _transitionStarts = transitionStarts;
+    _transitionChars = transitionChars;
+    _transitionTargets = transitionTargets;
+    _failures = failures;
+    _outputStarts = outputStarts;
+    _outputIds = outputIds;
+    _outputLinks = outputLinks;
+  }
+
+  /**
+   * Compiles the signatures. Empty signatures never match.
+   * @param signatures The substrings to look for. The id of each is its index in the list.
+   * @param ignoreCase True to ignore the case of ASCII letters.
+   * @return The matcher.
+   */
+  public static SignatureMatcher compile(List<String> signatures, boolean ignoreCase) {
+    List<Node> nodes = new ArrayList<Node>();
+    Node root = new Node();
+    nodes.add(root);
+    for (int id = 0; id < signatures.size(); id++) {
+      String signature = signatures.get(id);
+      if (signature.isEmpty()) {
+        continue;
+      }
+      Node node = root;
+      for (int i = 0; i < signature.length(); i++) {
+        char curr = ignoreCase ? toLowerCase(signature.charAt(i)) : signature.charAt(i);
+        Node child = node._children.get(curr);
+        if (child == null) {
+          child = new Node();
+          node._children.put(curr, child);
+        }
+        node = child;
+      }
+      node._ids.add(id);
+    }
+
+    //number the nodes breadth first, which is also the order to compute the failures in: the failure of a node is
+    //always closer to the root.
+    int transitionCount = 0;
+    int outputCount = 0;
+    for (int i = 0; i < nodes.size(); i++) {
+      Node node = nodes.get(i);
+      node._state = i;
+      transitionCount += node._children.size();
+      outputCount += node._ids.size();
+      for (Map.Entry<Character, Node> entry : node._children.entrySet()) {
+        Node child = entry.getValue();
+        Node failure = node._failure;
+        while (failure != null && !failure._children.containsKey(entry.getKey())) {
+          failure = failure._failure;
+        }
+        child._failure = failure == null ? root : failure._children.get(entry.getKey());
+        nodes.add(child);
+      }
+    }
+
+    int size = nodes.size();
+    int[] transitionStarts = new int[size + 1];
+    char[] transitionChars = new char[transitionCount];
+    int[] transitionTargets = new int[transitionCount];
+    int[] failures = new int[size];
+    int[] outputStarts = new int[size + 1];
+    int[] outputIds = new int[outputCount];
+    int[] outputLinks = new int[size];
+    int transition = 0;
+    int output = 0;
+    for (int i = 0; i < size; i++) {
+      Node node = nodes.get(i);
+      transitionStarts[i] = transition;
+      for (Map.Entry<Character, Node> entry : node._children.entrySet()) {
+        transitionChars[transition] = entry.getKey();
+        transitionTargets[transition] = entry.getValue()._state;
+        transition++;
+      }
+      outputStarts[i] = output;
+      for (int id : node._ids) {
+        outputIds[output++] = id;
+      }
+      failures[i] = node._failure == null ? 0 : node._failure._state;
+      //the failure comes before the node, so its output link is already known.
+      int failure = failures[i];
+      outputLinks[i] = i == 0 ? -1 : !nodes.get(failure)._ids.isEmpty() ? failure : outputLinks[failure];
+    }
+    transitionStarts[size] = transition;
+    outputStarts[size] = output;
+
+    return new SignatureMatcher(signatures.size(), ignoreCase, transitionStarts, transitionChars, transitionTargets,
+        failures, outputStarts, outputIds, outputLinks);
+  }
+
+  /**
+   * @return The number of signatures, including empty ones.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @return The ids of the signatures found in the path and query of the url, in increasing order.
+   */
+  public int[] match(Url url) {
+    UrlMarker urlMarker = url.getUrlMarker();
+    String originalUrl = url.getOriginalUrl();
+    int start = urlMarker.indexOf(UrlPart.PATH);
+    if (start == -1) {
+      start = urlMarker.indexOf(UrlPart.QUERY);
+    }
+    int end = urlMarker.indexOf(UrlPart.FRAGMENT);
+    if (start == -1 || originalUrl == null) {
+      return NO_MATCHES;
+    }
+    return match(originalUrl, start, end == -1 ? originalUrl.length() : end);
+  }
+
+  /**
+   * @return The ids of the signatures found in the path and query of the url, in increasing order.
+   */
+  public int[] match(CompactUrl url) {
+    int start = url.indexOf(UrlPart.PATH);
+    if (start == -1) {
+      start = url.indexOf(UrlPart.QUERY);
+    }
+    int end = url.indexOf(UrlPart.FRAGMENT);
+    if (start == -1) {
+      return NO_MATCHES;
+    }
+    return match(url.getSource(), start, end == -1 ? url.getEnd() : end);
+  }
+
+  /**
+   * @param text The text to search.
+   * @param start The index to start searching at.
+   * @param end The index to stop searching at.
+   * @return The ids of the signatures found in text[start, end), in increasing order.
+   */
+  public int[] match(CharSequence text, int start, int end) {
+    //each id is kept once however often it is found, so a long repetitive text takes no more memory than a short one.
+    BitSet matches = null;
+    int state = 0;
+    for (int i = start; i < end; i++) {
+      char curr = _ignoreCase ? toLowerCase(text.charAt(i)) : text.charAt(i);
+      int next = transition(state, curr);
+      while (next == -1 && state != 0) {
+        state = _failures[state];
+        next = transition(state, curr);
+      }
+      state = next == -1 ? 0 : next;
+
+      int output = _outputStarts[state] < _outputStarts[state + 1] ? state : _outputLinks[state];
+      for (; output != -1; output = _outputLinks[output]) {
+        if (matches == null) {
+          matches = new BitSet(_size);
+        }
+        for (int j = _outputStarts[output]; j < _outputStarts[output + 1]; j++) {
+          matches.set(_outputIds[j]);
+        }
+      }
+    }
+    if (matches == null) {
+      return NO_MATCHES;
+    }
+    int[] ids = new int[matches.cardinality()];
+    for (int i = 0, id = matches.nextSetBit(0); id != -1; i++, id = matches.nextSetBit(id + 1)) {
+      ids[i] = id;
+    }
+    return ids;
+  }
+
+  /**
+   * @return The state reached from the state with the character, or -1 if there is no such transition.
+   */
+  private int transition(int state, char curr) {
+    int low = _transitionStarts[state];
+    int high = _transitionStarts[state + 1] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      char middleChar = _transitionChars[middle];
+      if (middleChar < curr) {
+        low = middle + 1;
+      } else if (middleChar > curr) {
+        high = middle - 1;
+      } else {
+        return _transitionTargets[middle];
+      }
+    }
+    return -1;
+  }
+
+  private static char toLowerCase(char curr) {
+    return curr >= 'A' && curr <= 'Z' ? (char) (curr + ('a' - 'A')) : curr;
+  }
+
+  /**
+   * A node of the trie of signatures, used while compiling.
+   */
+  private static final class Node {
+    private final Map<Character, Node> _children = new TreeMap<Character, Node>();
+    private final List<Integer> _ids = new ArrayList<Integer>(1);
+    private Node _failure = null;
+    private int _state = 0;
+  }
+}
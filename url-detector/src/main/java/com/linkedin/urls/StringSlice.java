@@ -0,0 +1,54 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+/**
+ * A read only view of a range of a String. Nothing is copied until toString() is called.
+ */
+final class StringSlice implements CharSequence {
+  private final String _source;
+  private final int _start;
+  private final int _end;
+
+  StringSlice(String source, int start, int end) {
+    if (start < 0 || end > source.length() || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + source.length());
+    }
+    _source = source;
+    _start = start;
+    _end = end;
+  }
+
+  @Override
+  public int length() {
+    return _end - _start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+    }
+    return _source.charAt(_start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length() || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length());
+    }
+    return new StringSlice(_source, _start + start, _start + end);
+  }
+
+  @Override
+  public String toString() {
+    return _source.substring(_start, _end);
+  }
+}
@@ -11,7 +11,11 @@ package com.linkedin.urls;
 
 import com.linkedin.urls.detection.UrlDetector;
 import com.linkedin.urls.detection.UrlDetectorOptions;
+import com.linkedin.urls.detection.UrlHandler;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -399,6 +403,9 @@ public class Url {
   private String _query;
   private String _fragment;
   private String _originalUrl;
+  private String _fullUrl;
+  private String _fullUrlWithoutFragment;
+  private int _hashCode = 0;
 
   protected Url(UrlMarker urlMarker) {
     _urlMarker = urlMarker;
@@ -409,8 +416,13 @@ public class Url {
    * Returns a url given a single url.
    */
   public static Url create(String url) throws MalformedURLException {
-    String formattedString = UrlUtil.removeSpecialSpaces(url.trim().replace(" ", "%20"));
-    List<Url> urls = new UrlDetector(formattedString, UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN).detect();
+    //most urls are plain enough to be parsed directly; only the rest needs the full detector.
+    UrlMarker urlMarker = UrlParser.parse(url);
+    if (urlMarker != null) {
+      return urlMarker.createUrl();
+    }
+
+    List<Url> urls = detectSingleUrl(url);
     if (urls.size() == 1) {
       return urls.get(0);
     } else if (urls.size() == 0) {
@@ -420,6 +432,24 @@ public class Url {
     }
   }
 
+  /**
+   * Detects the urls in a string that is supposed to hold a single url. The detection stops at the second url, since
+   * that is already one too many.
+   * @return The detected urls, at most two.
+   */
+  static List<Url> detectSingleUrl(String url) {
+    String formattedString = UrlUtil.removeSpecialSpaces(url.trim().replace(" ", "%20"));
+    final List<Url> urls = new ArrayList<Url>(2);
+    new UrlDetector(formattedString, UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN).detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        urls.add(urlMarker.createUrl());
+        return urls.size() < 2;
+      }
+    });
+    return urls;
+  }
+
   /**
    * Returns a normalized url given a url object
    */
@@ -427,17 +457,61 @@ public class Url {
     return new NormalizedUrl(_urlMarker);
   }
 
+  /**
+   * Returns a normalized url given a url object, with the query normalized by the query normalizer as well.
+   */
+  public NormalizedUrl normalize(QueryNormalizer queryNormalizer) {
+    return new NormalizedUrl(_urlMarker, queryNormalizer);
+  }
+
   @Override
   public String toString() {
     return this.getFullUrl();
   }
 
+  /**
+   * Two urls are equal if they are of the same class and getFullUrl() of each would give the same string. The parts
+   * are compared one by one, so the full urls are not built. A Url compares the parts as they were written, while a
+   * NormalizedUrl compares the normalized parts.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (other == null || other.getClass() != getClass()) {
+      return false;
+    }
+    Url url = (Url) other;
+    return hashCode() == url.hashCode() && UrlComparator.INSTANCE.compare(this, url) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    if (_hashCode == 0) {
+      int hash = getShownScheme().hashCode();
+      hash = 31 * hash + getShownUsername().hashCode();
+      hash = 31 * hash + getShownPassword().hashCode();
+      hash = 31 * hash + nullToEmpty(getHost()).hashCode();
+      hash = 31 * hash + getShownPort();
+      hash = 31 * hash + nullToEmpty(getPath()).hashCode();
+      hash = 31 * hash + nullToEmpty(getQuery()).hashCode();
+      hash = 31 * hash + getFragment().hashCode();
+      //0 means the hash code isn't computed yet.
+      _hashCode = hash == 0 ? 1 : hash;
+    }
+    return _hashCode;
+  }
+
   /**
    * Note that this includes the fragment
    * @return Formats the url to: [scheme]://[username]:[password]@[host]:[port]/[path]?[query]#[fragment]
    */
   public String getFullUrl() {
-    return getFullUrlWithoutFragment() + getFragment();
+    if (_fullUrl == null) {
+      _fullUrl = getFullUrlWithoutFragment() + getFragment();
+    }
+    return _fullUrl;
   }
 
   /**
@@ -445,35 +519,108 @@ public class Url {
    * @return Formats the url to: [scheme]://[username]:[password]@[host]:[port]/[path]?[query]
    */
   public String getFullUrlWithoutFragment() {
-    StringBuilder url = new StringBuilder();
-    String scheme = getScheme();
-    if (scheme != null && !scheme.isEmpty()) {
-      url.append(scheme);
-      url.append(":");
+    if (_fullUrlWithoutFragment == null) {
+      StringBuilder url = new StringBuilder();
+      appendFullUrlWithoutFragment(url);
+      _fullUrlWithoutFragment = url.toString();
     }
-    url.append("//");
-
-    String username = getUsername();
-    if (username != null && !username.isEmpty()) {
-      url.append(username);
-      String password = getPassword();
-      if (password != null && !password.isEmpty()) {
-        url.append(":");
-        url.append(password);
+    return _fullUrlWithoutFragment;
+  }
+
+  /**
+   * Returns the 64 bit fingerprint of getFullUrlWithoutFragment(), computed from its parts without building it.
+   * See UrlFingerprint.
+   */
+  public long getFingerprint64() {
+    UrlFingerprint fingerprint = new UrlFingerprint();
+    appendFullUrlWithoutFragment(fingerprint);
+    return fingerprint.getHash64();
+  }
+
+  /**
+   * Returns the 128 bit fingerprint of getFullUrlWithoutFragment(), computed from its parts without building it.
+   * See UrlFingerprint.
+   */
+  public long[] getFingerprint128() {
+    UrlFingerprint fingerprint = new UrlFingerprint();
+    appendFullUrlWithoutFragment(fingerprint);
+    return fingerprint.getHash128();
+  }
+
+  /**
+   * Appends [scheme]://[username]:[password]@[host]:[port]/[path]?[query] part by part.
+   */
+  private void appendFullUrlWithoutFragment(Appendable url) {
+    try {
+      String scheme = getShownScheme();
+      if (!scheme.isEmpty()) {
+        url.append(scheme);
+        url.append(':');
+      }
+      if (isOpaque()) {
+        url.append(getPath());
+        return;
+      }
+      url.append("//");
+
+      String username = getShownUsername();
+      if (!username.isEmpty()) {
+        url.append(username);
+        String password = getShownPassword();
+        if (!password.isEmpty()) {
+          url.append(':');
+          url.append(password);
+        }
+        url.append('@');
+      }
+
+      url.append(getHost());
+      int port = getShownPort();
+      if (port != 0) {
+        url.append(':');
+        url.append(Integer.toString(port));
       }
-      url.append("@");
-    }
 
-    url.append(getHost());
-    if (getPort() > 0 && getPort() != SCHEME_PORT_MAP.get(scheme)) {
-      url.append(":");
-      url.append(getPort());
+      url.append(getPath());
+      url.append(getQuery());
+    } catch (IOException e) {
+      //StringBuilder and UrlFingerprint never throw.
+      throw new UncheckedIOException(e);
     }
+  }
 
-    url.append(getPath());
-    url.append(getQuery());
+  /**
+   * @return The scheme as getFullUrl() writes it, or "" if it is left out.
+   */
+  String getShownScheme() {
+    return nullToEmpty(getScheme());
+  }
+
+  /**
+   * @return The username as getFullUrl() writes it, or "" if it is left out.
+   */
+  String getShownUsername() {
+    return nullToEmpty(getUsername());
+  }
+
+  /**
+   * @return The password as getFullUrl() writes it, or "" if it is left out. It is left out without a username.
+   */
+  String getShownPassword() {
+    return getShownUsername().isEmpty() ? "" : nullToEmpty(getPassword());
+  }
+
+  /**
+   * @return The port as getFullUrl() writes it, or 0 if it is left out because there is none or it is the default
+   * port of the scheme.
+   */
+  int getShownPort() {
+    int port = getPort();
+    return port > 0 && port != getDefaultPort(getScheme()) ? port : 0;
+  }
 
-    return url.toString();
+  private static String nullToEmpty(String part) {
+    return part == null ? "" : part;
   }
 
   public String getScheme() {
@@ -557,6 +704,46 @@ public class Url {
     return _fragment == null ? "" : _fragment;
   }
 
+  /**
+   * Returns the parameters of the query, read in place from the original url. Each call starts over from the first
+   * parameter.
+   */
+  public QueryParameters getQueryParameters() {
+    int start = _urlMarker.indexOf(UrlPart.QUERY);
+    if (start == -1) {
+      return new QueryParameters(_originalUrl, 0, 0);
+    }
+    UrlPart nextPart = nextExistingPart(UrlPart.QUERY);
+    int end = nextPart == null ? _originalUrl.length() : _urlMarker.indexOf(nextPart);
+    return new QueryParameters(_originalUrl, start + 1, end);
+  }
+
+  /**
+   * Finds a parameter of the query without splitting up or decoding the rest of the query.
+   * @param name The decoded name of the parameter.
+   * @return The decoded value of the first parameter with that name, "" if it has no value, or null if the query
+   *     doesn't have that parameter.
+   */
+  public String getQueryParameter(String name) {
+    QueryParameters parameters = getQueryParameters();
+    while (parameters.next()) {
+      if (parameters.keyEquals(name)) {
+        String value = parameters.getDecodedValue();
+        return value == null ? "" : value;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return True if the url has a scheme but no host, such as a data: uri found by a UrlDetector with
+   *     setReportDataUris(true). All of the url after the ":" of the scheme is then its path, and getFullUrl() writes
+   *     it without "//".
+   */
+  public boolean isOpaque() {
+    return exists(UrlPart.SCHEME) && !exists(UrlPart.HOST);
+  }
+
   /**
    * Always returns null for non normalized urls.
    */
@@ -568,6 +755,15 @@ public class Url {
     return _originalUrl;
   }
 
+  /**
+   * @param scheme The scheme of a url, such as "http"
+   * @return Returns the port the scheme uses when none is given, or -1 if we don't know the scheme.
+   */
+  static int getDefaultPort(String scheme) {
+    Integer port = SCHEME_PORT_MAP.get(scheme);
+    return port == null ? -1 : port;
+  }
+
   private void populateUsernamePassword() {
     if (exists(UrlPart.USERNAME_PASSWORD)) {
       String usernamePassword = getPart(UrlPart.USERNAME_PASSWORD);
@@ -596,13 +792,10 @@ public class Url {
    */
   private UrlPart nextExistingPart(UrlPart urlPart) {
     UrlPart nextPart = urlPart.getNextPart();
-    if (exists(nextPart)) {
-      return nextPart;
-    } else if (nextPart == null) {
-      return null;
-    } else {
-      return nextExistingPart(nextPart);
+    while (nextPart != null && !exists(nextPart)) {
+      nextPart = nextPart.getNextPart();
     }
+    return nextPart;
   }
 
   /**
@@ -622,10 +815,12 @@ public class Url {
 
   protected void setRawPath(String path) {
     _path = path;
+    clearFormattedUrl();
   }
 
   protected void setRawHost(String host) {
     _host = host;
+    clearFormattedUrl();
   }
 
   protected String getRawPath() {
@@ -636,6 +831,24 @@ public class Url {
     return _host;
   }
 
+  protected void setRawQuery(String query) {
+    _query = query;
+    clearFormattedUrl();
+  }
+
+  protected String getRawQuery() {
+    return _query;
+  }
+
+  /**
+   * Clears the full url and hash code computed from the parts, after a part was replaced.
+   */
+  private void clearFormattedUrl() {
+    _fullUrl = null;
+    _fullUrlWithoutFragment = null;
+    _hashCode = 0;
+  }
+
   protected UrlMarker getUrlMarker() {
     return _urlMarker;
   }
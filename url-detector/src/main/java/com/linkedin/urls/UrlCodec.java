@@ -0,0 +1,185 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * A compact binary form of a Url that keeps the indices of its parts, so it can be turned back into a Url without
+ * parsing the url again.
+ *
+ * A record is a flags byte, the length of the original url in UTF-8 as a varint, the original url in UTF-8, and then
+ * the index of each url part plus one as a varint, in the order of UrlPart.values(); 0 stands for a missing part.
+ * Varints are unsigned, seven bits per byte, low bits first. The only flag is whether the url is a NormalizedUrl; a
+ * decoded NormalizedUrl normalizes its parts again when they are requested, without a QueryNormalizer.
+ *
+ * UrlRecordWriter and UrlRecordReader write and read files of many records.
+ */
+public final class UrlCodec {
+
+  private static final int NORMALIZED_FLAG = 1;
+
+  private static final UrlPart[] URL_PARTS = UrlPart.values();
+
+  /**
+   * The most bytes a varint of an int takes.
+   */
+  static final int MAX_VARINT_LENGTH = 5;
+
+  private UrlCodec() {
+  }
+
+  /**
+   * @param url The url to encode.
+   * @return The record of the url.
+   */
+  public static byte[] encode(Url url) {
+    byte[] bytes = new byte[getMaxLength(url)];
+    return Arrays.copyOf(bytes, encode(url, bytes, 0));
+  }
+
+  /**
+   * @param bytes A record written by encode().
+   * @return The url of the record, a NormalizedUrl if a NormalizedUrl was encoded.
+   * @throws IllegalArgumentException If the bytes are not a valid record.
+   */
+  public static Url decode(byte[] bytes) {
+    return decode(bytes, 0, bytes.length);
+  }
+
+  /**
+   * @return The most bytes the record of the url can take.
+   */
+  static int getMaxLength(Url url) {
+    return 1 + MAX_VARINT_LENGTH + 3 * url.getOriginalUrl().length() + URL_PARTS.length * MAX_VARINT_LENGTH;
+  }
+
+  /**
+   * Writes the record of the url to the bytes, which must have room for getMaxLength(url) bytes from the offset.
+   * @return The offset right after the record.
+   */
+  static int encode(Url url, byte[] bytes, int offset) {
+    String originalUrl = url.getOriginalUrl();
+    UrlMarker urlMarker = url.getUrlMarker();
+    bytes[offset++] = (byte) (url instanceof NormalizedUrl ? NORMALIZED_FLAG : 0);
+
+    //the length of the url in UTF-8 is only known once it is encoded, so encode it after room for the longest length.
+    int urlStart = offset + MAX_VARINT_LENGTH;
+    int urlEnd = writeUtf8(originalUrl, bytes, urlStart);
+    int lengthEnd = writeVarint(urlEnd - urlStart, bytes, offset);
+    System.arraycopy(bytes, urlStart, bytes, lengthEnd, urlEnd - urlStart);
+    offset = lengthEnd + urlEnd - urlStart;
+
+    for (UrlPart urlPart : URL_PARTS) {
+      offset = writeVarint(urlMarker.indexOf(urlPart) + 1, bytes, offset);
+    }
+    return offset;
+  }
+
+  /**
+   * Reads the record at bytes[offset, offset + length).
+   * @throws IllegalArgumentException If the bytes are not a valid record.
+   */
+  static Url decode(byte[] bytes, int offset, int length) {
+    int end = offset + length;
+    int[] position = {offset};
+    int flags = readByte(bytes, position, end);
+    int urlLength = readVarint(bytes, position, end);
+    if (urlLength > end - position[0]) {
+      throw new IllegalArgumentException("The url of the record is longer than the record.");
+    }
+    String originalUrl = new String(bytes, position[0], urlLength, StandardCharsets.UTF_8);
+    position[0] += urlLength;
+
+    UrlMarker urlMarker = new UrlMarker();
+    urlMarker.setOriginalUrl(originalUrl);
+    for (UrlPart urlPart : URL_PARTS) {
+      int index = readVarint(bytes, position, end) - 1;
+      if (index > originalUrl.length()) {
+        throw new IllegalArgumentException("The index of the " + urlPart + " is past the end of the url.");
+      }
+      urlMarker.setIndex(urlPart, index);
+    }
+    if (position[0] != end) {
+      throw new IllegalArgumentException("The record has " + (end - position[0]) + " bytes too many.");
+    }
+    return (flags & NORMALIZED_FLAG) != 0 ? new NormalizedUrl(urlMarker) : urlMarker.createUrl();
+  }
+
+  /**
+   * @return The offset right after the varint.
+   */
+  static int writeVarint(int value, byte[] bytes, int offset) {
+    while ((value & ~0x7f) != 0) {
+      bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    bytes[offset++] = (byte) value;
+    return offset;
+  }
+
+  /**
+   * Reads a varint at position[0] and moves the position past it.
+   */
+  private static int readVarint(byte[] bytes, int[] position, int end) {
+    int value = 0;
+    for (int shift = 0; shift < 7 * MAX_VARINT_LENGTH; shift += 7) {
+      int curr = readByte(bytes, position, end);
+      value |= (curr & 0x7f) << shift;
+      if ((curr & 0x80) == 0) {
+        if (value < 0) {
+          throw new IllegalArgumentException("The record has a negative number.");
+        }
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("The record has a number that is too long.");
+  }
+
+  private static int readByte(byte[] bytes, int[] position, int end) {
+    if (position[0] >= end) {
+      throw new IllegalArgumentException("The record ends too early.");
+    }
+    return bytes[position[0]++] & 0xff;
+  }
+
+  /**
+   * Encodes the text in UTF-8 the way String.getBytes() does, so a lone surrogate becomes a '?' and the decoded text
+   * has as many characters as the original, which keeps the part indices right.
+   * @return The offset right after the text.
+   */
+  private static int writeUtf8(String text, byte[] bytes, int offset) {
+    for (int i = 0; i < text.length(); i++) {
+      char curr = text.charAt(i);
+      if (curr < 0x80) {
+        bytes[offset++] = (byte) curr;
+      } else if (curr < 0x800) {
+        bytes[offset++] = (byte) (0xc0 | curr >> 6);
+        bytes[offset++] = (byte) (0x80 | curr & 0x3f);
+      } else if (Character.isHighSurrogate(curr) && i + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(curr, text.charAt(++i));
+        bytes[offset++] = (byte) (0xf0 | codePoint >> 18);
+        bytes[offset++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+        bytes[offset++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+        bytes[offset++] = (byte) (0x80 | codePoint & 0x3f);
+      } else if (Character.isSurrogate(curr)) {
+        bytes[offset++] = '?';
+      } else {
+        bytes[offset++] = (byte) (0xe0 | curr >> 12);
+        bytes[offset++] = (byte) (0x80 | curr >> 6 & 0x3f);
+        bytes[offset++] = (byte) (0x80 | curr & 0x3f);
+      }
+    }
+    return offset;
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.util.Comparator;
+
+
+/**
+ * Orders urls by their parts, one after the other: scheme, username, password, host, port, path, query and fragment.
+ * Each part is compared lexicographically as getFullUrl() would write it, and the port numerically, so the full urls
+ * are never built. Two urls of the same class compare as 0 exactly when they are equal.
+ *
+ * Urls are compared through their getters, so a NormalizedUrl is ordered by its normalized parts. Sorting urls of
+ * both classes together works, but a Url and a NormalizedUrl that compare as 0 are still not equal.
+ */
+public final class UrlComparator implements Comparator<Url> {
+
+  public static final UrlComparator INSTANCE = new UrlComparator();
+
+  private UrlComparator() {
+  }
+
+  @Override
+  public int compare(Url first, Url second) {
+    if (first == second) {
+      return 0;
+    }
+    int result = first.getShownScheme().compareTo(second.getShownScheme());
+    if (result == 0) {
+      result = first.getShownUsername().compareTo(second.getShownUsername());
+    }
+    if (result == 0) {
+      result = first.getShownPassword().compareTo(second.getShownPassword());
+    }
+    if (result == 0) {
+      result = compareParts(first.getHost(), second.getHost());
+    }
+    if (result == 0) {
+      result = Integer.compare(first.getShownPort(), second.getShownPort());
+    }
+    if (result == 0) {
+      result = compareParts(first.getPath(), second.getPath());
+    }
+    if (result == 0) {
+      result = compareParts(first.getQuery(), second.getQuery());
+    }
+    if (result == 0) {
+      result = first.getFragment().compareTo(second.getFragment());
+    }
+    return result;
+  }
+
+  private static int compareParts(String first, String second) {
+    return (first == null ? "" : first).compareTo(second == null ? "" : second);
+  }
+}
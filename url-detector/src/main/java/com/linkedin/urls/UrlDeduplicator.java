@@ -0,0 +1,538 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Removes the duplicates from more urls than fit in memory, with an external sort: urls are added to a run until the
+ * run reaches the memory budget, then the run is sorted and written to a temporary file as UrlCodec records. merge()
+ * reads the runs and writes each distinct url once, in the order of UrlComparator. It reads up to MAX_MERGE_FAN_IN
+ * runs at once, with buffers sized from the memory budget, and merges more runs than that in several passes.
+ *
+ * A run holds no Url objects. Each url is added to a byte arena as a sort key followed by its UrlCodec record, and the
+ * run sorts an array of the offsets of the entries, comparing the keys byte by byte. The key writes the parts that
+ * UrlComparator compares in an encoding whose byte order is their order, so two keys are equal exactly when the urls
+ * compare as 0, and the records are copied to the run files without being decoded. A large run is split into a range
+ * of offsets per core, which are sorted in parallel on the common ForkJoinPool and then merged through a second array
+ * of offsets. The arena and the two arrays of offsets never take more than the memory budget together, except for a
+ * single url that is larger than the budget.
+ *
+ * Two urls are duplicates when UrlComparator compares them as 0, so add NormalizedUrls to remove the urls that only
+ * differ in how they are written. The runs are read back without a QueryNormalizer (see UrlCodec), so only add
+ * NormalizedUrls that use the default one. Of the duplicates, one is kept.
+ *
+ * The temporary files are deleted by close(). A deduplicator is used once and is not thread safe.
+ */
+public class UrlDeduplicator implements Closeable {
+
+  /**
+   * The largest array the JVM can allocate.
+   */
+  private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+  private static final int MIN_ARENA_LENGTH = 4096;
+
+  /**
+   * The most runs read at once by a pass of the merge. With more runs, the merge takes several passes, each writing
+   * the runs it reads into a single one, so the merge never holds more open files than this.
+   */
+  private static final int MAX_MERGE_FAN_IN = 64;
+
+  /**
+   * The range of the size of the buffer of each run read by the merge, and of the run it writes. The buffers share
+   * the memory budget, but never get smaller than the minimum.
+   */
+  private static final int MIN_MERGE_BUFFER_SIZE = 4 * 1024;
+  private static final int MAX_MERGE_BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Each url takes 4 bytes for its offset and 4 more for its offset while the sorted ranges are merged.
+   */
+  private static final int OFFSET_BYTES = 8;
+
+  /**
+   * Runs with up to this many urls are sorted by the calling thread alone, as are the ranges of a larger run.
+   */
+  private static final int MIN_PARALLEL_SORT_LENGTH = 8192;
+
+  private final Path _tempDirectory;
+  private final long _memoryBudget;
+  private final ForkJoinPool _pool;
+
+  /**
+   * The entries of the current run, each a varint of the length of the sort key, the key, a varint of the length of
+   * the record and the record, and the offset of each entry in the arena.
+   */
+  private byte[] _arena = new byte[0];
+  private int _arenaLength = 0;
+  private int[] _offsets = new int[0];
+  private int _runSize = 0;
+
+  /**
+   * Where two sorted ranges of _offsets are merged, before they are copied back.
+   */
+  private int[] _mergeBuffer = new int[0];
+
+  /**
+   * The sort key of the url being added, before it is copied to the arena.
+   */
+  private byte[] _key = new byte[256];
+
+  /**
+   * Sorts the offsets by the sort keys of their entries.
+   */
+  private final IndexSorter _sorter = new IndexSorter() {
+    @Override
+    int compare(int i, int j) {
+      return compareKeys(_offsets[i], _offsets[j]);
+    }
+
+    @Override
+    void swap(int i, int j) {
+      int offset = _offsets[i];
+      _offsets[i] = _offsets[j];
+      _offsets[j] = offset;
+    }
+  };
+
+  private final List<Path> _runFiles = new ArrayList<Path>();
+  private long _count = 0;
+  private boolean _merged = false;
+
+  /**
+   * @param tempDirectory The directory to write the runs to.
+   * @param memoryBudget About how many bytes of urls to keep in memory before writing them to a run.
+   */
+  public UrlDeduplicator(Path tempDirectory, long memoryBudget) {
+    this(tempDirectory, memoryBudget, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param pool The pool to sort the runs on, which tests make larger than the cores of the machine.
+   */
+  UrlDeduplicator(Path tempDirectory, long memoryBudget, ForkJoinPool pool) {
+    if (memoryBudget <= 0) {
+      throw new IllegalArgumentException("The memory budget must be positive: " + memoryBudget);
+    }
+    _tempDirectory = tempDirectory;
+    _memoryBudget = memoryBudget;
+    _pool = pool;
+  }
+
+  /**
+   * @param url The url to add. It is encoded right away, so it can be changed or dropped afterwards.
+   */
+  public void add(Url url) throws IOException {
+    if (_merged) {
+      throw new IllegalStateException("The urls were already merged.");
+    }
+    int keyLength = writeKey(url);
+    int maxLength = 2 * UrlCodec.MAX_VARINT_LENGTH + keyLength + UrlCodec.getMaxLength(url);
+    if (!reserve(maxLength, false)) {
+      spill();
+      reserve(maxLength, true);
+    }
+
+    _offsets[_runSize++] = _arenaLength;
+    int position = UrlCodec.writeVarint(keyLength, _arena, _arenaLength);
+    System.arraycopy(_key, 0, _arena, position, keyLength);
+    position += keyLength;
+    //like in UrlRecordWriter, the length of the record is only known once it is encoded.
+    int recordStart = position + UrlCodec.MAX_VARINT_LENGTH;
+    int recordEnd = UrlCodec.encode(url, _arena, recordStart);
+    int lengthEnd = UrlCodec.writeVarint(recordEnd - recordStart, _arena, position);
+    System.arraycopy(_arena, recordStart, _arena, lengthEnd, recordEnd - recordStart);
+    _arenaLength = lengthEnd + recordEnd - recordStart;
+    _count++;
+  }
+
+  /**
+   * @return The number of urls added, duplicates included.
+   */
+  public long getCount() {
+    return _count;
+  }
+
+  /**
+   * @return The number of runs written to temporary files so far.
+   */
+  public int getRunCount() {
+    return _runFiles.size();
+  }
+
+  /**
+   * Writes each distinct url that was added once, in the order of UrlComparator.
+   * @param writer The writer to write the distinct urls to. It is not closed.
+   * @return The number of distinct urls.
+   */
+  public long merge(UrlRecordWriter writer) throws IOException {
+    if (_merged) {
+      throw new IllegalStateException("The urls were already merged.");
+    }
+    _merged = true;
+
+    if (_runFiles.isEmpty()) {
+      //everything fit in memory, so there is nothing to read back.
+      int size = sortRun();
+      writeRun(writer, size);
+      clearRun();
+      return size;
+    }
+
+    spill();
+    //the last run is written, so the memory of the runs goes to the buffers of the merge.
+    _arena = new byte[0];
+    _offsets = new int[0];
+    _mergeBuffer = new int[0];
+    int fanIn = (int) Math.max(2, Math.min(MAX_MERGE_FAN_IN, _memoryBudget / MIN_MERGE_BUFFER_SIZE - 1));
+    int bufferSize = (int) Math.max(MIN_MERGE_BUFFER_SIZE, Math.min(MAX_MERGE_BUFFER_SIZE,
+        _memoryBudget / (fanIn + 1)));
+
+    //merge the oldest runs into a new one until the rest can be merged at once.
+    while (_runFiles.size() > fanIn) {
+      List<Path> runFiles = new ArrayList<Path>(_runFiles.subList(0, fanIn));
+      Path runFile = Files.createTempFile(_tempDirectory, "urls", ".run");
+      _runFiles.add(runFile);
+      try (UrlRecordWriter runWriter = new UrlRecordWriter(Files.newOutputStream(runFile), bufferSize)) {
+        mergeRuns(runFiles, runWriter, bufferSize);
+      }
+      for (Path merged : runFiles) {
+        Files.delete(merged);
+      }
+      _runFiles.subList(0, fanIn).clear();
+    }
+    return mergeRuns(_runFiles, writer, bufferSize);
+  }
+
+  /**
+   * Writes each distinct url of the runs once, in the order of UrlComparator.
+   * @return The number of distinct urls.
+   */
+  private static long mergeRuns(List<Path> runFiles, UrlRecordWriter writer, int bufferSize) throws IOException {
+    List<UrlRecordReader> readers = new ArrayList<UrlRecordReader>(runFiles.size());
+    try {
+      PriorityQueue<RunHead> heads = new PriorityQueue<RunHead>(runFiles.size());
+      for (Path runFile : runFiles) {
+        UrlRecordReader reader = new UrlRecordReader(Files.newInputStream(runFile), bufferSize);
+        readers.add(reader);
+        RunHead head = new RunHead(reader);
+        if (head.advance()) {
+          heads.add(head);
+        }
+      }
+
+      long distinct = 0;
+      Url last = null;
+      while (!heads.isEmpty()) {
+        RunHead head = heads.poll();
+        if (last == null || UrlComparator.INSTANCE.compare(last, head._url) != 0) {
+          last = head._url;
+          writer.write(last);
+          distinct++;
+        }
+        if (head.advance()) {
+          heads.add(head);
+        }
+      }
+      return distinct;
+    } finally {
+      for (UrlRecordReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Deletes the temporary files of the runs.
+   */
+  @Override
+  public void close() throws IOException {
+    clearRun();
+    IOException exception = null;
+    for (Path runFile : _runFiles) {
+      try {
+        Files.deleteIfExists(runFile);
+      } catch (IOException e) {
+        exception = e;
+      }
+    }
+    _runFiles.clear();
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * Sorts the current run and writes it to a temporary file.
+   */
+  private void spill() throws IOException {
+    if (_runSize == 0) {
+      return;
+    }
+    int size = sortRun();
+    Path runFile = Files.createTempFile(_tempDirectory, "urls", ".run");
+    _runFiles.add(runFile);
+    try (UrlRecordWriter writer = new UrlRecordWriter(Files.newOutputStream(runFile))) {
+      writeRun(writer, size);
+    }
+    clearRun();
+  }
+
+  /**
+   * Sorts the current run and moves the offsets of its distinct urls to the front.
+   * @return The number of distinct urls in the run.
+   */
+  private int sortRun() {
+    int parallelism = _pool.getParallelism();
+    if (_runSize <= MIN_PARALLEL_SORT_LENGTH || parallelism <= 1) {
+      _sorter.sort(0, _runSize - 1);
+    } else {
+      if (_mergeBuffer.length < _runSize) {
+        _mergeBuffer = new int[_offsets.length];
+      }
+      int rangeLength = Math.max(MIN_PARALLEL_SORT_LENGTH, (_runSize + parallelism - 1) / parallelism);
+      _pool.invoke(new SortTask(0, _runSize, rangeLength));
+    }
+    int distinct = 0;
+    for (int i = 0; i < _runSize; i++) {
+      if (distinct == 0 || compareKeys(_offsets[distinct - 1], _offsets[i]) != 0) {
+        _offsets[distinct++] = _offsets[i];
+      }
+    }
+    return distinct;
+  }
+
+  /**
+   * Writes the records of the first entries of the run.
+   */
+  private void writeRun(UrlRecordWriter writer, int size) throws IOException {
+    int[] position = new int[1];
+    for (int i = 0; i < size; i++) {
+      position[0] = _offsets[i];
+      int keyLength = readVarint(position);
+      position[0] += keyLength;
+      int recordLength = readVarint(position);
+      writer.write(_arena, position[0], recordLength);
+    }
+  }
+
+  private void clearRun() {
+    _arenaLength = 0;
+    _runSize = 0;
+  }
+
+  /**
+   * Makes room in the arena for an entry of up to the given length, and in the offsets for its offset, growing them
+   * as long as they fit in the memory budget together.
+   * @param force True to grow them past the budget if needed, for a url that doesn't fit in an empty run.
+   * @return False if there is no room within the budget.
+   */
+  private boolean reserve(int maxLength, boolean force) {
+    long arenaNeeded = (long) _arenaLength + maxLength;
+    if (arenaNeeded > _arena.length) {
+      //leave room for the offsets of as many entries as fit in the arena, at the average length of the entries.
+      long averageLength = arenaNeeded / (_runSize + 1);
+      long maxArenaLength = Math.min(_memoryBudget - (long) OFFSET_BYTES * _offsets.length,
+          _memoryBudget / (averageLength + OFFSET_BYTES) * averageLength);
+      long length = Math.min(Math.max(arenaNeeded, Math.max(2L * _arena.length, MIN_ARENA_LENGTH)),
+          Math.min(maxArenaLength, MAX_ARRAY_LENGTH));
+      if (length < arenaNeeded) {
+        if (!force) {
+          return false;
+        }
+        length = arenaNeeded;
+      }
+      _arena = Arrays.copyOf(_arena, (int) length);
+    }
+    if (_runSize == _offsets.length) {
+      long length = Math.min(Math.max(2L * _offsets.length, 16),
+          Math.min((_memoryBudget - _arena.length) / OFFSET_BYTES, MAX_ARRAY_LENGTH));
+      if (length <= _runSize) {
+        if (!force) {
+          return false;
+        }
+        length = _runSize + 1;
+      }
+      _offsets = Arrays.copyOf(_offsets, (int) length);
+    }
+    return true;
+  }
+
+  /**
+   * Writes the sort key of the url to _key: the parts UrlComparator compares, in its order. Each character of a part
+   * is written as its value plus one in the variable length encoding of UTF-8, which keeps the order of the values,
+   * and each part ends with a 0 byte, which is less than any character. The port is written as 4 bytes, big endian.
+   * @return The length of the key.
+   */
+  private int writeKey(Url url) {
+    String host = url.getHost();
+    String path = url.getPath();
+    String query = url.getQuery();
+    String fragment = url.getFragment();
+    String[] parts = {url.getShownScheme(), url.getShownUsername(), url.getShownPassword(), host == null ? "" : host,
+        null, path == null ? "" : path, query == null ? "" : query, fragment == null ? "" : fragment};
+    int maxLength = 4;
+    for (String part : parts) {
+      maxLength += part == null ? 0 : 4 * part.length() + 1;
+    }
+    if (_key.length < maxLength) {
+      _key = new byte[Math.max(maxLength, 2 * _key.length)];
+    }
+
+    int length = 0;
+    for (String part : parts) {
+      if (part == null) {
+        int port = url.getShownPort() ^ Integer.MIN_VALUE;
+        _key[length++] = (byte) (port >>> 24);
+        _key[length++] = (byte) (port >>> 16);
+        _key[length++] = (byte) (port >>> 8);
+        _key[length++] = (byte) port;
+        continue;
+      }
+      for (int i = 0; i < part.length(); i++) {
+        int value = part.charAt(i) + 1;
+        if (value < 0x80) {
+          _key[length++] = (byte) value;
+        } else if (value < 0x800) {
+          _key[length++] = (byte) (0xc0 | value >> 6);
+          _key[length++] = (byte) (0x80 | value & 0x3f);
+        } else if (value < 0x10000) {
+          _key[length++] = (byte) (0xe0 | value >> 12);
+          _key[length++] = (byte) (0x80 | value >> 6 & 0x3f);
+          _key[length++] = (byte) (0x80 | value & 0x3f);
+        } else {
+          _key[length++] = (byte) (0xf0 | value >> 18);
+          _key[length++] = (byte) (0x80 | value >> 12 & 0x3f);
+          _key[length++] = (byte) (0x80 | value >> 6 & 0x3f);
+          _key[length++] = (byte) (0x80 | value & 0x3f);
+        }
+      }
+      _key[length++] = 0;
+    }
+    return length;
+  }
+
+  /**
+   * Compares the sort keys of the entries at the two offsets of the arena, as unsigned bytes.
+   */
+  private int compareKeys(int first, int second) {
+    int[] position = {first};
+    int firstLength = readVarint(position);
+    int firstStart = position[0];
+    position[0] = second;
+    int secondLength = readVarint(position);
+    int secondStart = position[0];
+    int length = Math.min(firstLength, secondLength);
+    for (int i = 0; i < length; i++) {
+      int result = (_arena[firstStart + i] & 0xff) - (_arena[secondStart + i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return firstLength - secondLength;
+  }
+
+  /**
+   * Reads a varint of the arena at position[0] and moves the position past it.
+   */
+  private int readVarint(int[] position) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int curr = _arena[position[0]++];
+      value |= (curr & 0x7f) << shift;
+      if ((curr & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Merges the sorted ranges [low, middle) and [middle, high) of the offsets.
+   */
+  private void merge(int low, int middle, int high) {
+    if (compareKeys(_offsets[middle - 1], _offsets[middle]) <= 0) {
+      return;
+    }
+    int i = low;
+    int j = middle;
+    int k = low;
+    while (i < middle && j < high) {
+      _mergeBuffer[k++] = compareKeys(_offsets[j], _offsets[i]) < 0 ? _offsets[j++] : _offsets[i++];
+    }
+    System.arraycopy(_offsets, i, _mergeBuffer, k, middle - i);
+    k += middle - i;
+    System.arraycopy(_offsets, j, _mergeBuffer, k, high - j);
+    System.arraycopy(_mergeBuffer, low, _offsets, low, high - low);
+  }
+
+  /**
+   * Sorts the offsets in [low, high): a range up to the range length is sorted by the thread that runs the task, and
+   * a longer one is split in two halves that are sorted in parallel and then merged. The tasks only read the arena and
+   * write their own ranges of the offsets.
+   */
+  private final class SortTask extends RecursiveAction {
+    private final int _low;
+    private final int _high;
+    private final int _rangeLength;
+
+    SortTask(int low, int high, int rangeLength) {
+      _low = low;
+      _high = high;
+      _rangeLength = rangeLength;
+    }
+
+    @Override
+    protected void compute() {
+      if (_high - _low <= _rangeLength) {
+        _sorter.sort(_low, _high - 1);
+        return;
+      }
+      int middle = (_low + _high) >>> 1;
+      invokeAll(new SortTask(_low, middle, _rangeLength), new SortTask(middle, _high, _rangeLength));
+      merge(_low, middle, _high);
+    }
+  }
+
+  /**
+   * The next url of a run, ordered by the url.
+   */
+  private static final class RunHead implements Comparable<RunHead> {
+    private final UrlRecordReader _reader;
+    private Url _url;
+
+    RunHead(UrlRecordReader reader) {
+      _reader = reader;
+    }
+
+    /**
+     * @return False if the run has no more urls.
+     */
+    boolean advance() throws IOException {
+      _url = _reader.read();
+      return _url != null;
+    }
+
+    @Override
+    public int compareTo(RunHead other) {
+      return UrlComparator.INSTANCE.compare(_url, other._url);
+    }
+  }
+}
@@ -0,0 +1,387 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * An immutable, sorted set of urls that takes a fraction of the memory of a HashSet of strings. The urls are kept in
+ * UTF-8, sorted by their bytes, in blocks of BLOCK_SIZE: the first url of a block is written in full, and each of the
+ * others as the length of the prefix it shares with the url before it plus the rest of its bytes. Since sorted urls
+ * share long prefixes, such as their scheme and host, most urls take only a few bytes.
+ *
+ * Besides membership tests, the dictionary answers prefix range queries, such as all of the urls of a host or under a
+ * path, and rank and select: the position of a url in the sorted order, and the url at a position. A lookup binary
+ * searches the first urls of the blocks and then reads one block.
+ *
+ * The dictionary is a single byte buffer, so it can be written to a file and mapped back into memory by load(), which
+ * doesn't read the file up front. A dictionary can be shared between threads.
+ */
+public final class UrlDictionary {
+
+  /**
+   * The number of urls in a block. A larger block takes less memory but makes a lookup read more urls.
+   */
+  static final int BLOCK_SIZE = 16;
+
+  /**
+   * "URLD" followed by the version of the format.
+   */
+  private static final int MAGIC = 0x55524c44;
+  private static final int VERSION = 1;
+
+  /**
+   * The header is the magic number, the version, the number of urls, the number of bytes of the longest url and the
+   * number of blocks, followed by the offset of each block from the start of the data.
+   */
+  private static final int HEADER_SIZE = 5 * 4;
+
+  /**
+   * Orders the keys of the urls by their unsigned bytes, the order they are kept in.
+   */
+  private static final Comparator<byte[]> KEY_COMPARATOR = new Comparator<byte[]>() {
+    @Override
+    public int compare(byte[] first, byte[] second) {
+      return UrlDictionary.compare(first, second);
+    }
+  };
+
+  private final ByteBuffer _buffer;
+  private final int _size;
+  private final int _maxLength;
+  private final int _blockCount;
+  private final int _dataStart;
+
+  private UrlDictionary(ByteBuffer buffer) {
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("The buffer doesn't hold a url dictionary.");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Unsupported url dictionary version " + buffer.getInt(4) + ".");
+    }
+    _buffer = buffer;
+    _size = buffer.getInt(8);
+    _maxLength = buffer.getInt(12);
+    _blockCount = buffer.getInt(16);
+    _dataStart = HEADER_SIZE + 4 * _blockCount;
+  }
+
+  /**
+   * Creates a dictionary of the urls, keyed by getFullUrlWithoutFragment(), which for a NormalizedUrl is its
+   * normalized form. Duplicates are kept once and the urls don't need to be sorted.
+   */
+  public static UrlDictionary create(Iterator<? extends Url> urls) {
+    List<String> keys = new ArrayList<String>();
+    while (urls.hasNext()) {
+      keys.add(urls.next().getFullUrlWithoutFragment());
+    }
+    return create(keys);
+  }
+
+  /**
+   * Creates a dictionary of the urls as they are written. Duplicates are kept once and the urls don't need to be
+   * sorted.
+   */
+  public static UrlDictionary create(Collection<? extends CharSequence> urls) {
+    byte[][] keys = new byte[urls.size()][];
+    int count = 0;
+    for (CharSequence url : urls) {
+      keys[count++] = toBytes(url);
+    }
+    Arrays.sort(keys, KEY_COMPARATOR);
+
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    int[] blockOffsets = new int[(count + BLOCK_SIZE - 1) / BLOCK_SIZE];
+    byte[] varints = new byte[2 * UrlCodec.MAX_VARINT_LENGTH];
+    byte[] previous = null;
+    int size = 0;
+    int maxLength = 0;
+    for (int i = 0; i < count; i++) {
+      byte[] key = keys[i];
+      if (previous != null && Arrays.equals(previous, key)) {
+        continue;
+      }
+      int shared = 0;
+      if (size % BLOCK_SIZE == 0) {
+        blockOffsets[size / BLOCK_SIZE] = data.size();
+        data.write(varints, 0, UrlCodec.writeVarint(key.length, varints, 0));
+      } else {
+        shared = sharedPrefixLength(previous, key);
+        int end = UrlCodec.writeVarint(shared, varints, 0);
+        data.write(varints, 0, UrlCodec.writeVarint(key.length - shared, varints, end));
+      }
+      data.write(key, shared, key.length - shared);
+      maxLength = Math.max(maxLength, key.length);
+      previous = key;
+      size++;
+    }
+
+    int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 * blockCount + data.size());
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(maxLength).putInt(blockCount);
+    for (int i = 0; i < blockCount; i++) {
+      buffer.putInt(blockOffsets[i]);
+    }
+    buffer.put(data.toByteArray());
+    buffer.flip();
+    return new UrlDictionary(buffer);
+  }
+
+  /**
+   * Maps a dictionary written by write() into memory. The file is read as the dictionary is used, not up front.
+   * @param path The file to map.
+   * @throws IOException If the file can't be read.
+   * @throws IllegalArgumentException If the file doesn't hold a dictionary.
+   */
+  public static UrlDictionary load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return new UrlDictionary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Wraps a buffer holding a dictionary written by write(), from its position to its limit.
+   * @throws IllegalArgumentException If the buffer doesn't hold a dictionary.
+   */
+  public static UrlDictionary wrap(ByteBuffer buffer) {
+    return new UrlDictionary(buffer.slice());
+  }
+
+  /**
+   * Writes the dictionary, to be loaded again with load() or wrap().
+   */
+  public void write(OutputStream outputStream) throws IOException {
+    ByteBuffer buffer = _buffer.duplicate();
+    buffer.clear();
+    byte[] chunk = new byte[Math.min(buffer.remaining(), 64 * 1024)];
+    while (buffer.hasRemaining()) {
+      int length = Math.min(chunk.length, buffer.remaining());
+      buffer.get(chunk, 0, length);
+      outputStream.write(chunk, 0, length);
+    }
+  }
+
+  /**
+   * @return The number of urls.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @return The number of bytes the dictionary takes.
+   */
+  public int getSizeInBytes() {
+    return _buffer.capacity();
+  }
+
+  /**
+   * @return True if the dictionary holds the url.
+   */
+  public boolean contains(CharSequence url) {
+    return indexOf(url) != -1;
+  }
+
+  /**
+   * @return The position of the url in the sorted order, or -1 if the dictionary doesn't hold it.
+   */
+  public int indexOf(CharSequence url) {
+    byte[] key = toBytes(url);
+    int rank = rank(key, false);
+    if (rank == _size) {
+      return -1;
+    }
+    int[] length = new int[1];
+    byte[] bytes = select(rank, new byte[_maxLength], length);
+    return compare(bytes, key, length[0]) == 0 ? rank : -1;
+  }
+
+  /**
+   * @return The number of urls that come before the url in the sorted order, whether or not the dictionary holds it.
+   */
+  public int rank(CharSequence url) {
+    return rank(toBytes(url), false);
+  }
+
+  /**
+   * @param index The position of a url in the sorted order, from 0 to size() - 1.
+   * @return The url at that position.
+   */
+  public String select(int index) {
+    if (index < 0 || index >= _size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+    }
+    int[] length = new int[1];
+    byte[] bytes = select(index, new byte[_maxLength], length);
+    return new String(bytes, 0, length[0], StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param prefix A prefix, such as "http://www.linkedin.com/" for the urls of a host or "http://www.linkedin.com/in/"
+   *     for the urls under a path.
+   * @return The position of the first url that starts with the prefix. The urls that start with it are at
+   *     [getPrefixStart(prefix), getPrefixEnd(prefix)).
+   */
+  public int getPrefixStart(CharSequence prefix) {
+    return rank(toBytes(prefix), false);
+  }
+
+  /**
+   * @return The position right after the last url that starts with the prefix. See getPrefixStart().
+   */
+  public int getPrefixEnd(CharSequence prefix) {
+    return rank(toBytes(prefix), true);
+  }
+
+  /**
+   * Counts the urls that are less than the key, or, for a prefix, that are less than the key or start with it.
+   */
+  private int rank(byte[] key, boolean prefix) {
+    //find the last block whose first url comes before the key, or starts with it for a prefix.
+    int low = 0;
+    int high = _blockCount - 1;
+    int block = -1;
+    int[] position = new int[1];
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      position[0] = _dataStart + _buffer.getInt(HEADER_SIZE + 4 * middle);
+      int length = readVarint(position);
+      if (isBefore(compareAt(position[0], length, key), key, prefix)) {
+        block = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (block == -1) {
+      return 0;
+    }
+
+    byte[] current = new byte[_maxLength];
+    position[0] = _dataStart + _buffer.getInt(HEADER_SIZE + 4 * block);
+    int rank = block * BLOCK_SIZE;
+    int end = Math.min(rank + BLOCK_SIZE, _size);
+    for (int i = rank; i < end; i++) {
+      int length = readEntry(position, current, i == rank);
+      if (!isBefore(compare(current, key, length), key, prefix)) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * @param comparison How the url compares to the key.
+   * @return True if the url counts toward the rank of the key.
+   */
+  private static boolean isBefore(int comparison, byte[] key, boolean prefix) {
+    //a url that starts with the key is equal to it, or longer with a common prefix as long as the key.
+    return comparison < 0 || (prefix && (comparison == 0 || comparison == key.length + 1));
+  }
+
+  /**
+   * Reads url i into current.
+   * @return The bytes of the url, in the first length[0] bytes of current.
+   */
+  private byte[] select(int index, byte[] current, int[] length) {
+    int block = index / BLOCK_SIZE;
+    int[] position = {_dataStart + _buffer.getInt(HEADER_SIZE + 4 * block)};
+    for (int i = block * BLOCK_SIZE; i <= index; i++) {
+      length[0] = readEntry(position, current, i == block * BLOCK_SIZE);
+    }
+    return current;
+  }
+
+  /**
+   * Reads the url at position[0] into current, which holds the url before it, and moves the position past it.
+   * @return The length of the url.
+   */
+  private int readEntry(int[] position, byte[] current, boolean first) {
+    int shared = first ? 0 : readVarint(position);
+    int suffix = readVarint(position);
+    for (int i = 0; i < suffix; i++) {
+      current[shared + i] = _buffer.get(position[0]++);
+    }
+    return shared + suffix;
+  }
+
+  private int readVarint(int[] position) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int curr = _buffer.get(position[0]++) & 0xff;
+      value |= (curr & 0x7f) << shift;
+      if ((curr & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Compares the url of the given length at the position in the buffer with the key, by unsigned bytes.
+   * @return See compare(byte[], byte[], int).
+   */
+  private int compareAt(int position, int length, byte[] key) {
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int difference = (_buffer.get(position + i) & 0xff) - (key[i] & 0xff);
+      if (difference != 0) {
+        return difference < 0 ? -(i + 1) : i + 1;
+      }
+    }
+    return length < key.length ? -(common + 1) : length > key.length ? common + 1 : 0;
+  }
+
+  /**
+   * Compares the first length bytes of url with the key, by unsigned bytes.
+   * @return 0 if they are equal, else the length of their common prefix plus one, negated if the url comes first.
+   */
+  private static int compare(byte[] url, byte[] key, int length) {
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int difference = (url[i] & 0xff) - (key[i] & 0xff);
+      if (difference != 0) {
+        return difference < 0 ? -(i + 1) : i + 1;
+      }
+    }
+    return length < key.length ? -(common + 1) : length > key.length ? common + 1 : 0;
+  }
+
+  private static int compare(byte[] first, byte[] second) {
+    return Integer.signum(compare(first, second, first.length));
+  }
+
+  private static int sharedPrefixLength(byte[] first, byte[] second) {
+    int length = Math.min(first.length, second.length);
+    for (int i = 0; i < length; i++) {
+      if (first[i] != second[i]) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  private static byte[] toBytes(CharSequence text) {
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+/**
+ * Computes 64 and 128 bit fingerprints of urls, for deduplicating and joining large sets of urls.
+ *
+ * The fingerprint is the 128 bit MurmurHash3 (x64 variant, seed 0) of the characters of the url as little endian
+ * UTF-16, which is the same as Guava's murmur3_128().hashUnencodedChars(). The 64 bit fingerprint is the first half of
+ * the 128 bit one. Url.getFingerprint64() and Url.getFingerprint128() feed the parts of a url to the hash one after
+ * the other, so they give the same value as hashing getFullUrlWithoutFragment() with hash64() or hash128(), without
+ * building that string. For a NormalizedUrl this fingerprints the normalized url.
+ */
+public final class UrlFingerprint implements Appendable {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  /**
+   * The number of bytes in a block of the hash.
+   */
+  private static final int BLOCK_SIZE = 16;
+
+  private long _h1 = 0;
+  private long _h2 = 0;
+
+  /**
+   * The bytes of the current block that were added so far: the first 8 in _k1 and the rest in _k2, little endian.
+   */
+  private long _k1 = 0;
+  private long _k2 = 0;
+  private int _blockLength = 0;
+
+  /**
+   * The number of bytes hashed, not counting the current block.
+   */
+  private long _length = 0;
+
+  UrlFingerprint() {
+  }
+
+  /**
+   * @return The 64 bit fingerprint of the text, such as the full url.
+   */
+  public static long hash64(CharSequence text) {
+    return new UrlFingerprint().append(text).getHash64();
+  }
+
+  /**
+   * @return The 128 bit fingerprint of the text, such as the full url, as two longs.
+   */
+  public static long[] hash128(CharSequence text) {
+    return new UrlFingerprint().append(text).getHash128();
+  }
+
+  @Override
+  public UrlFingerprint append(CharSequence text) {
+    if (text == null) {
+      text = "null";
+    }
+    return append(text, 0, text.length());
+  }
+
+  @Override
+  public UrlFingerprint append(CharSequence text, int start, int end) {
+    if (text == null) {
+      text = "null";
+    }
+    for (int i = start; i < end; i++) {
+      append(text.charAt(i));
+    }
+    return this;
+  }
+
+  @Override
+  public UrlFingerprint append(char curr) {
+    //only characters are added, so a character never straddles the two halves of a block.
+    if (_blockLength < 8) {
+      _k1 |= (long) curr << (_blockLength * 8);
+    } else {
+      _k2 |= (long) curr << ((_blockLength - 8) * 8);
+    }
+    _blockLength += 2;
+    if (_blockLength == BLOCK_SIZE) {
+      mixBlock();
+    }
+    return this;
+  }
+
+  /**
+   * @return The 64 bit fingerprint of what was added so far.
+   */
+  long getHash64() {
+    return getHash128()[0];
+  }
+
+  /**
+   * @return The 128 bit fingerprint of what was added so far.
+   */
+  long[] getHash128() {
+    long h1 = _h1 ^ mixK1(_k1);
+    long h2 = _h2 ^ mixK2(_k2);
+    long length = _length + _blockLength;
+
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = fmix64(h1);
+    h2 = fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    return new long[] {h1, h2};
+  }
+
+  private void mixBlock() {
+    _h1 ^= mixK1(_k1);
+    _h1 = Long.rotateLeft(_h1, 27);
+    _h1 += _h2;
+    _h1 = _h1 * 5 + 0x52dce729;
+
+    _h2 ^= mixK2(_k2);
+    _h2 = Long.rotateLeft(_h2, 31);
+    _h2 += _h1;
+    _h2 = _h2 * 5 + 0x38495ab5;
+
+    _k1 = 0;
+    _k2 = 0;
+    _length += BLOCK_SIZE;
+    _blockLength = 0;
+  }
+
+  private static long mixK1(long k1) {
+    k1 *= C1;
+    k1 = Long.rotateLeft(k1, 31);
+    k1 *= C2;
+    return k1;
+  }
+
+  private static long mixK2(long k2) {
+    k2 *= C2;
+    k2 = Long.rotateLeft(k2, 33);
+    k2 *= C1;
+    return k2;
+  }
+
+  private static long fmix64(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import com.linkedin.urls.detection.CharUtils;
+
+
+/**
+ * Parses a string that holds a single, plain url in one pass, without running the UrlDetector.
+ *
+ * Only urls that the UrlDetector is known to read as a single url from the start to the end of the string are
+ * accepted, and the result has the same UrlMarker indices the UrlDetector would give them. That covers urls like
+ * https://www.linkedin.com:443/in/someone?trk=abc#top. Anything unusual, such as whitespace, a username and password,
+ * ip addresses, encoded characters in the host or single level domains, is left to the UrlDetector.
+ */
+final class UrlParser {
+
+  /**
+   * The schemes that are parsed. They are all in the UrlDetector's list of valid schemes.
+   */
+  private static final String[] SCHEMES = {"http://", "https://", "ftp://", "ftps://"};
+
+  /**
+   * The longest host that is parsed, well under the UrlDetector's maximum domain length.
+   */
+  private static final int MAX_HOST_LENGTH = 200;
+
+  /**
+   * The longest label that is parsed; the UrlDetector doesn't check the length of all labels the same way.
+   */
+  private static final int MAX_LABEL_LENGTH = 63;
+
+  private static final int MIN_TOP_LEVEL_DOMAIN = 2;
+  private static final int MAX_TOP_LEVEL_DOMAIN = 22;
+
+  /**
+   * Parses the url.
+   * @param url The string holding the url.
+   * @return The marker of the url, or null if the url has to be read by the UrlDetector instead.
+   */
+  static UrlMarker parse(String url) {
+    int length = url.length();
+    int hostIndex = schemeLength(url);
+    if (hostIndex == -1) {
+      return null;
+    }
+
+    int index = readHost(url, hostIndex);
+    if (index == -1) {
+      return null;
+    }
+
+    int portIndex = -1;
+    if (index < length && url.charAt(index) == ':') {
+      portIndex = index + 1;
+      index = portIndex;
+      while (index < length && CharUtils.isNumeric(url.charAt(index))) {
+        index++;
+      }
+      if (index == portIndex) {
+        return null;
+      }
+    }
+
+    if (index < length && !isPathStart(url.charAt(index))) {
+      return null;
+    }
+
+    //everything after the host is read as is up to the end of the string; only the first ? and # split it up.
+    int pathIndex = -1;
+    int queryIndex = -1;
+    int fragmentIndex = -1;
+    for (int i = index; i < length; i++) {
+      char curr = url.charAt(i);
+      if (curr <= ' ') {
+        return null;
+      }
+      if (i == index && curr == '/') {
+        pathIndex = i;
+      } else if (curr == '?' && queryIndex == -1 && fragmentIndex == -1) {
+        queryIndex = i;
+      } else if (curr == '#' && fragmentIndex == -1) {
+        fragmentIndex = i;
+      }
+    }
+
+    UrlMarker urlMarker = new UrlMarker();
+    urlMarker.setOriginalUrl(url);
+    urlMarker.setIndex(UrlPart.SCHEME, hostIndex > 0 ? 0 : -1);
+    urlMarker.setIndex(UrlPart.HOST, hostIndex);
+    urlMarker.setIndex(UrlPart.PORT, portIndex);
+    urlMarker.setIndex(UrlPart.PATH, pathIndex);
+    urlMarker.setIndex(UrlPart.QUERY, queryIndex);
+    urlMarker.setIndex(UrlPart.FRAGMENT, fragmentIndex);
+    return urlMarker;
+  }
+
+  /**
+   * @return The length of the scheme and its slashes, 0 if there is no scheme, or -1 if the start of the url can't be
+   *     parsed here.
+   */
+  private static int schemeLength(String url) {
+    for (String scheme : SCHEMES) {
+      if (url.regionMatches(true, 0, scheme, 0, scheme.length())) {
+        return scheme.length();
+      }
+    }
+    return url.startsWith("/") ? -1 : 0;
+  }
+
+  /**
+   * Reads a host name made of letters, digits, dashes and dots, with at least two labels, no empty labels and a valid
+   * top level domain. At least one letter is required so that ip addresses are left to the UrlDetector.
+   * @return The index right after the host, or -1 if the host can't be parsed here.
+   */
+  private static int readHost(String url, int start) {
+    int length = url.length();
+    if (url.regionMatches(true, start, "0x", 0, 2)) {
+      return -1;
+    }
+
+    int dots = 0;
+    int labelLength = 0;
+    boolean hasLetter = false;
+    int index = start;
+    for (; index < length; index++) {
+      char curr = url.charAt(index);
+      if (curr == '.') {
+        if (labelLength == 0) {
+          return -1;
+        }
+        dots++;
+        labelLength = 0;
+      } else if (CharUtils.isAlphaNumeric(curr) || curr == '-') {
+        hasLetter |= CharUtils.isAlpha(curr);
+        if (++labelLength > MAX_LABEL_LENGTH) {
+          return -1;
+        }
+      } else if (curr == ':' || isPathStart(curr)) {
+        break;
+      } else {
+        return -1;
+      }
+    }
+
+    if (dots == 0 || labelLength == 0 || !hasLetter || index - start > MAX_HOST_LENGTH) {
+      return -1;
+    }
+    boolean international = labelLength >= 4 && url.regionMatches(true, index - labelLength, "xn--", 0, 4);
+    if (!international && (labelLength < MIN_TOP_LEVEL_DOMAIN || labelLength > MAX_TOP_LEVEL_DOMAIN)) {
+      return -1;
+    }
+    return index;
+  }
+
+  private static boolean isPathStart(char curr) {
+    return curr == '/' || curr == '?' || curr == '#';
+  }
+
+  private UrlParser() { }
+}
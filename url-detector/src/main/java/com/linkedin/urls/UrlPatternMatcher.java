@@ -0,0 +1,572 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Finds which of many match patterns, in the format browsers use for extensions, match a url. A pattern looks like
+ * "*://*.example.com/docs/*":
+ * - The scheme is a scheme such as "https", or "*" for http and https.
+ * - The host is a host name such as "www.example.com", "*.example.com" for example.com and all of its subdomains, or
+ *     "*" for any host. It can be followed by a port, such as ":8080", which the url then has to have.
+ * - The path is a glob in which "*" matches any characters, including none. It is matched against the path and the
+ *     query of the url, as written in the original url, so "/docs/*" matches /docs/a?b=c.
+ * - The pattern "&lt;all_urls&gt;" matches every url.
+ * The id of a pattern is its index in the list it was compiled from.
+ *
+ * The patterns are grouped in a trie by the labels of their host, read from right to left, and the path globs of the
+ * patterns of each host are compiled into one automaton. Matching a url walks the labels of its host once, and the
+ * path of the url once for each host in the trie that applies, instead of testing the patterns one at a time.
+ * A matcher is immutable and can be shared between threads.
+ */
+public final class UrlPatternMatcher {
+
+  private static final String ALL_URLS = "<all_urls>";
+
+  private static final int[] NO_MATCHES = new int[0];
+
+  private static final int NO_STATE = -1;
+
+  /**
+   * For each pattern: its scheme in lower case, or null for "*". Patterns that match every url have ALL_URLS.
+   */
+  private final String[] _schemes;
+
+  /**
+   * For each pattern: the port the url must have, or -1 for any port.
+   */
+  private final int[] _ports;
+
+  /**
+   * The host trie. The children of node n are at [_hostChildStarts[n], _hostChildStarts[n + 1]), sorted by label.
+   * Node 0 is the root.
+   */
+  private final String[] _hostLabels;
+  private final int[] _hostChildStarts;
+
+  /**
+   * For each host node: the first path state of the patterns with exactly this host, and of the patterns with this
+   * host and its subdomains; or NO_STATE if there are none. The subdomain patterns of the root are the ones for any
+   * host.
+   */
+  private final int[] _exactPathStates;
+  private final int[] _subdomainPathStates;
+
+  /**
+   * The path automaton of all hosts. The transitions of state s are at [_transitionStarts[s], _transitionStarts[s + 1])
+   * of _transitionChars and _transitionTargets, sorted by character.
+   */
+  private final int[] _transitionStarts;
+  private final char[] _transitionChars;
+  private final int[] _transitionTargets;
+
+  /**
+   * For each state: the state reached by a "*" in the glob, or NO_STATE.
+   */
+  private final int[] _starStates;
+
+  /**
+   * For each state: whether it stays in itself on any character, which is true for the states reached by a "*".
+   */
+  private final boolean[] _loops;
+
+  /**
+   * The ids of the patterns whose glob ends at state s are at [_acceptStarts[s], _acceptStarts[s + 1]) of _acceptIds.
+   */
+  private final int[] _acceptStarts;
+  private final int[] _acceptIds;
+
+  private UrlPatternMatcher(Builder builder) {
+    _schemes = builder._schemes.toArray(new String[builder._schemes.size()]);
+    _ports = new int[builder._ports.size()];
+    for (int i = 0; i < _ports.length; i++) {
+      _ports[i] = builder._ports.get(i);
+    }
+
+    //number the host nodes breadth first, so the children of each node are next to each other.
+    List<HostNode> hostNodes = new ArrayList<HostNode>();
+    hostNodes.add(builder._root);
+    for (int i = 0; i < hostNodes.size(); i++) {
+      hostNodes.addAll(hostNodes.get(i)._children.values());
+    }
+    int hostNodeCount = hostNodes.size();
+    _hostLabels = new String[hostNodeCount];
+    _hostChildStarts = new int[hostNodeCount + 1];
+    _exactPathStates = new int[hostNodeCount];
+    _subdomainPathStates = new int[hostNodeCount];
+    List<PathNode> pathNodes = new ArrayList<PathNode>();
+    int childStart = 1;
+    for (int i = 0; i < hostNodeCount; i++) {
+      HostNode hostNode = hostNodes.get(i);
+      _hostLabels[i] = hostNode._label;
+      _hostChildStarts[i] = childStart;
+      childStart += hostNode._children.size();
+      _exactPathStates[i] = number(hostNode._exactPaths, pathNodes);
+      _subdomainPathStates[i] = number(hostNode._subdomainPaths, pathNodes);
+    }
+    _hostChildStarts[hostNodeCount] = childStart;
+
+    int size = pathNodes.size();
+    int transitionCount = 0;
+    int acceptCount = 0;
+    for (PathNode pathNode : pathNodes) {
+      transitionCount += pathNode._children.size();
+      acceptCount += pathNode._ids.size();
+    }
+    _transitionStarts = new int[size + 1];
+    _transitionChars = new char[transitionCount];
+    _transitionTargets = new int[transitionCount];
+    _starStates = new int[size];
+    _loops = new boolean[size];
+    _acceptStarts = new int[size + 1];
+    _acceptIds = new int[acceptCount];
+    int transition = 0;
+    int accept = 0;
+    for (int i = 0; i < size; i++) {
+      PathNode pathNode = pathNodes.get(i);
+      _transitionStarts[i] = transition;
+      for (Map.Entry<Character, PathNode> entry : pathNode._children.entrySet()) {
+        _transitionChars[transition] = entry.getKey();
+        _transitionTargets[transition] = entry.getValue()._state;
+        transition++;
+      }
+      _starStates[i] = pathNode._star == null ? NO_STATE : pathNode._star._state;
+      _loops[i] = pathNode._loops;
+      _acceptStarts[i] = accept;
+      for (int id : pathNode._ids) {
+        _acceptIds[accept++] = id;
+      }
+    }
+    _transitionStarts[size] = transition;
+    _acceptStarts[size] = accept;
+  }
+
+  /**
+   * Compiles the match patterns.
+   * @param patterns The patterns, such as "*://*.example.com/docs/*". The id of each is its index in the list.
+   * @return The matcher.
+   * @throws IllegalArgumentException If one of the patterns is not valid.
+   */
+  public static UrlPatternMatcher compile(List<String> patterns) {
+    Builder builder = new Builder();
+    for (String pattern : patterns) {
+      builder.add(pattern);
+    }
+    return new UrlPatternMatcher(builder);
+  }
+
+  /**
+   * @return The number of patterns.
+   */
+  public int size() {
+    return _schemes.length;
+  }
+
+  /**
+   * @return True if at least one of the patterns matches the url.
+   */
+  public boolean matches(Url url) {
+    return match(url).length > 0;
+  }
+
+  /**
+   * @return The ids of the patterns that match the url, in increasing order.
+   */
+  public int[] match(Url url) {
+    String scheme = url.getScheme();
+    String host = url.getHost();
+    host = host == null ? "" : host;
+    int hostEnd = host.endsWith(".") ? host.length() - 1 : host.length();
+
+    //the start states of the path automaton for the hosts in the trie that apply to the url.
+    int[] states = new int[4];
+    int stateCount = 0;
+    states[stateCount++] = _subdomainPathStates[0];
+    int node = 0;
+    int labelEnd = hostEnd;
+    //an IPv6 address is a single label.
+    boolean isSingleLabel = host.startsWith("[");
+    while (labelEnd > 0) {
+      int labelStart = isSingleLabel ? 0 : host.lastIndexOf('.', labelEnd - 1) + 1;
+      node = findChild(node, host, labelStart, labelEnd);
+      if (node == -1) {
+        break;
+      }
+      if (stateCount + 2 > states.length) {
+        states = Arrays.copyOf(states, states.length * 2);
+      }
+      states[stateCount++] = _subdomainPathStates[node];
+      if (labelStart == 0) {
+        states[stateCount++] = _exactPathStates[node];
+      }
+      labelEnd = labelStart - 1;
+    }
+    if (hostEnd == 0) {
+      states[stateCount++] = _exactPathStates[0];
+    }
+
+    int[] matches = NO_MATCHES;
+    int count = 0;
+    for (int i = 0; i < stateCount; i++) {
+      if (states[i] == NO_STATE) {
+        continue;
+      }
+      for (int id : matchPath(url, states[i])) {
+        if (matchesSchemeAndPort(id, scheme, url)) {
+          if (count == matches.length) {
+            matches = Arrays.copyOf(matches, Math.max(4, count * 2));
+          }
+          matches[count++] = id;
+        }
+      }
+    }
+    if (count == 0) {
+      return NO_MATCHES;
+    }
+    Arrays.sort(matches, 0, count);
+    return Arrays.copyOf(matches, count);
+  }
+
+  private boolean matchesSchemeAndPort(int id, String scheme, Url url) {
+    String patternScheme = _schemes[id];
+    if (patternScheme == ALL_URLS) {
+      return true;
+    }
+    boolean schemeMatches = patternScheme == null ? scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https")
+        : patternScheme.equalsIgnoreCase(scheme);
+    return schemeMatches && (_ports[id] == -1 || _ports[id] == url.getPort());
+  }
+
+  /**
+   * Runs the path automaton from the start state over the path and query of the url. A url without a path has "/" as
+   * path.
+   * @return The ids of the patterns whose glob matches.
+   */
+  private int[] matchPath(Url url, int startState) {
+    UrlMarker urlMarker = url.getUrlMarker();
+    String originalUrl = url.getOriginalUrl();
+    int pathStart = urlMarker.indexOf(UrlPart.PATH);
+    int queryStart = urlMarker.indexOf(UrlPart.QUERY);
+    int end = urlMarker.indexOf(UrlPart.FRAGMENT);
+    end = end == -1 ? originalUrl.length() : end;
+
+    StateSet active = new StateSet();
+    StateSet next = new StateSet();
+    addState(active, startState);
+    if (pathStart == -1) {
+      step(active, next, '/');
+      StateSet swap = active;
+      active = next;
+      next = swap;
+    }
+    int start = pathStart != -1 ? pathStart : queryStart != -1 ? queryStart : end;
+    for (int i = start; i < end && active._size > 0; i++) {
+      step(active, next, originalUrl.charAt(i));
+      StateSet swap = active;
+      active = next;
+      next = swap;
+    }
+
+    int[] ids = NO_MATCHES;
+    int count = 0;
+    for (int i = 0; i < active._size; i++) {
+      int state = active._states[i];
+      for (int j = _acceptStarts[state]; j < _acceptStarts[state + 1]; j++) {
+        if (count == ids.length) {
+          ids = Arrays.copyOf(ids, Math.max(4, count * 2));
+        }
+        ids[count++] = _acceptIds[j];
+      }
+    }
+    return count == ids.length ? ids : Arrays.copyOf(ids, count);
+  }
+
+  /**
+   * Replaces the next states with the active states moved over the character.
+   */
+  private void step(StateSet active, StateSet next, char curr) {
+    next._size = 0;
+    for (int i = 0; i < active._size; i++) {
+      int state = active._states[i];
+      if (_loops[state]) {
+        addState(next, state);
+      }
+      int target = transition(state, curr);
+      if (target != NO_STATE) {
+        addState(next, target);
+      }
+    }
+  }
+
+  /**
+   * Adds the state, and the states reached from it by a "*" matching nothing, to the set of states.
+   */
+  private void addState(StateSet states, int state) {
+    for (; state != NO_STATE; state = _starStates[state]) {
+      states.add(state);
+    }
+  }
+
+  private int transition(int state, char curr) {
+    int low = _transitionStarts[state];
+    int high = _transitionStarts[state + 1] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      char middleChar = _transitionChars[middle];
+      if (middleChar < curr) {
+        low = middle + 1;
+      } else if (middleChar > curr) {
+        high = middle - 1;
+      } else {
+        return _transitionTargets[middle];
+      }
+    }
+    return NO_STATE;
+  }
+
+  /**
+   * Finds the child of the host node with the label host[start, end), ignoring case.
+   * @return The child, or -1 if there is none.
+   */
+  private int findChild(int node, String host, int start, int end) {
+    int low = _hostChildStarts[node];
+    int high = _hostChildStarts[node + 1] - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compareLabel(_hostLabels[middle], host, start, end);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  private static int compareLabel(String label, String host, int start, int end) {
+    int length = Math.min(label.length(), end - start);
+    for (int i = 0; i < length; i++) {
+      int comparison = label.charAt(i) - Character.toLowerCase(host.charAt(start + i));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return label.length() - (end - start);
+  }
+
+  /**
+   * Numbers the path nodes of a host breadth first, continuing after the nodes that are already numbered.
+   * @return The state of the root, or NO_STATE if there is no root.
+   */
+  private static int number(PathNode root, List<PathNode> pathNodes) {
+    if (root == null) {
+      return NO_STATE;
+    }
+    int first = pathNodes.size();
+    pathNodes.add(root);
+    for (int i = first; i < pathNodes.size(); i++) {
+      PathNode pathNode = pathNodes.get(i);
+      pathNode._state = i;
+      pathNodes.addAll(pathNode._children.values());
+      if (pathNode._star != null) {
+        pathNodes.add(pathNode._star);
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Parses the patterns into the host trie and the path tries.
+   */
+  private static final class Builder {
+    private final HostNode _root = new HostNode(null);
+    private final List<String> _schemes = new ArrayList<String>();
+    private final List<Integer> _ports = new ArrayList<Integer>();
+
+    void add(String pattern) {
+      int id = _schemes.size();
+      if (pattern.equals(ALL_URLS)) {
+        _schemes.add(ALL_URLS);
+        _ports.add(-1);
+        addPath(_root, false, "/*", id);
+        return;
+      }
+
+      int schemeEnd = pattern.indexOf("://");
+      int pathStart = schemeEnd == -1 ? -1 : pattern.indexOf('/', schemeEnd + 3);
+      if (schemeEnd <= 0 || pathStart == -1) {
+        throw new IllegalArgumentException("Invalid match pattern: " + pattern);
+      }
+      String scheme = pattern.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+      if (!scheme.equals("*") && !isValidScheme(scheme)) {
+        throw new IllegalArgumentException("Invalid scheme in match pattern: " + pattern);
+      }
+
+      String host = pattern.substring(schemeEnd + 3, pathStart).toLowerCase(Locale.ROOT);
+      int port = -1;
+      int colon = host.lastIndexOf(':');
+      if (colon != -1 && colon > host.lastIndexOf(']')) {
+        try {
+          port = Integer.parseInt(host.substring(colon + 1));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Invalid port in match pattern: " + pattern, e);
+        }
+        host = host.substring(0, colon);
+      }
+      if (host.endsWith(".")) {
+        host = host.substring(0, host.length() - 1);
+      }
+
+      boolean subdomains = false;
+      if (host.equals("*")) {
+        host = "";
+        subdomains = true;
+      } else if (host.startsWith("*.")) {
+        host = host.substring(2);
+        subdomains = true;
+      }
+      if (host.indexOf('*') != -1 || (host.isEmpty() && !subdomains && !scheme.equals("file"))) {
+        throw new IllegalArgumentException("Invalid host in match pattern: " + pattern);
+      }
+
+      HostNode node = _root;
+      if (host.startsWith("[")) {
+        node = node.child(host);
+      } else if (!host.isEmpty()) {
+        String[] labels = host.split("\\.", -1);
+        for (int i = labels.length - 1; i >= 0; i--) {
+          if (labels[i].isEmpty()) {
+            throw new IllegalArgumentException("Invalid host in match pattern: " + pattern);
+          }
+          node = node.child(labels[i]);
+        }
+      }
+      _schemes.add(scheme.equals("*") ? null : scheme);
+      _ports.add(port);
+      addPath(node, !subdomains, pattern.substring(pathStart), id);
+    }
+
+    private void addPath(HostNode hostNode, boolean exact, String glob, int id) {
+      PathNode pathNode;
+      if (exact) {
+        pathNode = hostNode._exactPaths == null ? (hostNode._exactPaths = new PathNode()) : hostNode._exactPaths;
+      } else {
+        pathNode =
+            hostNode._subdomainPaths == null ? (hostNode._subdomainPaths = new PathNode()) : hostNode._subdomainPaths;
+      }
+      for (int i = 0; i < glob.length(); i++) {
+        char curr = glob.charAt(i);
+        if (curr == '*') {
+          //a run of "*" is the same as one.
+          if (!pathNode._loops) {
+            pathNode = pathNode.star();
+          }
+        } else {
+          pathNode = pathNode.child(curr);
+        }
+      }
+      pathNode._ids.add(id);
+    }
+
+    private static boolean isValidScheme(String scheme) {
+      if (scheme.isEmpty() || scheme.charAt(0) < 'a' || scheme.charAt(0) > 'z') {
+        return false;
+      }
+      for (int i = 1; i < scheme.length(); i++) {
+        char curr = scheme.charAt(i);
+        if (!(curr >= 'a' && curr <= 'z') && !(curr >= '0' && curr <= '9') && curr != '+' && curr != '-'
+            && curr != '.') {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * The states the path automaton is in. There are only a few at a time, so they are kept in a plain array.
+   */
+  private static final class StateSet {
+    private int[] _states = new int[8];
+    private int _size = 0;
+
+    void add(int state) {
+      for (int i = 0; i < _size; i++) {
+        if (_states[i] == state) {
+          return;
+        }
+      }
+      if (_size == _states.length) {
+        _states = Arrays.copyOf(_states, _size * 2);
+      }
+      _states[_size++] = state;
+    }
+  }
+
+  /**
+   * A node of the host trie.
+   */
+  private static final class HostNode {
+    private final String _label;
+    private final Map<String, HostNode> _children = new TreeMap<String, HostNode>();
+    private PathNode _exactPaths = null;
+    private PathNode _subdomainPaths = null;
+
+    HostNode(String label) {
+      _label = label;
+    }
+
+    HostNode child(String label) {
+      HostNode child = _children.get(label);
+      if (child == null) {
+        child = new HostNode(label);
+        _children.put(label, child);
+      }
+      return child;
+    }
+  }
+
+  /**
+   * A node of the trie of path globs of one host.
+   */
+  private static final class PathNode {
+    private final Map<Character, PathNode> _children = new TreeMap<Character, PathNode>();
+    private PathNode _star = null;
+    private boolean _loops = false;
+    private final List<Integer> _ids = new ArrayList<Integer>(1);
+    private int _state = 0;
+
+    PathNode child(char curr) {
+      PathNode child = _children.get(curr);
+      if (child == null) {
+        child = new PathNode();
+        _children.put(curr, child);
+      }
+      return child;
+    }
+
+    PathNode star() {
+      if (_star == null) {
+        _star = new PathNode();
+        _star._loops = true;
+      }
+      return _star;
+    }
+  }
+}
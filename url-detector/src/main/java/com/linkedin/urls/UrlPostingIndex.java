@@ -0,0 +1,277 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+/**
+ * An inverted index from urls, or from their hosts, to the ids of the documents they were found in, written by
+ * UrlPostingIndexBuilder. A url is keyed by the 64 bit fingerprint of its normalized form, see getKey().
+ *
+ * The file is mapped into memory by load() and read as lookups need it, so the index takes no heap besides the
+ * result of a lookup, and the operating system keeps the parts that are used in its page cache. The keys are sorted
+ * and kept in blocks of BLOCK_SIZE, each key written as its difference from the key before it, followed by the sorted
+ * ids of its documents, each written as its difference from the id before it. A table of the first key of each block
+ * at the end of the file is binary searched to find the one block a lookup reads. An index can be shared between
+ * threads.
+ */
+public final class UrlPostingIndex {
+
+  /**
+   * What the index is keyed by.
+   */
+  public enum KeyType {
+    /**
+     * The normalized host of the url, so a lookup finds the documents with any url of the host.
+     */
+    HOST,
+
+    /**
+     * The normalized url, without its fragment.
+     */
+    URL
+  }
+
+  /**
+   * The number of keys in a block. A larger block takes less memory for the block table but makes a lookup read more
+   * keys.
+   */
+  static final int BLOCK_SIZE = 64;
+
+  /**
+   * "URLP" followed by the version of the format.
+   */
+  static final int MAGIC = 0x55524c50;
+  static final int VERSION = 1;
+
+  /**
+   * The header is the magic number, the version, the ordinal of the key type, the number of blocks, the number of keys
+   * and the offset of the block table. Each entry of the block table is the first key of the block and its offset.
+   */
+  static final int HEADER_SIZE = 4 * 4 + 2 * 8;
+  static final int BLOCK_ENTRY_SIZE = 2 * 8;
+
+  /**
+   * Files larger than 2GB can't be mapped as a single buffer, so the file is mapped in segments of 1GB.
+   */
+  private static final int SEGMENT_SHIFT = 30;
+
+  private static final long[] NO_DOCUMENTS = new long[0];
+
+  private final ByteBuffer[] _segments;
+  private final int _segmentShift;
+  private final long _segmentMask;
+  private final long _sizeInBytes;
+  private final KeyType _keyType;
+  private final int _blockCount;
+  private final long _keyCount;
+  private final long _blockTableOffset;
+
+  private UrlPostingIndex(ByteBuffer[] segments, int segmentShift, long sizeInBytes) {
+    _segments = segments;
+    _segmentShift = segmentShift;
+    _segmentMask = (1L << segmentShift) - 1;
+    _sizeInBytes = sizeInBytes;
+    if (sizeInBytes < HEADER_SIZE || getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("The file doesn't hold a url posting index.");
+    }
+    if (getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Unsupported url posting index version " + getInt(4) + ".");
+    }
+    int keyType = getInt(8);
+    if (keyType < 0 || keyType >= KeyType.values().length) {
+      throw new IllegalArgumentException("Unknown key type " + keyType + ".");
+    }
+    _keyType = KeyType.values()[keyType];
+    _blockCount = getInt(12);
+    _keyCount = getLong(16);
+    _blockTableOffset = getLong(24);
+    if (_blockTableOffset + (long) _blockCount * BLOCK_ENTRY_SIZE != sizeInBytes) {
+      throw new IllegalArgumentException("The url posting index is truncated.");
+    }
+  }
+
+  /**
+   * Maps an index written by UrlPostingIndexBuilder into memory. The file is read as the index is used, not up front.
+   * @param path The file to map.
+   * @throws IOException If the file can't be read.
+   * @throws IllegalArgumentException If the file doesn't hold an index.
+   */
+  public static UrlPostingIndex load(Path path) throws IOException {
+    return load(path, SEGMENT_SHIFT);
+  }
+
+  /**
+   * @param segmentShift The log2 of the size of the segments the file is mapped in, which tests make small.
+   */
+  static UrlPostingIndex load(Path path, int segmentShift) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      ByteBuffer[] segments = new ByteBuffer[(int) ((size + (1L << segmentShift) - 1) >>> segmentShift)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i << segmentShift;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << segmentShift));
+      }
+      return new UrlPostingIndex(segments, segmentShift, size);
+    }
+  }
+
+  /**
+   * Returns the key of a url in an index of the key type: the 64 bit fingerprint, see UrlFingerprint, of its
+   * normalized host or of its normalized url without the fragment. A url that isn't a NormalizedUrl is normalized
+   * first, so the same url gives the same key however it is written.
+   */
+  public static long getKey(KeyType keyType, Url url) {
+    NormalizedUrl normalizedUrl = url instanceof NormalizedUrl ? (NormalizedUrl) url : url.normalize();
+    if (keyType == KeyType.URL) {
+      return normalizedUrl.getFingerprint64();
+    }
+    String host = normalizedUrl.getHost();
+    return UrlFingerprint.hash64(host == null ? "" : host);
+  }
+
+  /**
+   * Returns the HOST key of a url from its host as written, without a Url object. This is the same as getKey() with
+   * KeyType.HOST, since the normalized host of a url only depends on its host.
+   * @param host The host of the url, or null if it doesn't have one.
+   */
+  static long getHostKey(String host) {
+    String normalizedHost = new HostNormalizer(host).getNormalizedHost();
+    return UrlFingerprint.hash64(normalizedHost == null ? "" : normalizedHost);
+  }
+
+  /**
+   * @return What the index is keyed by.
+   */
+  public KeyType getKeyType() {
+    return _keyType;
+  }
+
+  /**
+   * @return The number of distinct keys.
+   */
+  public long getKeyCount() {
+    return _keyCount;
+  }
+
+  /**
+   * @return The number of bytes of the file.
+   */
+  public long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  /**
+   * Returns the ids of the documents the url was found in, or, in an index keyed by host, the documents any url of its
+   * host was found in.
+   * @return The sorted document ids, or an empty array if there are none.
+   */
+  public long[] getDocumentIds(Url url) {
+    return getDocumentIds(getKey(_keyType, url));
+  }
+
+  /**
+   * @param key A key, see getKey().
+   * @return The sorted ids of the documents of the key, or an empty array if the index doesn't hold it.
+   */
+  public long[] getDocumentIds(long key) {
+    //find the last block whose first key is not after the key.
+    int low = 0;
+    int high = _blockCount - 1;
+    int block = -1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (getLong(_blockTableOffset + (long) middle * BLOCK_ENTRY_SIZE) <= key) {
+        block = middle;
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    if (block == -1) {
+      return NO_DOCUMENTS;
+    }
+
+    long entry = _blockTableOffset + (long) block * BLOCK_ENTRY_SIZE;
+    long current = getLong(entry);
+    long[] position = {getLong(entry + 8)};
+    long end = Math.min(BLOCK_SIZE, _keyCount - (long) block * BLOCK_SIZE);
+    for (int i = 0; i < end; i++) {
+      if (i > 0) {
+        //the keys are sorted as signed longs, and the difference wraps around like the addition does.
+        current += readVarlong(position);
+      }
+      int count = (int) readVarlong(position);
+      int length = (int) readVarlong(position);
+      if (current == key) {
+        return readDocumentIds(position, count);
+      }
+      if (current > key) {
+        break;
+      }
+      position[0] += length;
+    }
+    return NO_DOCUMENTS;
+  }
+
+  private long[] readDocumentIds(long[] position, int count) {
+    long[] documentIds = new long[count];
+    long encoded = readVarlong(position);
+    long documentId = (encoded >>> 1) ^ -(encoded & 1);
+    documentIds[0] = documentId;
+    for (int i = 1; i < count; i++) {
+      documentId += readVarlong(position);
+      documentIds[i] = documentId;
+    }
+    return documentIds;
+  }
+
+  private long readVarlong(long[] position) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      int curr = getByte(position[0]++) & 0xff;
+      value |= (long) (curr & 0x7f) << shift;
+      if ((curr & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  private byte getByte(long position) {
+    return _segments[(int) (position >>> _segmentShift)].get((int) (position & _segmentMask));
+  }
+
+  private int getInt(long position) {
+    return (int) readBigEndian(position, 4);
+  }
+
+  private long getLong(long position) {
+    return readBigEndian(position, 8);
+  }
+
+  private long readBigEndian(long position, int length) {
+    int offset = (int) (position & _segmentMask);
+    ByteBuffer segment = _segments[(int) (position >>> _segmentShift)];
+    if (offset + length <= segment.limit()) {
+      return length == 8 ? segment.getLong(offset) : segment.getInt(offset);
+    }
+    //the value is split between two segments.
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      value = (value << 8) | (getByte(position + i) & 0xff);
+    }
+    return value;
+  }
+}
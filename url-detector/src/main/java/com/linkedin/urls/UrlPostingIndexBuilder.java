@@ -0,0 +1,494 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import com.linkedin.urls.UrlPostingIndex.KeyType;
+import com.linkedin.urls.detection.UrlBatch;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+
+/**
+ * Builds a UrlPostingIndex from the urls found in a corpus, with an external sort so the corpus doesn't have to fit in
+ * memory: the pairs of key and document id are added to a run until it holds RUN_SIZE pairs, then the run is sorted
+ * and written to a temporary file. write() merges the runs into the index, reading up to MAX_MERGE_FAN_IN runs at
+ * once, and merges more runs than that in several passes.
+ *
+ * addDocuments() detects the urls of the documents with a UrlBatch per core, in parallel, and each core sorts and
+ * writes its own runs. add() is for urls that were detected by the caller, and is not thread safe. The temporary
+ * files are deleted by close().
+ */
+public class UrlPostingIndexBuilder implements Closeable {
+
+  /**
+   * The number of pairs of key and document id in a run. A run takes 16 bytes per pair, and addDocuments() fills one
+   * run per core.
+   */
+  static final int RUN_SIZE = 1 << 20;
+
+  /**
+   * The most runs read at once by a pass of the merge, each with a buffer of MERGE_BUFFER_SIZE. With more runs, the
+   * merge takes several passes, each writing the runs it reads into a single one, so the merge never holds more open
+   * files than this.
+   */
+  static final int MAX_MERGE_FAN_IN = 64;
+  private static final int MERGE_BUFFER_SIZE = 64 * 1024;
+
+  private final Path _tempDirectory;
+  private final KeyType _keyType;
+  private final int _runSize;
+  private final Run _run;
+  private final List<Path> _runFiles = Collections.synchronizedList(new ArrayList<Path>());
+  private boolean _written = false;
+
+  /**
+   * @param tempDirectory The directory to write the runs to.
+   * @param keyType What the index is keyed by.
+   */
+  public UrlPostingIndexBuilder(Path tempDirectory, KeyType keyType) {
+    this(tempDirectory, keyType, RUN_SIZE);
+  }
+
+  /**
+   * @param runSize The number of pairs in a run, which tests make small.
+   */
+  UrlPostingIndexBuilder(Path tempDirectory, KeyType keyType, int runSize) {
+    _tempDirectory = tempDirectory;
+    _keyType = keyType;
+    _runSize = runSize;
+    _run = new Run();
+  }
+
+  /**
+   * Adds a url of a document that was detected by the caller.
+   * @param documentId The id of the document the url was found in.
+   * @param url The url.
+   */
+  public void add(long documentId, Url url) throws IOException {
+    checkNotWritten();
+    _run.add(UrlPostingIndex.getKey(_keyType, url), documentId);
+  }
+
+  /**
+   * Detects the urls of the documents and adds them, using all of the cores. Call it with many documents at a time,
+   * since each core writes at least one run per call.
+   * @param documentIds The id of each document.
+   * @param documents The text of each document.
+   * @param options The UrlDetectorOptions to use when detecting the documents.
+   */
+  public void addDocuments(final long[] documentIds, final String[] documents, final UrlDetectorOptions options)
+      throws IOException {
+    checkNotWritten();
+    if (documentIds.length != documents.length) {
+      throw new IllegalArgumentException("There are " + documentIds.length + " document ids for " + documents.length
+          + " documents.");
+    }
+    final int chunkCount = Math.max(1, Math.min(documents.length, Runtime.getRuntime().availableProcessors()));
+    try {
+      IntStream.range(0, chunkCount).parallel().forEach(new IntConsumer() {
+        @Override
+        public void accept(int chunk) {
+          try {
+            addChunk(documentIds, documents, (int) ((long) documents.length * chunk / chunkCount),
+                (int) ((long) documents.length * (chunk + 1) / chunkCount), options);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void addChunk(long[] documentIds, String[] documents, int start, int end, UrlDetectorOptions options)
+      throws IOException {
+    Run run = new Run();
+    UrlBatch batch = new UrlBatch();
+    UrlMarker urlMarker = new UrlMarker();
+    for (int i = start; i < end; i++) {
+      batch.clear();
+      batch.detect(documentIds[i], documents[i], options);
+      for (int j = 0; j < batch.size(); j++) {
+        long key;
+        if (_keyType == KeyType.HOST) {
+          key = UrlPostingIndex.getHostKey(batch.getHost(j, documents[i]));
+        } else {
+          //the fingerprint of a url is of every part of it normalized, which is only done by NormalizedUrl, so each url
+          //still needs one; the marker it reads is reused.
+          batch.setUrlMarker(j, documents[i], urlMarker);
+          key = new NormalizedUrl(urlMarker).getFingerprint64();
+        }
+        run.add(key, documentIds[i]);
+      }
+    }
+    run.spill();
+  }
+
+  /**
+   * @return The number of runs written to temporary files so far.
+   */
+  public int getRunCount() {
+    return _runFiles.size();
+  }
+
+  /**
+   * Merges the runs and writes the index, to be loaded with UrlPostingIndex.load().
+   * @param path The file to write the index to.
+   * @return The number of distinct keys.
+   */
+  public long write(Path path) throws IOException {
+    checkNotWritten();
+    _written = true;
+    _run.spill();
+
+    //merge the oldest runs into a new one until the rest can be merged at once.
+    while (_runFiles.size() > MAX_MERGE_FAN_IN) {
+      List<Path> runFiles = new ArrayList<Path>(_runFiles.subList(0, MAX_MERGE_FAN_IN));
+      Path runFile = Files.createTempFile(_tempDirectory, "postings", ".run");
+      _runFiles.add(runFile);
+      mergeRuns(runFiles, runFile);
+      for (Path merged : runFiles) {
+        Files.delete(merged);
+      }
+      _runFiles.subList(0, MAX_MERGE_FAN_IN).clear();
+    }
+
+    List<RunHead> heads = new ArrayList<RunHead>(_runFiles.size());
+    try {
+      PriorityQueue<RunHead> queue = openRuns(_runFiles, heads);
+      IndexWriter writer = new IndexWriter(Files.newOutputStream(path));
+      try {
+        long lastKey = 0;
+        long lastDocumentId = 0;
+        boolean first = true;
+        while (!queue.isEmpty()) {
+          RunHead head = queue.poll();
+          if (first || head._key != lastKey) {
+            writer.startKey(head._key);
+            writer.addDocumentId(head._documentId);
+          } else if (head._documentId != lastDocumentId) {
+            writer.addDocumentId(head._documentId);
+          }
+          first = false;
+          lastKey = head._key;
+          lastDocumentId = head._documentId;
+          if (head.advance()) {
+            queue.add(head);
+          }
+        }
+        writer.finish();
+      } finally {
+        writer.close();
+      }
+
+      //the header comes first but holds the counts, so it is written over the room left for it once they are known.
+      ByteBuffer header = ByteBuffer.allocate(UrlPostingIndex.HEADER_SIZE);
+      header.putInt(UrlPostingIndex.MAGIC).putInt(UrlPostingIndex.VERSION).putInt(_keyType.ordinal())
+          .putInt(writer._blockCount).putLong(writer._keyCount).putLong(writer._blockTableOffset).flip();
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        channel.write(header, 0);
+      }
+      return writer._keyCount;
+    } finally {
+      for (RunHead head : heads) {
+        head._input.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the distinct pairs of the runs to a new run.
+   */
+  private static void mergeRuns(List<Path> runFiles, Path runFile) throws IOException {
+    List<RunHead> heads = new ArrayList<RunHead>(runFiles.size());
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile),
+        MERGE_BUFFER_SIZE))) {
+      PriorityQueue<RunHead> queue = openRuns(runFiles, heads);
+      long lastKey = 0;
+      long lastDocumentId = 0;
+      boolean first = true;
+      while (!queue.isEmpty()) {
+        RunHead head = queue.poll();
+        if (first || head._key != lastKey || head._documentId != lastDocumentId) {
+          output.writeLong(head._key);
+          output.writeLong(head._documentId);
+        }
+        first = false;
+        lastKey = head._key;
+        lastDocumentId = head._documentId;
+        if (head.advance()) {
+          queue.add(head);
+        }
+      }
+    } finally {
+      for (RunHead head : heads) {
+        head._input.close();
+      }
+    }
+  }
+
+  /**
+   * Opens the runs, adding each to the heads so that it is closed, and each that isn't empty to the queue.
+   */
+  private static PriorityQueue<RunHead> openRuns(List<Path> runFiles, List<RunHead> heads) throws IOException {
+    PriorityQueue<RunHead> queue = new PriorityQueue<RunHead>(Math.max(1, runFiles.size()));
+    for (Path runFile : runFiles) {
+      RunHead head = new RunHead(runFile);
+      heads.add(head);
+      if (head.advance()) {
+        queue.add(head);
+      }
+    }
+    return queue;
+  }
+
+  /**
+   * Deletes the temporary files of the runs.
+   */
+  @Override
+  public void close() throws IOException {
+    IOException exception = null;
+    for (Path runFile : _runFiles) {
+      try {
+        Files.deleteIfExists(runFile);
+      } catch (IOException e) {
+        exception = e;
+      }
+    }
+    _runFiles.clear();
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  private void checkNotWritten() {
+    if (_written) {
+      throw new IllegalStateException("The index was already written.");
+    }
+  }
+
+  /**
+   * The pairs of key and document id that are not written yet, kept in two parallel arrays.
+   */
+  private final class Run extends IndexSorter {
+    private long[] _keys = new long[Math.min(_runSize, 1024)];
+    private long[] _documentIds = new long[_keys.length];
+    private int _size = 0;
+
+    void add(long key, long documentId) throws IOException {
+      if (_size == _keys.length) {
+        _keys = Arrays.copyOf(_keys, Math.min(_runSize, 2 * _size));
+        _documentIds = Arrays.copyOf(_documentIds, _keys.length);
+      }
+      _keys[_size] = key;
+      _documentIds[_size] = documentId;
+      if (++_size == _runSize) {
+        spill();
+      }
+    }
+
+    /**
+     * Sorts the pairs by key and then by document id and writes the distinct ones to a temporary file.
+     */
+    void spill() throws IOException {
+      if (_size == 0) {
+        return;
+      }
+      sort(0, _size - 1);
+      Path runFile = Files.createTempFile(_tempDirectory, "postings", ".run");
+      _runFiles.add(runFile);
+      try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile),
+          64 * 1024))) {
+        for (int i = 0; i < _size; i++) {
+          if (i == 0 || _keys[i] != _keys[i - 1] || _documentIds[i] != _documentIds[i - 1]) {
+            output.writeLong(_keys[i]);
+            output.writeLong(_documentIds[i]);
+          }
+        }
+      }
+      _size = 0;
+    }
+
+    /**
+     * Compares the pairs by key and then by document id.
+     */
+    @Override
+    int compare(int i, int j) {
+      return UrlPostingIndexBuilder.compare(_keys[i], _documentIds[i], _keys[j], _documentIds[j]);
+    }
+
+    @Override
+    void swap(int i, int j) {
+      long key = _keys[i];
+      _keys[i] = _keys[j];
+      _keys[j] = key;
+      long documentId = _documentIds[i];
+      _documentIds[i] = _documentIds[j];
+      _documentIds[j] = documentId;
+    }
+  }
+
+  private static int compare(long key, long documentId, long otherKey, long otherDocumentId) {
+    int comparison = Long.compare(key, otherKey);
+    return comparison != 0 ? comparison : Long.compare(documentId, otherDocumentId);
+  }
+
+  /**
+   * The next pair of a run, ordered by key and then by document id.
+   */
+  private static final class RunHead implements Comparable<RunHead> {
+    private final DataInputStream _input;
+    private long _remaining;
+    private long _key;
+    private long _documentId;
+
+    RunHead(Path runFile) throws IOException {
+      _remaining = Files.size(runFile) / 16;
+      _input = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFile), MERGE_BUFFER_SIZE));
+    }
+
+    /**
+     * @return False if the run has no more pairs.
+     */
+    boolean advance() throws IOException {
+      if (_remaining == 0) {
+        return false;
+      }
+      _remaining--;
+      _key = _input.readLong();
+      _documentId = _input.readLong();
+      return true;
+    }
+
+    @Override
+    public int compareTo(RunHead other) {
+      return compare(_key, _documentId, other._key, other._documentId);
+    }
+  }
+
+  /**
+   * Writes the blocks of the index after room for the header, then the block table.
+   */
+  private static final class IndexWriter implements Closeable {
+    private final OutputStream _output;
+    private final byte[] _varlong = new byte[10];
+    private long _position = UrlPostingIndex.HEADER_SIZE;
+
+    private long[] _blockTable = new long[2 * 1024];
+    private int _blockCount = 0;
+    private long _keyCount = 0;
+    private long _blockTableOffset;
+
+    private long _key;
+    private long _lastKey;
+    private long _lastDocumentId;
+    private int _documentCount = 0;
+    private byte[] _postings = new byte[1024];
+    private int _postingsLength = 0;
+
+    IndexWriter(OutputStream output) throws IOException {
+      _output = new BufferedOutputStream(output, 64 * 1024);
+      _output.write(new byte[UrlPostingIndex.HEADER_SIZE]);
+    }
+
+    void startKey(long key) throws IOException {
+      finishKey();
+      _key = key;
+    }
+
+    void addDocumentId(long documentId) {
+      //the first id may be negative, so it is zigzag encoded; the others are larger than the one before them.
+      long value = _documentCount == 0 ? (documentId << 1) ^ (documentId >> 63) : documentId - _lastDocumentId;
+      if (_postingsLength + _varlong.length > _postings.length) {
+        _postings = Arrays.copyOf(_postings, _postings.length * 2);
+      }
+      _postingsLength = writeVarlong(value, _postings, _postingsLength);
+      _lastDocumentId = documentId;
+      _documentCount++;
+    }
+
+    /**
+     * Writes the key that was started, its number of documents, the length of its postings and the postings.
+     */
+    private void finishKey() throws IOException {
+      if (_documentCount == 0) {
+        return;
+      }
+      if (_keyCount % UrlPostingIndex.BLOCK_SIZE == 0) {
+        if (2 * _blockCount == _blockTable.length) {
+          _blockTable = Arrays.copyOf(_blockTable, _blockTable.length * 2);
+        }
+        _blockTable[2 * _blockCount] = _key;
+        _blockTable[2 * _blockCount + 1] = _position;
+        _blockCount++;
+      } else {
+        writeVarlong(_key - _lastKey);
+      }
+      writeVarlong(_documentCount);
+      writeVarlong(_postingsLength);
+      _output.write(_postings, 0, _postingsLength);
+      _position += _postingsLength;
+      _lastKey = _key;
+      _keyCount++;
+      _documentCount = 0;
+      _postingsLength = 0;
+    }
+
+    void finish() throws IOException {
+      finishKey();
+      _blockTableOffset = _position;
+      DataOutputStream output = new DataOutputStream(_output);
+      for (int i = 0; i < 2 * _blockCount; i++) {
+        output.writeLong(_blockTable[i]);
+      }
+      output.flush();
+    }
+
+    private void writeVarlong(long value) throws IOException {
+      int length = writeVarlong(value, _varlong, 0);
+      _output.write(_varlong, 0, length);
+      _position += length;
+    }
+
+    private static int writeVarlong(long value, byte[] bytes, int offset) {
+      while ((value & ~0x7fL) != 0) {
+        bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      bytes[offset++] = (byte) value;
+      return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+      _output.close();
+    }
+  }
+}
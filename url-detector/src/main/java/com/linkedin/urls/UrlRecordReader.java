@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+
+/**
+ * Reads the urls written by a UrlRecordWriter. Each url is rebuilt from the indices stored with it, without being
+ * parsed again.
+ *
+ * The reader buffers what it reads, so the stream doesn't need to be buffered. It is not thread safe.
+ */
+public class UrlRecordReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final InputStream _inputStream;
+  private byte[] _buffer;
+  private int _position = 0;
+  private int _limit = 0;
+
+  /**
+   * Creates a reader and reads the header from the stream.
+   * @param inputStream The stream to read from. It is closed when the reader is closed.
+   * @throws IOException If the stream doesn't start with the header of a UrlRecordWriter.
+   */
+  public UrlRecordReader(InputStream inputStream) throws IOException {
+    this(inputStream, BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize The number of bytes to buffer, which grows for a record that is larger.
+   */
+  UrlRecordReader(InputStream inputStream, int bufferSize) throws IOException {
+    _inputStream = inputStream;
+    _buffer = new byte[Math.max(bufferSize, UrlRecordWriter.HEADER.length)];
+    byte[] header = UrlRecordWriter.HEADER;
+    if (!fill(header.length) || !Arrays.equals(Arrays.copyOf(_buffer, header.length), header)) {
+      throw new IOException("The stream doesn't hold url records.");
+    }
+    _position = header.length;
+  }
+
+  /**
+   * @return The next url, or null at the end of the stream.
+   * @throws IOException If the stream can't be read, or it ends in the middle of a record or holds an invalid one.
+   */
+  public Url read() throws IOException {
+    if (!fill(1)) {
+      return null;
+    }
+    int length = 0;
+    for (int shift = 0; ; shift += 7) {
+      if (shift >= 7 * UrlCodec.MAX_VARINT_LENGTH) {
+        throw new IOException("The length of the record is too long.");
+      }
+      if (!fill(1)) {
+        throw new EOFException("The stream ends in the middle of a record.");
+      }
+      int curr = _buffer[_position++] & 0xff;
+      length |= (curr & 0x7f) << shift;
+      if ((curr & 0x80) == 0) {
+        break;
+      }
+    }
+    if (length < 0) {
+      throw new IOException("The length of the record is negative.");
+    }
+    if (!fill(length)) {
+      throw new EOFException("The stream ends in the middle of a record.");
+    }
+    try {
+      Url url = UrlCodec.decode(_buffer, _position, length);
+      _position += length;
+      return url;
+    } catch (IllegalArgumentException e) {
+      throw new IOException("The stream holds an invalid record.", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    _inputStream.close();
+  }
+
+  /**
+   * Makes sure that the buffer holds at least the given number of bytes after the position.
+   * @return False if the stream ended before that many bytes could be read.
+   */
+  private boolean fill(int count) throws IOException {
+    if (_limit - _position >= count) {
+      return true;
+    }
+    if (count > _buffer.length) {
+      _buffer = Arrays.copyOf(_buffer, Math.max(count, _buffer.length * 2));
+    }
+    System.arraycopy(_buffer, _position, _buffer, 0, _limit - _position);
+    _limit -= _position;
+    _position = 0;
+    while (_limit < count) {
+      int read = _inputStream.read(_buffer, _limit, _buffer.length - _limit);
+      if (read == -1) {
+        return false;
+      }
+      _limit += read;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Writes urls to a stream as UrlCodec records, to be read back by UrlRecordReader. The stream starts with a short
+ * header, followed by each record with its length in bytes as a varint in front of it.
+ *
+ * The writer buffers what it writes, so the stream doesn't need to be buffered. It is not thread safe.
+ */
+public class UrlRecordWriter implements Closeable, Flushable {
+
+  /**
+   * Starts every stream of records: "URLR" and the version of the format.
+   */
+  static final byte[] HEADER = {'U', 'R', 'L', 'R', 1};
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final OutputStream _outputStream;
+  private byte[] _buffer;
+  private int _position = 0;
+  private long _count = 0;
+
+  /**
+   * Creates a writer and writes the header to the stream.
+   * @param outputStream The stream to write to. It is closed when the writer is closed.
+   */
+  public UrlRecordWriter(OutputStream outputStream) throws IOException {
+    this(outputStream, BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize The number of bytes to buffer, which grows for a record that is larger.
+   */
+  UrlRecordWriter(OutputStream outputStream, int bufferSize) throws IOException {
+    _outputStream = outputStream;
+    _buffer = new byte[bufferSize];
+    _outputStream.write(HEADER);
+  }
+
+  /**
+   * @param url The url to write.
+   */
+  public void write(Url url) throws IOException {
+    int maxLength = UrlCodec.MAX_VARINT_LENGTH + UrlCodec.getMaxLength(url);
+    if (_position + maxLength > _buffer.length) {
+      flushBuffer();
+      if (maxLength > _buffer.length) {
+        _buffer = new byte[maxLength];
+      }
+    }
+    //like the url inside it, the length of the record is only known once it is encoded.
+    int recordStart = _position + UrlCodec.MAX_VARINT_LENGTH;
+    int recordEnd = UrlCodec.encode(url, _buffer, recordStart);
+    int lengthEnd = UrlCodec.writeVarint(recordEnd - recordStart, _buffer, _position);
+    System.arraycopy(_buffer, recordStart, _buffer, lengthEnd, recordEnd - recordStart);
+    _position = lengthEnd + recordEnd - recordStart;
+    _count++;
+  }
+
+  /**
+   * Writes a record that was already encoded by UrlCodec, without decoding it.
+   * @param bytes Holds the record at [offset, offset + length).
+   */
+  void write(byte[] bytes, int offset, int length) throws IOException {
+    int maxLength = UrlCodec.MAX_VARINT_LENGTH + length;
+    if (_position + maxLength > _buffer.length) {
+      flushBuffer();
+      if (maxLength > _buffer.length) {
+        _buffer = new byte[maxLength];
+      }
+    }
+    _position = UrlCodec.writeVarint(length, _buffer, _position);
+    System.arraycopy(bytes, offset, _buffer, _position, length);
+    _position += length;
+    _count++;
+  }
+
+  /**
+   * @return The number of urls written.
+   */
+  public long getCount() {
+    return _count;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    _outputStream.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flushBuffer();
+    } finally {
+      _outputStream.close();
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (_position > 0) {
+      _outputStream.write(_buffer, 0, _position);
+      _position = 0;
+    }
+  }
+}
@@ -58,14 +58,19 @@ class UrlUtil {
    * @param urlPart The part of the url we are canonicalizing
    */
   protected static String removeSpecialSpaces(String urlPart) {
-    StringBuilder stringBuilder = new StringBuilder(urlPart);
-    for (int i = 0; i < stringBuilder.length(); i++) {
-      char curr = stringBuilder.charAt(i);
+    StringBuilder stringBuilder = null;
+    for (int i = 0; i < urlPart.length(); i++) {
+      char curr = urlPart.charAt(i);
       if (CharUtils.isWhiteSpace(curr)) {
-        stringBuilder.deleteCharAt(i);
+        if (stringBuilder == null) {
+          stringBuilder = new StringBuilder(urlPart.length());
+          stringBuilder.append(urlPart, 0, i);
+        }
+      } else if (stringBuilder != null) {
+        stringBuilder.append(curr);
       }
     }
-    return stringBuilder.toString();
+    return stringBuilder == null ? urlPart : stringBuilder.toString();
   }
 
   /**
@@ -57,6 +57,63 @@ public class CharUtils {
     return (a == '.' || a == '\u3002' || a == '\uFF0E' || a == '\uFF61');
   }
 
+  /**
+   * Checks if character is one of the characters of base64: a-z, A-Z, 0-9, '+', '/' and the '=' padding.
+   */
+  public static boolean isBase64(char a) {
+    return isAlphaNumeric(a) || a == '+' || a == '/' || a == '=';
+  }
+
+  /**
+   * Checks if character can be in the data of a data: uri. That is any printable ascii character besides the ones
+   * that end a uri in text, such as quotes, brackets and angle brackets.
+   */
+  public static boolean isDataUriCharacter(char a) {
+    if (a <= ' ' || a >= 0x7f) {
+      return false;
+    }
+    switch (a) {
+      case '"':
+      case '\'':
+      case '<':
+      case '>':
+      case '\\':
+      case '^':
+      case '`':
+      case '{':
+      case '|':
+      case '}':
+      case '(':
+      case ')':
+      case '[':
+      case ']':
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Checks if character is one that makes the UrlDetector look for a url, such as a '.', a ':' or a '/'. Text without
+   * any of these can't hold a url, so it doesn't need to be detected.
+   */
+  public static boolean couldStartUrl(char a) {
+    switch (a) {
+      case '.':
+      case '\u3002':
+      case '\uFF0E':
+      case '\uFF61':
+      case ':':
+      case '/':
+      case '%':
+      case '@':
+      case '[':
+        return true;
+      default:
+        return false;
+    }
+  }
+
   public static boolean isWhiteSpace(char a) {
     return (a == '\n' || a == '\t' || a == '\r' || a == ' ');
   }
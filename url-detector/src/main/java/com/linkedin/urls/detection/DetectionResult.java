@@ -0,0 +1,229 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+import com.linkedin.urls.UrlPart;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The urls found in a piece of text, stored compactly as the location of each url in the text plus the indices of its
+ * parts. The result is immutable so it can be shared between callers; the Url objects are only created on request.
+ */
+public class DetectionResult {
+
+  /**
+   * The number of ints stored per url: the start and end in the content, followed by one index per url part.
+   */
+  private static final int STRIDE = 2 + UrlPart.values().length;
+
+  private static final UrlPart[] URL_PARTS = UrlPart.values();
+
+  /**
+   * A rough size of a materialized Url object and its marker, used to weigh the result.
+   */
+  private static final int URL_OBJECT_WEIGHT = 128;
+
+  /**
+   * The text the urls were found in.
+   */
+  private final String _content;
+
+  /**
+   * Number of urls found.
+   */
+  private final int _size;
+
+  /**
+   * For each url: start, end, followed by the part indices relative to the start of the url.
+   */
+  private final int[] _spans;
+
+  /**
+   * The text of the urls that are not an exact copy of a range of the content, null if there are none.
+   */
+  private final String[] _urlTexts;
+
+  /**
+   * The urls, created the first time they are requested.
+   */
+  private volatile List<Url> _urls;
+
+  private DetectionResult(String content, int size, int[] spans, String[] urlTexts) {
+    _content = content;
+    _size = size;
+    _spans = spans;
+    _urlTexts = urlTexts;
+  }
+
+  /**
+   * Detects the urls in the content and returns them in the compact form.
+   * @param content The content to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting the content.
+   * @return The detected urls.
+   */
+  public static DetectionResult detect(String content, UrlDetectorOptions options) {
+    Collector collector = new Collector(content);
+    new UrlDetector(content, options).detect(collector);
+    return collector.toResult();
+  }
+
+  /**
+   * @return The text the urls were found in.
+   */
+  public String getContent() {
+    return _content;
+  }
+
+  /**
+   * @return The number of urls found.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @param index The index of the url in this result.
+   * @return The index in the content of the first character of the url, or -1 if the url is not an exact copy of
+   *     the content.
+   */
+  public int getStart(int index) {
+    return _spans[checkIndex(index) * STRIDE];
+  }
+
+  /**
+   * @param index The index of the url in this result.
+   * @return The index in the content right after the url, or -1 if the url is not an exact copy of the content.
+   */
+  public int getEnd(int index) {
+    return _spans[checkIndex(index) * STRIDE + 1];
+  }
+
+  /**
+   * @param index The index of the url in this result.
+   * @param urlPart The part you want the index of.
+   * @return The index of the part within the url, or -1 if the url doesn't have that part.
+   */
+  public int indexOf(int index, UrlPart urlPart) {
+    return _spans[checkIndex(index) * STRIDE + 2 + urlPart.ordinal()];
+  }
+
+  /**
+   * @param index The index of the url in this result.
+   * @return The text of the url, as getOriginalUrl() of the Url would return it.
+   */
+  public String getOriginalUrl(int index) {
+    int start = getStart(index);
+    return start == -1 ? _urlTexts[index] : _content.substring(start, getEnd(index));
+  }
+
+  /**
+   * @param index The index of the url in this result.
+   * @return The url at the index.
+   */
+  public Url getUrl(int index) {
+    return getUrls().get(index);
+  }
+
+  /**
+   * @return An unmodifiable list of the urls, in the order they were found. The list is created once and shared.
+   */
+  public List<Url> getUrls() {
+    List<Url> urls = _urls;
+    if (urls == null) {
+      if (_size == 0) {
+        urls = Collections.emptyList();
+      } else {
+        Url[] created = new Url[_size];
+        for (int i = 0; i < _size; i++) {
+          created[i] = createUrlMarker(i).createUrl();
+        }
+        urls = Collections.unmodifiableList(Arrays.asList(created));
+      }
+      _urls = urls;
+    }
+    return urls;
+  }
+
+  /**
+   * @return The approximate number of bytes kept alive by this result once its urls are created.
+   */
+  long getWeight() {
+    return 2L * _content.length() + 4L * _spans.length + (long) _size * URL_OBJECT_WEIGHT;
+  }
+
+  private UrlMarker createUrlMarker(int index) {
+    UrlMarker urlMarker = new UrlMarker();
+    urlMarker.setOriginalUrl(getOriginalUrl(index));
+    for (UrlPart urlPart : URL_PARTS) {
+      urlMarker.setIndex(urlPart, indexOf(index, urlPart));
+    }
+    return urlMarker;
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= _size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+    }
+    return index;
+  }
+
+  /**
+   * Collects the urls from the UrlDetector into the compact form.
+   */
+  private static class Collector implements UrlHandler {
+    private final String _content;
+    private int[] _spans = new int[STRIDE * 4];
+    private int _size = 0;
+    private List<String> _urlTexts;
+
+    Collector(String content) {
+      _content = content;
+    }
+
+    @Override
+    public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+      if ((_size + 1) * STRIDE > _spans.length) {
+        _spans = Arrays.copyOf(_spans, _spans.length * 2);
+      }
+      int offset = _size * STRIDE;
+      _spans[offset] = start;
+      _spans[offset + 1] = end;
+      for (UrlPart urlPart : URL_PARTS) {
+        _spans[offset + 2 + urlPart.ordinal()] = urlMarker.indexOf(urlPart);
+      }
+
+      if (start == -1) {
+        if (_urlTexts == null) {
+          _urlTexts = new ArrayList<String>();
+        }
+        while (_urlTexts.size() < _size) {
+          _urlTexts.add(null);
+        }
+        _urlTexts.add(urlMarker.getOriginalUrl());
+      }
+      _size++;
+      return true;
+    }
+
+    DetectionResult toResult() {
+      String[] urlTexts = null;
+      if (_urlTexts != null) {
+        urlTexts = _urlTexts.toArray(new String[_size]);
+      }
+      return new DetectionResult(_content, _size, Arrays.copyOf(_spans, _size * STRIDE), urlTexts);
+    }
+  }
+}
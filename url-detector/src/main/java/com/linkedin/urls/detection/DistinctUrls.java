@@ -0,0 +1,302 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.NormalizedUrl;
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The distinct urls found in a piece of text by UrlDetector.detectDistinct(), in the order they first appear. Each url
+ * is kept once, with the number of times it was found and where.
+ *
+ * Urls are distinct either by their text, or, if normalized, by their NormalizedUrl: http://A.com/x/../y and
+ * http://a.com/y are then the same url. Repeats are recognized while the detector reads them, by hashing the text of
+ * the url in the buffer of the detector and looking it up in an open addressing table, so a repeated url costs neither
+ * a string nor a Url object.
+ */
+public final class DistinctUrls {
+
+  /**
+   * The highest share of the slots of a table that is used.
+   */
+  private static final double MAX_LOAD = 0.5;
+
+  private final boolean _normalized;
+
+  /**
+   * The marker of the first occurrence of each distinct url, and its url once it is created.
+   */
+  private final List<UrlMarker> _urlMarkers = new ArrayList<UrlMarker>();
+  private final List<Url> _urls = new ArrayList<Url>();
+
+  /**
+   * The distinct texts of the urls seen so far, with the hash of each and the distinct url it is an occurrence of.
+   * When normalized, several texts can belong to the same url.
+   */
+  private final List<String> _texts = new ArrayList<String>();
+  private int[] _textHashes = new int[16];
+  private int[] _textUrls = new int[16];
+
+  /**
+   * Open addressing tables holding the index of a text, or of a normalized url, plus one; 0 marks an empty slot.
+   */
+  private int[] _textSlots = new int[32];
+  private int[] _urlSlots;
+
+  /**
+   * The hash code of each normalized url, when normalized.
+   */
+  private int[] _urlHashes;
+
+  /**
+   * For each occurrence: the index of the distinct url, the start and the end in the input.
+   */
+  private int[] _occurrences = new int[3 * 16];
+  private int _occurrenceCount = 0;
+
+  /**
+   * Set once the detection is done: the occurrences of url i are at [_occurrenceStarts[i], _occurrenceStarts[i + 1])
+   * of _starts and _ends, in the order they were found.
+   */
+  private int[] _occurrenceStarts;
+  private int[] _starts;
+  private int[] _ends;
+
+  DistinctUrls(boolean normalized) {
+    _normalized = normalized;
+    _urlSlots = normalized ? new int[32] : null;
+    _urlHashes = normalized ? new int[16] : null;
+  }
+
+  /**
+   * @return True if the urls are distinct by their normalized form, false if by their text.
+   */
+  public boolean isNormalized() {
+    return _normalized;
+  }
+
+  /**
+   * @return The number of distinct urls.
+   */
+  public int size() {
+    return _urlMarkers.size();
+  }
+
+  /**
+   * @param index The index of the distinct url.
+   * @return The url as it was first found. It is a NormalizedUrl if the urls are distinct by their normalized form.
+   */
+  public Url getUrl(int index) {
+    Url url = _urls.get(index);
+    if (url == null) {
+      url = _urlMarkers.get(index).createUrl();
+      _urls.set(index, url);
+    }
+    return url;
+  }
+
+  /**
+   * @return The distinct urls, in the order they first appear.
+   */
+  public List<Url> getUrls() {
+    List<Url> urls = new ArrayList<Url>(size());
+    for (int i = 0; i < size(); i++) {
+      urls.add(getUrl(i));
+    }
+    return Collections.unmodifiableList(urls);
+  }
+
+  /**
+   * @param index The index of the distinct url.
+   * @return The number of times the url was found.
+   */
+  public int getCount(int index) {
+    return _occurrenceStarts[index + 1] - _occurrenceStarts[index];
+  }
+
+  /**
+   * @param index The index of the distinct url.
+   * @param occurrence Which time the url was found, from 0 to getCount(index) - 1.
+   * @return The index in the input of the first character of that occurrence, or -1 if it is not an exact copy of
+   *     the input.
+   */
+  public int getStart(int index, int occurrence) {
+    return _starts[checkOccurrence(index, occurrence)];
+  }
+
+  /**
+   * @param index The index of the distinct url.
+   * @param occurrence Which time the url was found, from 0 to getCount(index) - 1.
+   * @return The index in the input right after that occurrence, or -1 if it is not an exact copy of the input.
+   */
+  public int getEnd(int index, int occurrence) {
+    return _ends[checkOccurrence(index, occurrence)];
+  }
+
+  private int checkOccurrence(int index, int occurrence) {
+    int count = getCount(index);
+    if (occurrence < 0 || occurrence >= count) {
+      throw new IndexOutOfBoundsException("Occurrence: " + occurrence + ", Count: " + count);
+    }
+    return _occurrenceStarts[index] + occurrence;
+  }
+
+  /**
+   * Records another occurrence of a url whose text was seen before.
+   * @param text The text of the url, such as the buffer of the detector.
+   * @return True if the text was seen before and the occurrence was recorded, false if the url has to be added.
+   */
+  boolean addRepeat(CharSequence text, int start, int end) {
+    int hash = hash(text);
+    int mask = _textSlots.length - 1;
+    for (int slot = hash & mask; _textSlots[slot] != 0; slot = (slot + 1) & mask) {
+      int index = _textSlots[slot] - 1;
+      if (_textHashes[index] == hash && _texts.get(index).contentEquals(text)) {
+        addOccurrence(_textUrls[index], start, end);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Records a url whose text wasn't seen before.
+   * @param urlMarker The marker of the url, holding its text.
+   */
+  void add(UrlMarker urlMarker, int start, int end) {
+    int url = -1;
+    Url created = null;
+    if (_normalized) {
+      created = new NormalizedUrl(urlMarker);
+      url = findUrl(created);
+    }
+    if (url == -1) {
+      url = _urlMarkers.size();
+      _urlMarkers.add(urlMarker);
+      _urls.add(created);
+      if (_normalized) {
+        if (url == _urlHashes.length) {
+          _urlHashes = Arrays.copyOf(_urlHashes, url * 2);
+        }
+        _urlHashes[url] = created.hashCode();
+        _urlSlots = insert(_urlSlots, url, _urlHashes);
+      }
+    }
+
+    String text = urlMarker.getOriginalUrl();
+    int index = _texts.size();
+    if (index == _textHashes.length) {
+      _textHashes = Arrays.copyOf(_textHashes, index * 2);
+      _textUrls = Arrays.copyOf(_textUrls, index * 2);
+    }
+    _texts.add(text);
+    _textHashes[index] = hash(text);
+    _textUrls[index] = url;
+    _textSlots = insert(_textSlots, index, _textHashes);
+    addOccurrence(url, start, end);
+  }
+
+  /**
+   * Groups the occurrences by url once the detection is done.
+   */
+  DistinctUrls finish() {
+    int size = size();
+    _occurrenceStarts = new int[size + 1];
+    for (int i = 0; i < _occurrenceCount; i++) {
+      _occurrenceStarts[_occurrences[3 * i] + 1]++;
+    }
+    for (int i = 0; i < size; i++) {
+      _occurrenceStarts[i + 1] += _occurrenceStarts[i];
+    }
+    _starts = new int[_occurrenceCount];
+    _ends = new int[_occurrenceCount];
+    int[] positions = Arrays.copyOf(_occurrenceStarts, size);
+    for (int i = 0; i < _occurrenceCount; i++) {
+      int position = positions[_occurrences[3 * i]]++;
+      _starts[position] = _occurrences[3 * i + 1];
+      _ends[position] = _occurrences[3 * i + 2];
+    }
+    _occurrences = null;
+    _texts.clear();
+    _textHashes = null;
+    _textUrls = null;
+    _textSlots = null;
+    _urlSlots = null;
+    _urlHashes = null;
+    return this;
+  }
+
+  private int findUrl(Url url) {
+    int hash = url.hashCode();
+    int mask = _urlSlots.length - 1;
+    for (int slot = hash & mask; _urlSlots[slot] != 0; slot = (slot + 1) & mask) {
+      int index = _urlSlots[slot] - 1;
+      if (_urlHashes[index] == hash && _urls.get(index).equals(url)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private void addOccurrence(int url, int start, int end) {
+    if (3 * (_occurrenceCount + 1) > _occurrences.length) {
+      _occurrences = Arrays.copyOf(_occurrences, _occurrences.length * 2);
+    }
+    _occurrences[3 * _occurrenceCount] = url;
+    _occurrences[3 * _occurrenceCount + 1] = start;
+    _occurrences[3 * _occurrenceCount + 2] = end;
+    _occurrenceCount++;
+  }
+
+  /**
+   * Adds the index to the table, growing the table when it gets too full.
+   * @param hashes The hash of each index in the table.
+   * @return The table, which is a new one if it grew.
+   */
+  private static int[] insert(int[] slots, int index, int[] hashes) {
+    if (index + 1 > slots.length * MAX_LOAD) {
+      int[] grown = new int[slots.length * 2];
+      for (int slot : slots) {
+        if (slot != 0) {
+          place(grown, slot - 1, hashes[slot - 1]);
+        }
+      }
+      slots = grown;
+    }
+    place(slots, index, hashes[index]);
+    return slots;
+  }
+
+  private static void place(int[] slots, int index, int hash) {
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    while (slots[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = index + 1;
+  }
+
+  /**
+   * Hashes the text, spreading the high bits to the low bits, which pick the slot.
+   */
+  private static int hash(CharSequence text) {
+    int hash = 0;
+    for (int i = 0; i < text.length(); i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -306,6 +306,13 @@ public class DomainNameReader {
     return ReaderNextState.ValidDomainName;
   }
 
+  /**
+   * @return The index in the buffer where the domain name that was read starts.
+   */
+  int getDomainNameStart() {
+    return _startDomainName;
+  }
+
   /**
    * Reads the Dns and returns the next state the state machine should take in throwing this out, or continue processing
    * if this is a valid domain name.
@@ -476,6 +483,7 @@ public class DomainNameReader {
 
     int domainLength = _buffer.length() - _startDomainName + (_currentLabelLength > 0 ? lastDotLength : 0);
     int dotCount = _dots + (_currentLabelLength > 0 ? 1 : 0);
+    boolean isMultiLevel = (_currentLabelLength > 0 && _dots >= 1) || (_dots >= 2 && _currentLabelLength == 0);
     if (domainLength >= MAX_DOMAIN_LENGTH || (dotCount > MAX_NUMBER_LABELS)) {
       valid = false;
     } else if (_numeric) {
@@ -484,8 +492,7 @@ public class DomainNameReader {
     } else if (_seenBracket) {
       String testDomain = _buffer.substring(_startDomainName).toLowerCase();
       valid = isValidIpv6(testDomain);
-    } else if ((_currentLabelLength > 0 && _dots >= 1) || (_dots >= 2 && _currentLabelLength == 0)
-        || (_options.hasFlag(UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN) && _dots == 0)) {
+    } else if (isMultiLevel || (_options.hasFlag(UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN) && _dots == 0)) {
 
       int topStart = _buffer.length() - _topLevelLength;
       if (_currentLabelLength == 0) {
@@ -499,6 +506,11 @@ public class DomainNameReader {
       //There is no size restriction if the top level domain is international (starts with "xn--")
       valid =
           ((topLevelStart.equalsIgnoreCase("xn--") || (_topLevelLength >= MIN_TOP_LEVEL_DOMAIN && _topLevelLength <= MAX_TOP_LEVEL_DOMAIN)));
+
+      //In strict mode, the top level domain also has to be a known one.
+      if (valid && isMultiLevel && _options.hasFlag(UrlDetectorOptions.STRICT_TLD)) {
+        valid = isKnownTopLevelDomain(lastDotLength);
+      }
     }
 
     if (valid) {
@@ -517,6 +529,44 @@ public class DomainNameReader {
     return ReaderNextState.InvalidDomainName;
   }
 
+  /**
+   * Checks the last label of the domain name against the bundled top level domains, in place in the buffer.
+   * @param lastDotLength The length of the trailing dot, if there is one: 1, or 3 if it is url encoded.
+   * @return True if the top level domain is a known one.
+   */
+  private boolean isKnownTopLevelDomain(int lastDotLength) {
+    int end = _buffer.length() - (_currentLabelLength == 0 ? lastDotLength : 0);
+    int start = end;
+    boolean encoded = false;
+    while (start > _startDomainName && !CharUtils.isDot(_buffer.charAt(start - 1)) && !isEncodedDot(start - 3)) {
+      start--;
+      encoded |= _buffer.charAt(start) == '%';
+    }
+    if (!encoded) {
+      return TopLevelDomains.getInstance().contains(_buffer, start, end);
+    }
+
+    //rare case of a url encoded top level domain, such as %63%6f%6d: decode it first.
+    StringBuilder decoded = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      char curr = _buffer.charAt(i);
+      if (curr == '%' && i + 2 < end) {
+        curr = (char) Integer.parseInt(_buffer.substring(i + 1, i + 3), 16);
+        i += 2;
+      }
+      decoded.append(curr);
+    }
+    return TopLevelDomains.getInstance().contains(decoded, 0, decoded.length());
+  }
+
+  /**
+   * @return True if the buffer holds a url encoded dot at the index.
+   */
+  private boolean isEncodedDot(int index) {
+    return index >= _startDomainName && _buffer.charAt(index) == '%' && _buffer.charAt(index + 1) == '2'
+        && Character.toLowerCase(_buffer.charAt(index + 2)) == 'e';
+  }
+
   /**
    * Handles Hexadecimal, octal, decimal, dotted decimal, dotted hex, dotted octal.
    * @param testDomain the string we're testing
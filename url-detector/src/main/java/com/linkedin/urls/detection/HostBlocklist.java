@@ -0,0 +1,180 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import java.util.Collection;
+
+
+/**
+ * A set of blocked hosts and domains that the host of a url can be checked against. An entry such as "example.com"
+ * matches the host example.com and all of its subdomains, such as www.example.com, but not notexample.com. Hosts are
+ * matched as they are written, ignoring case and a trailing dot.
+ *
+ * The list is meant to hold millions of entries, so it doesn't keep the entries themselves: it keeps a 64 bit hash of
+ * each in an open addressing table of longs. Checking a host hashes it once from right to left, and looks up the hash
+ * at each label boundary, so it doesn't allocate. Because only hashes are kept, two different hosts can in theory
+ * have the same hash; with 64 bits this is so unlikely that it can be ignored for lists of this size.
+ *
+ * A blocklist is immutable. To replace it while urls are being detected, keep it in an AtomicReference that is given
+ * to UrlDetector.setHostBlocklist() and set the new list there; each detection uses the list that was set when it
+ * started.
+ */
+public final class HostBlocklist {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  /**
+   * The highest share of the slots of the table that is used.
+   */
+  private static final double MAX_LOAD = 0.75;
+
+  /**
+   * The hash of each entry, or 0 for an empty slot. The length is a power of two.
+   */
+  private final long[] _slots;
+
+  private final int _size;
+
+  private HostBlocklist(long[] slots, int size) {
+    _slots = slots;
+    _size = size;
+  }
+
+  /**
+   * Creates a blocklist from hosts and domains such as "example.com". A leading "*." or "." and a trailing dot are
+   * ignored, so "*.example.com" is the same entry as "example.com". Empty entries are skipped.
+   * @param entries The hosts and domains to block.
+   * @return The blocklist.
+   */
+  public static HostBlocklist create(Collection<String> entries) {
+    int capacity = Integer.highestOneBit(Math.max((int) (entries.size() / MAX_LOAD), 1) * 2);
+    long[] slots = new long[capacity];
+    int size = 0;
+    for (String entry : entries) {
+      int start = entry.startsWith("*.") ? 2 : entry.startsWith(".") ? 1 : 0;
+      int end = hostEnd(entry, start, entry.length());
+      if (start >= end) {
+        continue;
+      }
+      if (insert(slots, hash(entry, start, end))) {
+        size++;
+      }
+    }
+    return new HostBlocklist(slots, size);
+  }
+
+  /**
+   * @return The number of distinct entries.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @param host The host to check, such as "www.example.com".
+   * @return True if the host or one of the domains it is part of is in the list.
+   */
+  public boolean matches(CharSequence host) {
+    return findMatch(host, 0, host.length()) != -1;
+  }
+
+  /**
+   * Checks the host text[start, end) against the list, starting with its top level domain and ending with the whole
+   * host.
+   * @param text The text holding the host.
+   * @param start The index of the first character of the host.
+   * @param end The index right after the last character of the host.
+   * @return The index in the text where the shortest matching entry starts, or -1 if there is no match.
+   */
+  public int findMatch(CharSequence text, int start, int end) {
+    end = hostEnd(text, start, end);
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = end - 1; i >= start; i--) {
+      hash = update(hash, text.charAt(i));
+      //only whole labels match, so look up the hash when a label starts.
+      if ((i == start || CharUtils.isDot(text.charAt(i - 1))) && contains(mix(hash))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean contains(long hash) {
+    int mask = _slots.length - 1;
+    for (int slot = (int) hash & mask; _slots[slot] != 0; slot = (slot + 1) & mask) {
+      if (_slots[slot] == hash) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return False if the hash was already in the table.
+   */
+  private static boolean insert(long[] slots, long hash) {
+    int mask = slots.length - 1;
+    int slot = (int) hash & mask;
+    while (slots[slot] != 0) {
+      if (slots[slot] == hash) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = hash;
+    return true;
+  }
+
+  /**
+   * @return The end of the host without its trailing dot.
+   */
+  private static int hostEnd(CharSequence text, int start, int end) {
+    return end > start && CharUtils.isDot(text.charAt(end - 1)) ? end - 1 : end;
+  }
+
+  /**
+   * Hashes text[start, end) the same way findMatch() does, from right to left.
+   */
+  private static long hash(CharSequence text, int start, int end) {
+    long hash = FNV_OFFSET_BASIS;
+    for (int i = end - 1; i >= start; i--) {
+      hash = update(hash, text.charAt(i));
+    }
+    return mix(hash);
+  }
+
+  /**
+   * Adds a character to an FNV-1a hash. Case and the different kinds of dots don't change the hash.
+   */
+  private static long update(long hash, char curr) {
+    if (CharUtils.isDot(curr)) {
+      curr = '.';
+    } else if (curr >= 'A' && curr <= 'Z') {
+      curr += 'a' - 'A';
+    } else if (curr >= 0x80) {
+      curr = Character.toLowerCase(curr);
+    }
+    return (hash ^ curr) * FNV_PRIME;
+  }
+
+  /**
+   * Mixes the bits of the hash, so the low bits used to pick a slot depend on all of them. Never returns 0, which
+   * marks an empty slot.
+   */
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash == 0 ? 1 : hash;
+  }
+}
@@ -0,0 +1,522 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Detects the urls in html. The markup is read once by a small tokenizer that skips tag and attribute names, comments
+ * and, optionally, the bodies of script and style elements, and decodes the character entities of the text and of the
+ * attribute values, so that a query string written as ?a=1&amp;b=2 is read as ?a=1&b=2. Only the text and attribute
+ * values are detected, each run of them by a UrlDetector of its own as soon as it is read, so urls don't run from one
+ * into the next. A run with entities is decoded into a scratch buffer that is reused for every run, and a run without
+ * entities or any of the characters a url needs is skipped without being copied, so the markup is never copied as a
+ * whole. The attributes that don't hold urls, such as class and style, are left out.
+ *
+ * The urls are in their decoded form. The handler given to detect() gets the range of the markup each url was read
+ * from, which holds any entities of the url undecoded, so it is only an exact copy of the url when the url has no
+ * entities.
+ */
+public final class HtmlUrlDetector {
+
+  /**
+   * The attributes whose values are not read, since they hold names, sizes and styling rather than urls or text.
+   */
+  private static final Set<String> SKIPPED_ATTRIBUTES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+      "class", "id", "style", "width", "height", "lang", "dir", "role", "type", "target", "rel", "align", "valign",
+      "border", "bgcolor", "color", "cellpadding", "cellspacing")));
+
+  /**
+   * The named character entities that are decoded. Others are kept as they are. A non breaking space is decoded to a
+   * space, so that it ends a url like a space does.
+   */
+  private static final Map<String, Character> ENTITIES = new HashMap<String, Character>();
+
+  static {
+    ENTITIES.put("amp", '&');
+    ENTITIES.put("lt", '<');
+    ENTITIES.put("gt", '>');
+    ENTITIES.put("quot", '"');
+    ENTITIES.put("apos", '\'');
+    ENTITIES.put("nbsp", ' ');
+    ENTITIES.put("sol", '/');
+    ENTITIES.put("colon", ':');
+    ENTITIES.put("period", '.');
+    ENTITIES.put("quest", '?');
+    ENTITIES.put("equals", '=');
+    ENTITIES.put("num", '#');
+    ENTITIES.put("percnt", '%');
+  }
+
+  /**
+   * The longest named or numeric entity that is decoded, not counting the '&' and ';'.
+   */
+  private static final int MAX_ENTITY_LENGTH = 10;
+
+  private final String _markup;
+  private final UrlDetectorOptions _options;
+  private final boolean _skipScriptAndStyle;
+
+  /**
+   * The decoded text of the run being detected, and for each of its characters, where it starts in the markup. The
+   * entry after the last character is where the run ends in the markup. Only used for runs with entities.
+   */
+  private final StringBuilder _scratch = new StringBuilder();
+  private int[] _offsets = new int[64];
+
+  /**
+   * Where the run being detected starts in the markup, and whether it was decoded into _scratch.
+   */
+  private int _runStart = 0;
+  private boolean _runDecoded = false;
+
+  /**
+   * Collects the decoded runs, each followed by a space, instead of detecting them, for getText().
+   */
+  private StringBuilder _text = null;
+
+  private int _maxUrlLength = Integer.MAX_VALUE;
+  private boolean _truncateLongUrls = false;
+  private int _maxUrlsPerDocument = Integer.MAX_VALUE;
+  private AtomicReference<HostBlocklist> _hostBlocklist = null;
+  private boolean _blockedOnly = false;
+
+  private UrlHandler _handler = null;
+  private UrlDetector _detector = null;
+  private int _urlCount = 0;
+
+  /**
+   * Set when the handler asked to stop reading the markup, or the maximum number of urls was found.
+   */
+  private boolean _stopped = false;
+
+  /**
+   * Passes the urls of each run to _handler, with the range of the markup they were read from.
+   */
+  private final UrlHandler _runHandler = new UrlHandler() {
+    @Override
+    public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+      boolean keepGoing;
+      if (start == -1) {
+        keepGoing = _handler.handleUrl(urlMarker, -1, -1);
+      } else if (_runDecoded) {
+        keepGoing = _handler.handleUrl(urlMarker, _offsets[start], _offsets[end]);
+      } else {
+        keepGoing = _handler.handleUrl(urlMarker, _runStart + start, _runStart + end);
+      }
+      _stopped = !keepGoing || ++_urlCount >= _maxUrlsPerDocument;
+      return !_stopped;
+    }
+  };
+
+  /**
+   * Reads the markup, skipping the bodies of script and style elements.
+   * @param markup The html to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting the text of the html.
+   */
+  public HtmlUrlDetector(String markup, UrlDetectorOptions options) {
+    this(markup, options, true);
+  }
+
+  /**
+   * @param markup The html to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting the text of the html.
+   * @param skipScriptAndStyle True to skip the bodies of script and style elements, false to read them as text.
+   */
+  public HtmlUrlDetector(String markup, UrlDetectorOptions options, boolean skipScriptAndStyle) {
+    _markup = markup;
+    _options = options;
+    _skipScriptAndStyle = skipScriptAndStyle;
+  }
+
+  /**
+   * Limits how long a url can get, see UrlDetector.setMaxUrlLength().
+   * @param maxUrlLength The maximum number of characters of a url.
+   * @param truncate True to pass on a url that is too long cut at the maximum length, false to drop it.
+   */
+  public void setMaxUrlLength(int maxUrlLength, boolean truncate) {
+    if (maxUrlLength <= 0) {
+      throw new IllegalArgumentException("The maximum url length must be positive: " + maxUrlLength);
+    }
+    _maxUrlLength = maxUrlLength;
+    _truncateLongUrls = truncate;
+  }
+
+  /**
+   * Stops the detection once the given number of urls were found in the whole markup.
+   * @param maxUrlsPerDocument The maximum number of urls to find.
+   */
+  public void setMaxUrlsPerDocument(int maxUrlsPerDocument) {
+    if (maxUrlsPerDocument <= 0) {
+      throw new IllegalArgumentException("The maximum number of urls must be positive: " + maxUrlsPerDocument);
+    }
+    _maxUrlsPerDocument = maxUrlsPerDocument;
+  }
+
+  /**
+   * Checks the host of each url against a blocklist, see UrlDetector.setHostBlocklist(). The blocklist that is set
+   * when a detection starts is used for all of the markup. To stop at the first blocked url, return false from the
+   * handler when isBlocked() is true.
+   * @param hostBlocklist Holds the blocklist to use.
+   * @param blockedOnly True to only pass the urls whose host matches the blocklist to the handler.
+   */
+  public void setHostBlocklist(AtomicReference<HostBlocklist> hostBlocklist, boolean blockedOnly) {
+    _hostBlocklist = hostBlocklist;
+    _blockedOnly = blockedOnly;
+  }
+
+  /**
+   * Tells a UrlHandler if the url it is handling is blocked.
+   * @return True if the host of the url that is being passed to the handler matches the host blocklist.
+   */
+  public boolean isBlocked() {
+    return _detector != null && _detector.isBlocked();
+  }
+
+  /**
+   * Detects the urls and returns a list of detected url strings.
+   * @return A list with detected urls, in their decoded form.
+   */
+  public List<Url> detect() {
+    final List<Url> urls = new ArrayList<Url>();
+    detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        urls.add(urlMarker.createUrl());
+        return true;
+      }
+    });
+    return urls;
+  }
+
+  /**
+   * Detects the urls and passes each of them to the handler as soon as it is read.
+   * @param handler The handler to call for each url found, with the range of the markup the url was read from, or -1
+   *     if the url isn't a copy of a range of the decoded text. If it returns false, the detection stops.
+   */
+  public void detect(UrlHandler handler) {
+    AtomicReference<HostBlocklist> hostBlocklist = _hostBlocklist;
+    if (hostBlocklist != null) {
+      //every run sees the same blocklist, even if it is replaced while the markup is read.
+      _hostBlocklist = new AtomicReference<HostBlocklist>(hostBlocklist.get());
+    }
+    _handler = handler;
+    _urlCount = 0;
+    _stopped = false;
+    try {
+      readMarkup();
+    } finally {
+      _hostBlocklist = hostBlocklist;
+      _detector = null;
+    }
+  }
+
+  /**
+   * @return The decoded text and attribute values that are detected, each run followed by a space.
+   */
+  String getText() {
+    _text = new StringBuilder();
+    _stopped = false;
+    readMarkup();
+    String text = _text.toString();
+    _text = null;
+    return text;
+  }
+
+  /**
+   * Reads the markup once, detecting the text and the attribute values as they are read.
+   */
+  private void readMarkup() {
+    int length = _markup.length();
+    int index = 0;
+    while (index < length && !_stopped) {
+      int tagStart = _markup.indexOf('<', index);
+      if (tagStart == -1) {
+        readRun(index, length, true);
+        break;
+      }
+      if (tagStart > index) {
+        readRun(index, tagStart, true);
+      }
+
+      char next = tagStart + 1 < length ? _markup.charAt(tagStart + 1) : ' ';
+      if (_markup.startsWith("<!--", tagStart)) {
+        index = skipPast("-->", tagStart + 4);
+      } else if (_markup.startsWith("<![CDATA[", tagStart)) {
+        int end = _markup.indexOf("]]>", tagStart);
+        end = end == -1 ? length : end;
+        readRun(tagStart + 9, end, false);
+        index = Math.min(end + 3, length);
+      } else if (next == '!' || next == '?') {
+        //a doctype or a processing instruction.
+        index = skipPast(">", tagStart + 2);
+      } else if (CharUtils.isAlpha(next)
+          || (next == '/' && tagStart + 2 < length && CharUtils.isAlpha(_markup.charAt(tagStart + 2)))) {
+        index = readTag(tagStart);
+      } else {
+        //a '<' that doesn't start a tag is text.
+        int end = _markup.indexOf('<', tagStart + 1);
+        end = end == -1 ? length : end;
+        readRun(tagStart, end, true);
+        index = end;
+      }
+    }
+  }
+
+  /**
+   * Reads a start or end tag, adding the values of its attributes to the text.
+   * @return The index after the tag, or of the end tag of a script or style element, after its body.
+   */
+  private int readTag(int tagStart) {
+    int length = _markup.length();
+    boolean endTag = _markup.charAt(tagStart + 1) == '/';
+    int nameStart = tagStart + (endTag ? 2 : 1);
+    int index = nameStart;
+    while (index < length && !isTagNameEnd(_markup.charAt(index))) {
+      index++;
+    }
+    //the names are ASCII, so they are lowercased the same in every locale, not with the dotless i of Turkish.
+    String name = _markup.substring(nameStart, index).toLowerCase(Locale.ROOT);
+
+    while (index < length) {
+      char curr = _markup.charAt(index);
+      if (curr == '>') {
+        index++;
+        break;
+      }
+      if (CharUtils.isWhiteSpace(curr) || curr == '/') {
+        index++;
+        continue;
+      }
+
+      //an attribute name, and then its value if it has one.
+      int attributeStart = index;
+      while (index < length && !isTagNameEnd(_markup.charAt(index)) && _markup.charAt(index) != '=') {
+        index++;
+      }
+      String attribute = _markup.substring(attributeStart, index).toLowerCase(Locale.ROOT);
+      int valueIndex = skipWhiteSpace(index);
+      if (valueIndex >= length || _markup.charAt(valueIndex) != '=') {
+        continue;
+      }
+      valueIndex = skipWhiteSpace(valueIndex + 1);
+      if (valueIndex >= length) {
+        index = valueIndex;
+        break;
+      }
+      char quote = _markup.charAt(valueIndex);
+      int valueStart;
+      int valueEnd;
+      if (quote == '"' || quote == '\'') {
+        valueStart = valueIndex + 1;
+        valueEnd = _markup.indexOf(quote, valueStart);
+        valueEnd = valueEnd == -1 ? length : valueEnd;
+        index = Math.min(valueEnd + 1, length);
+      } else {
+        valueStart = valueIndex;
+        valueEnd = valueIndex;
+        while (valueEnd < length && !CharUtils.isWhiteSpace(_markup.charAt(valueEnd))
+            && _markup.charAt(valueEnd) != '>') {
+          valueEnd++;
+        }
+        index = valueEnd;
+      }
+      if (!endTag && !SKIPPED_ATTRIBUTES.contains(attribute)) {
+        readRun(valueStart, valueEnd, true);
+      }
+    }
+
+    if (!endTag && (name.equals("script") || name.equals("style"))) {
+      //the body is raw text up to the end tag, without entities.
+      int bodyEnd = indexOfIgnoreCase("</" + name, index);
+      if (!_skipScriptAndStyle) {
+        readRun(index, bodyEnd, false);
+      }
+      return bodyEnd;
+    }
+    return index;
+  }
+
+  /**
+   * Detects a run of the markup, or adds it to _text followed by a space for getText().
+   * @param decode True to decode the character entities of the run.
+   */
+  private void readRun(int start, int end, boolean decode) {
+    if (_stopped) {
+      return;
+    }
+    boolean entities = false;
+    boolean couldHoldUrl = false;
+    for (int i = start; i < end && !(entities && couldHoldUrl); i++) {
+      char curr = _markup.charAt(i);
+      entities = entities || (decode && curr == '&');
+      couldHoldUrl = couldHoldUrl || CharUtils.couldStartUrl(curr);
+    }
+    if (_text == null && !couldHoldUrl && !entities) {
+      return;
+    }
+
+    String text;
+    _runStart = start;
+    _runDecoded = entities;
+    if (entities) {
+      decodeRun(start, end);
+      text = _scratch.toString();
+    } else {
+      text = _markup.substring(start, end);
+    }
+    if (_text != null) {
+      _text.append(text).append(' ');
+      return;
+    }
+
+    _detector = new UrlDetector(text, _options);
+    if (_maxUrlLength != Integer.MAX_VALUE) {
+      _detector.setMaxUrlLength(_maxUrlLength, _truncateLongUrls);
+    }
+    if (_hostBlocklist != null) {
+      _detector.setHostBlocklist(_hostBlocklist, _blockedOnly, false);
+    }
+    _detector.detect(_runHandler);
+  }
+
+  /**
+   * Decodes the character entities of a run into _scratch.
+   */
+  private void decodeRun(int start, int end) {
+    _scratch.setLength(0);
+    if (_offsets.length < end - start + 1) {
+      _offsets = Arrays.copyOf(_offsets, Math.max(end - start + 1, _offsets.length * 2));
+    }
+    int index = start;
+    while (index < end) {
+      char curr = _markup.charAt(index);
+      if (curr == '&') {
+        int entityEnd = decodeEntity(index, end);
+        if (entityEnd != -1) {
+          index = entityEnd;
+          continue;
+        }
+      }
+      addCharacter(curr, index);
+      index++;
+    }
+    _offsets[_scratch.length()] = end;
+  }
+
+  /**
+   * Decodes the character entity at the index and adds it to _scratch.
+   * @return The index after the entity, or -1 if there is no entity that is decoded at the index.
+   */
+  private int decodeEntity(int index, int end) {
+    int semicolon = -1;
+    for (int i = index + 1; i < end && i <= index + MAX_ENTITY_LENGTH + 1; i++) {
+      if (_markup.charAt(i) == ';') {
+        semicolon = i;
+        break;
+      }
+    }
+    if (semicolon == -1 || semicolon == index + 1) {
+      return -1;
+    }
+
+    if (_markup.charAt(index + 1) != '#') {
+      Character character = ENTITIES.get(_markup.substring(index + 1, semicolon));
+      if (character == null) {
+        return -1;
+      }
+      addCharacter(character, index);
+      return semicolon + 1;
+    }
+
+    boolean hex = semicolon > index + 2 && (_markup.charAt(index + 2) == 'x' || _markup.charAt(index + 2) == 'X');
+    int digitsStart = index + (hex ? 3 : 2);
+    if (digitsStart == semicolon) {
+      return -1;
+    }
+    int codePoint = 0;
+    for (int i = digitsStart; i < semicolon; i++) {
+      int digit = Character.digit(_markup.charAt(i), hex ? 16 : 10);
+      if (digit == -1) {
+        return -1;
+      }
+      codePoint = codePoint * (hex ? 16 : 10) + digit;
+      if (codePoint > Character.MAX_CODE_POINT) {
+        return -1;
+      }
+    }
+    if (codePoint == 0 || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+      return -1;
+    }
+    if (codePoint == 0xa0) {
+      codePoint = ' ';
+    }
+    if (Character.isBmpCodePoint(codePoint)) {
+      addCharacter((char) codePoint, index);
+    } else {
+      //both halves of the pair start at the entity.
+      addCharacter(Character.highSurrogate(codePoint), index);
+      addCharacter(Character.lowSurrogate(codePoint), index);
+    }
+    return semicolon + 1;
+  }
+
+  /**
+   * Adds a decoded character to _scratch, with where it starts in the markup. An entity decodes to at most as many
+   * characters as it takes in the markup, so _offsets always has room.
+   */
+  private void addCharacter(char character, int offset) {
+    _offsets[_scratch.length()] = offset;
+    _scratch.append(character);
+  }
+
+  private static boolean isTagNameEnd(char character) {
+    return CharUtils.isWhiteSpace(character) || character == '>' || character == '/';
+  }
+
+  private int skipWhiteSpace(int index) {
+    while (index < _markup.length() && CharUtils.isWhiteSpace(_markup.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * @return The index after the first text at or after the index, or the end of the markup if it isn't found.
+   */
+  private int skipPast(String text, int index) {
+    int found = _markup.indexOf(text, index);
+    return found == -1 ? _markup.length() : found + text.length();
+  }
+
+  /**
+   * @return The index of the first text at or after the index, ignoring case, or the end of the markup.
+   */
+  private int indexOfIgnoreCase(String text, int index) {
+    for (int i = index; i + text.length() <= _markup.length(); i++) {
+      if (_markup.regionMatches(true, i, text, 0, text.length())) {
+        return i;
+      }
+    }
+    return _markup.length();
+  }
+}
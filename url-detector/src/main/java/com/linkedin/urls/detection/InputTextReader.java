@@ -87,6 +87,74 @@ public class InputTextReader {
     return _index;
   }
 
+  /**
+   * Gets the total number of characters in the stream.
+   * @return The length of the content.
+   */
+  public int length() {
+    return _content.length;
+  }
+
+  /**
+   * Checks if the content at the specified position is exactly the specified text, without moving the index.
+   * @param position The position in the content to start comparing at.
+   * @param text The text to compare against.
+   * @return True if the text was found at the position, else false.
+   */
+  public boolean matches(int position, CharSequence text) {
+    int length = text.length();
+    if (position < 0 || position + length > _content.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (_content[position + i] != text.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Moves the index past the characters that can be in the data of a data: uri, see CharUtils.isDataUriCharacter(),
+   * with a single scan of the content.
+   * @return The number of characters skipped.
+   */
+  public int skipDataUriCharacters() {
+    int start = _index;
+    while (_index < _content.length && CharUtils.isDataUriCharacter(_content[_index])) {
+      _index++;
+    }
+    return _index - start;
+  }
+
+  /**
+   * Moves the index past a run of base64 characters, but only if the run is at least the given length.
+   * @param minLength The minimum length of a run to skip.
+   * @return The number of characters skipped, which is 0 if the run is shorter than minLength.
+   */
+  public int skipBase64Run(int minLength) {
+    int end = _index;
+    while (end < _content.length && CharUtils.isBase64(_content[end])) {
+      end++;
+    }
+    if (end - _index < minLength) {
+      return 0;
+    }
+    int length = end - _index;
+    _index = end;
+    return length;
+  }
+
+  /**
+   * Appends part of the content to the builder, without moving the index.
+   * @param builder The builder to append to.
+   * @param start The position of the first character to append.
+   * @param end The position after the last character to append.
+   */
+  public void appendTo(StringBuilder builder, int start, int end) {
+    builder.append(_content, start, end - start);
+  }
+
   /**
    * Moves the index to the specified position.
    * @param position The position to set the index to.
@@ -0,0 +1,521 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * Detects the urls in the string values of json. Unlike UrlDetectorOptions.JSON, which reads the whole json as text,
+ * the json is read once by a small tokenizer that skips the keys, numbers and literals, and only the string values are
+ * passed to a UrlDetector, one at a time as they are read, with their escapes decoded, so that http:\/\/host/a is read
+ * as http://host/a. A value with an escape is decoded into a scratch buffer that is reused for every value, and a
+ * value without any of the characters a url needs, such as a '.' or a ':', is skipped without being copied.
+ *
+ * The detection can be limited to the values at some paths of the json. A path starts with $, the root of the json,
+ * followed by .name or ['name'] for a member of an object and [*] for any element of an array, such as
+ * $.events[*].links. Selecting a path selects every value under it. The handler given to detect() gets the path of the
+ * value each url was found in, with the index of each array element, and the range of the json the url was read from,
+ * which holds any escapes of the url, so it is only an exact copy of the url when the url has no escapes.
+ *
+ * The tokenizer doesn't validate the json; text that isn't valid json is read as far as it can be, and a string that
+ * isn't closed runs to the end of the json. A detector is not thread safe.
+ */
+public final class JsonUrlDetector {
+
+  private static final int INITIAL_DEPTH = 16;
+
+  private final String _json;
+  private final UrlDetectorOptions _options;
+
+  /**
+   * The node of the root of the json in the tree of the selected paths. When no paths are given, it is selected.
+   */
+  private final PathNode _root;
+
+  /**
+   * For each container the tokenizer is in, from the root at depth 0: whether it's an array, the index of the current
+   * element of an array, the range of the json holding the current key of an object, with the start -1 before the
+   * first key and the end negated as -end - 1 if the key has escapes, and the node of the container in the tree of the
+   * selected paths, or null if nothing under it is selected.
+   */
+  private int _depth = 0;
+  private boolean[] _arrays = new boolean[INITIAL_DEPTH];
+  private int[] _indices = new int[INITIAL_DEPTH];
+  private int[] _keyStarts = new int[INITIAL_DEPTH];
+  private int[] _keyEnds = new int[INITIAL_DEPTH];
+  private PathNode[] _nodes = new PathNode[INITIAL_DEPTH];
+
+  /**
+   * The decoded text of the string value being detected, and for each of its characters, where it starts in the json.
+   * The entry after the last character is where the value ends in the json. Only used for values with escapes.
+   */
+  private final StringBuilder _scratch = new StringBuilder();
+  private int[] _offsets = new int[64];
+
+  /**
+   * Where the value being detected starts in the json, and whether it was decoded into _scratch.
+   */
+  private int _valueStart = 0;
+  private boolean _valueDecoded = false;
+
+  /**
+   * Whether the last string read by findStringEnd() has an escape, and whether it should be detected.
+   */
+  private boolean _escaped = false;
+  private boolean _couldHoldUrl = false;
+
+  private JsonUrlHandler _handler = null;
+
+  /**
+   * Set when the handler asked to stop reading the json.
+   */
+  private boolean _stopped = false;
+
+  /**
+   * Passes the urls of each string value to _handler, with the path of the value and the range of the json.
+   */
+  private final UrlHandler _valueHandler = new UrlHandler() {
+    @Override
+    public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+      boolean keepGoing;
+      if (start == -1) {
+        keepGoing = _handler.handleUrl(urlMarker, getPath(), -1, -1);
+      } else if (_valueDecoded) {
+        keepGoing = _handler.handleUrl(urlMarker, getPath(), _offsets[start], _offsets[end]);
+      } else {
+        keepGoing = _handler.handleUrl(urlMarker, getPath(), _valueStart + start, _valueStart + end);
+      }
+      _stopped = !keepGoing;
+      return keepGoing;
+    }
+  };
+
+  /**
+   * Detects the urls in every string value of the json.
+   * @param json The json to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting each string value.
+   */
+  public JsonUrlDetector(String json, UrlDetectorOptions options) {
+    this(json, options, null);
+  }
+
+  /**
+   * @param json The json to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting each string value.
+   * @param paths The paths of the values to detect, see above, or null to detect every string value.
+   * @throws IllegalArgumentException If a path can't be parsed.
+   */
+  public JsonUrlDetector(String json, UrlDetectorOptions options, Collection<String> paths) {
+    _json = json;
+    _options = options;
+    _root = new PathNode();
+    if (paths == null) {
+      _root._selected = true;
+    } else {
+      for (String path : paths) {
+        addPath(path);
+      }
+    }
+  }
+
+  /**
+   * Detects the urls and returns a list of detected url strings.
+   * @return A list with detected urls, with the escapes of the json decoded.
+   */
+  public List<Url> detect() {
+    final List<Url> urls = new ArrayList<Url>();
+    detect(new JsonUrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, String path, int start, int end) {
+        urls.add(urlMarker.createUrl());
+        return true;
+      }
+    });
+    return urls;
+  }
+
+  /**
+   * Detects the urls and passes each of them to the handler as soon as it is read.
+   * @param handler The handler to call for each url found. If it returns false, the detection stops.
+   */
+  public void detect(JsonUrlHandler handler) {
+    _handler = handler;
+    _stopped = false;
+    _depth = 0;
+    _arrays[0] = false;
+    _keyStarts[0] = -1;
+    _nodes[0] = _root;
+    readJson();
+  }
+
+  /**
+   * Reads the json once, detecting the string values as they are read.
+   */
+  private void readJson() {
+    int length = _json.length();
+    int index = 0;
+    boolean expectKey = false;
+    while (index < length && !_stopped) {
+      char curr = _json.charAt(index);
+      switch (curr) {
+        case '{':
+        case '[':
+          push(curr == '[', getValueNode());
+          expectKey = curr == '{';
+          index++;
+          break;
+        case '}':
+        case ']':
+          if (_depth > 0) {
+            _depth--;
+          }
+          expectKey = false;
+          index++;
+          break;
+        case ',':
+          if (_arrays[_depth]) {
+            _indices[_depth]++;
+          } else {
+            expectKey = _depth > 0;
+          }
+          index++;
+          break;
+        case ':':
+          expectKey = false;
+          index++;
+          break;
+        case '"':
+          if (expectKey) {
+            index = readKey(index + 1);
+            expectKey = false;
+          } else {
+            index = readValue(index + 1, getValueNode());
+          }
+          break;
+        default:
+          //white space, numbers and literals.
+          index++;
+          break;
+      }
+    }
+  }
+
+  /**
+   * Reads a key of an object, keeping where it is in the json for the paths of the values.
+   * @param start The index after the opening quote.
+   * @return The index after the closing quote.
+   */
+  private int readKey(int start) {
+    int end = findStringEnd(start, false);
+    _keyStarts[_depth] = start;
+    _keyEnds[_depth] = _escaped ? -end - 1 : end;
+    return Math.min(end + 1, _json.length());
+  }
+
+  /**
+   * Reads a string value, and detects it if it's selected and could hold a url.
+   * @param start The index after the opening quote.
+   * @param node The node of the value in the tree of the selected paths, or null if neither it nor anything under it
+   *     is selected. A node that is only on the way to a selected path isn't detected.
+   * @return The index after the closing quote.
+   */
+  private int readValue(int start, PathNode node) {
+    int end = findStringEnd(start, node != null && node._selected);
+    if (_couldHoldUrl) {
+      _valueStart = start;
+      _valueDecoded = _escaped;
+      String text;
+      if (_escaped) {
+        decode(start, end, _scratch, true);
+        text = _scratch.toString();
+      } else {
+        text = _json.substring(start, end);
+      }
+      new UrlDetector(text, _options).detect(_valueHandler);
+    }
+    return Math.min(end + 1, _json.length());
+  }
+
+  /**
+   * Finds the closing quote of a string, skipping the escaped characters, and sets _escaped and _couldHoldUrl.
+   * @param start The index after the opening quote.
+   * @param checkUrl True to check whether the string could hold a url.
+   * @return The index of the closing quote, or the length of the json if the string isn't closed.
+   */
+  private int findStringEnd(int start, boolean checkUrl) {
+    int length = _json.length();
+    boolean escaped = false;
+    boolean couldHoldUrl = false;
+    int index = start;
+    while (index < length) {
+      char curr = _json.charAt(index);
+      if (curr == '"') {
+        break;
+      }
+      if (curr == '\\') {
+        escaped = true;
+        index = Math.min(index + 2, length);
+        continue;
+      }
+      couldHoldUrl = couldHoldUrl || CharUtils.couldStartUrl(curr);
+      index++;
+    }
+    _escaped = escaped;
+    //an escape could stand for any character, so a string with one is detected.
+    _couldHoldUrl = checkUrl && (couldHoldUrl || escaped);
+    return index;
+  }
+
+  /**
+   * Decodes the escapes of a json string. An escape that isn't valid is kept as it is.
+   * @param start The index of the first character of the string in the json.
+   * @param end The index of the closing quote.
+   * @param output Cleared and filled with the decoded string.
+   * @param keepOffsets True to fill _offsets with where each decoded character starts in the json.
+   */
+  private void decode(int start, int end, StringBuilder output, boolean keepOffsets) {
+    output.setLength(0);
+    if (keepOffsets && _offsets.length < end - start + 1) {
+      _offsets = Arrays.copyOf(_offsets, Math.max(end - start + 1, _offsets.length * 2));
+    }
+    int index = start;
+    while (index < end) {
+      char curr = _json.charAt(index);
+      int next = index + 1;
+      if (curr == '\\' && next < end) {
+        next = index + 2;
+        switch (_json.charAt(index + 1)) {
+          case 'b':
+            curr = '\b';
+            break;
+          case 'f':
+            curr = '\f';
+            break;
+          case 'n':
+            curr = '\n';
+            break;
+          case 'r':
+            curr = '\r';
+            break;
+          case 't':
+            curr = '\t';
+            break;
+          case 'u':
+            int value = index + 6 <= end ? parseHex(index + 2, index + 6) : -1;
+            if (value == -1) {
+              next = index + 1;
+            } else {
+              curr = (char) value;
+              next = index + 6;
+            }
+            break;
+          default:
+            //\", \\, \/ and any other character stand for themselves.
+            curr = _json.charAt(index + 1);
+            break;
+        }
+      }
+      if (keepOffsets) {
+        _offsets[output.length()] = index;
+      }
+      output.append(curr);
+      index = next;
+    }
+    if (keepOffsets) {
+      _offsets[output.length()] = end;
+    }
+  }
+
+  /**
+   * @return The value of the hex digits in the range of the json, or -1 if one of them isn't a hex digit.
+   */
+  private int parseHex(int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(_json.charAt(i), 16);
+      if (digit == -1) {
+        return -1;
+      }
+      value = (value << 4) | digit;
+    }
+    return value;
+  }
+
+  private void push(boolean array, PathNode node) {
+    _depth++;
+    if (_depth == _arrays.length) {
+      int capacity = _depth * 2;
+      _arrays = Arrays.copyOf(_arrays, capacity);
+      _indices = Arrays.copyOf(_indices, capacity);
+      _keyStarts = Arrays.copyOf(_keyStarts, capacity);
+      _keyEnds = Arrays.copyOf(_keyEnds, capacity);
+      _nodes = Arrays.copyOf(_nodes, capacity);
+    }
+    _arrays[_depth] = array;
+    _indices[_depth] = 0;
+    _keyStarts[_depth] = -1;
+    _nodes[_depth] = node;
+  }
+
+  /**
+   * @return The node in the tree of the selected paths of the value at the current position of the tokenizer, or null
+   *     if it isn't selected and nothing under it is. The key is only copied out of the json when the node of the
+   *     object has members that are selected by name.
+   */
+  private PathNode getValueNode() {
+    PathNode parent = _nodes[_depth];
+    if (_depth == 0 || parent == null || parent._selected) {
+      return parent;
+    }
+    if (_arrays[_depth]) {
+      return parent._elements;
+    }
+    if (parent._members.isEmpty() || _keyStarts[_depth] == -1) {
+      return null;
+    }
+    return parent._members.get(getKey(_depth));
+  }
+
+  private String getKey(int depth) {
+    int start = _keyStarts[depth];
+    int end = _keyEnds[depth];
+    if (end >= 0) {
+      return _json.substring(start, end);
+    }
+    end = -end - 1;
+    StringBuilder key = new StringBuilder(end - start);
+    decode(start, end, key, false);
+    return key.toString();
+  }
+
+  /**
+   * @return The path of the value at the current position of the tokenizer, such as $.events[3].url.
+   */
+  private String getPath() {
+    StringBuilder path = new StringBuilder("$");
+    for (int depth = 1; depth <= _depth; depth++) {
+      if (_arrays[depth]) {
+        path.append('[').append(_indices[depth]).append(']');
+      } else if (_keyStarts[depth] != -1) {
+        appendMember(path, getKey(depth));
+      }
+    }
+    return path.toString();
+  }
+
+  /**
+   * Appends a member of an object to a path, as .name if the name only has letters, digits, '_', '-' and '$', and as
+   * ['name'] with the quotes and backslashes of the name escaped otherwise.
+   */
+  private static void appendMember(StringBuilder path, String name) {
+    boolean plain = !name.isEmpty();
+    for (int i = 0; i < name.length() && plain; i++) {
+      char curr = name.charAt(i);
+      plain = CharUtils.isAlphaNumeric(curr) || curr == '_' || curr == '-' || curr == '$';
+    }
+    if (plain) {
+      path.append('.').append(name);
+      return;
+    }
+    path.append("['");
+    for (int i = 0; i < name.length(); i++) {
+      char curr = name.charAt(i);
+      if (curr == '\'' || curr == '\\') {
+        path.append('\\');
+      }
+      path.append(curr);
+    }
+    path.append("']");
+  }
+
+  /**
+   * Adds a path to the tree of the selected paths.
+   * @throws IllegalArgumentException If the path can't be parsed.
+   */
+  private void addPath(String path) {
+    if (!path.startsWith("$")) {
+      throw new IllegalArgumentException("The path " + path + " doesn't start with $.");
+    }
+    PathNode node = _root;
+    int index = 1;
+    while (index < path.length()) {
+      char curr = path.charAt(index);
+      if (curr == '.') {
+        int end = index + 1;
+        while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+          end++;
+        }
+        if (end == index + 1) {
+          throw new IllegalArgumentException("The path " + path + " has an empty name at " + index + ".");
+        }
+        node = node.getMember(path.substring(index + 1, end));
+        index = end;
+      } else if (path.startsWith("[*]", index)) {
+        if (node._elements == null) {
+          node._elements = new PathNode();
+        }
+        node = node._elements;
+        index += 3;
+      } else if (path.startsWith("['", index)) {
+        StringBuilder name = new StringBuilder();
+        int end = index + 2;
+        while (end < path.length() && path.charAt(end) != '\'') {
+          if (path.charAt(end) == '\\' && end + 1 < path.length()) {
+            end++;
+          }
+          name.append(path.charAt(end));
+          end++;
+        }
+        if (!path.startsWith("']", end)) {
+          throw new IllegalArgumentException("The path " + path + " has a name that isn't closed at " + index + ".");
+        }
+        node = node.getMember(name.toString());
+        index = end + 2;
+      } else {
+        throw new IllegalArgumentException("The path " + path + " can't be parsed at " + index + ".");
+      }
+    }
+    node._selected = true;
+  }
+
+  /**
+   * A node of the tree of the selected paths, for a member of an object or the elements of an array.
+   */
+  private static final class PathNode {
+
+    /**
+     * True if the path of the node was given, so every value under it is detected.
+     */
+    private boolean _selected = false;
+
+    private final HashMap<String, PathNode> _members = new HashMap<String, PathNode>();
+
+    /**
+     * The node of the elements of an array, or null if none are selected.
+     */
+    private PathNode _elements = null;
+
+    private PathNode getMember(String name) {
+      PathNode member = _members.get(name);
+      if (member == null) {
+        member = new PathNode();
+        _members.put(name, member);
+      }
+      return member;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.UrlMarker;
+
+
+/**
+ * The interface that gets called by the JsonUrlDetector for each url found in a string value of the json, in the order
+ * the urls appear in the json.
+ */
+public interface JsonUrlHandler {
+
+  /**
+   * Called when a valid url was read.
+   * @param urlMarker The indices of the url parts. The url itself is urlMarker.getOriginalUrl(), with the escapes of
+   *     the json string decoded.
+   * @param path The path of the string value the url was found in, such as $.events[3].url. See JsonUrlDetector.
+   * @param start The index in the json of the first character of the url, or -1 if the url is not a copy of a range
+   *     of the string value.
+   * @param end The index in the json right after the last character of the url, or -1 if start is -1.
+   * @return True to continue detecting, false to stop reading the json.
+   */
+  boolean handleUrl(UrlMarker urlMarker, String path, int start, int end);
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.PublicSuffixList;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The set of known top level domains, used by UrlDetectorOptions.STRICT_TLD. The domains are the last labels of the
+ * rules in the ICANN section of the Public Suffix List bundled with PublicSuffixList, read the first time they are
+ * needed, so the two stay the same when the list is updated. A list set with PublicSuffixList.setDefault() doesn't
+ * change them.
+ *
+ * The domains are kept one after the other in a single string, and an open addressing hash table holds where each
+ * one starts and its length. This lets the detector look up the last label of a domain name straight from its buffer,
+ * ignoring case, without creating a string for it. Internationalized domains are in the set in both their ASCII
+ * ("xn--") and their unicode form.
+ */
+final class TopLevelDomains {
+
+  /**
+   * The list bundled with PublicSuffixList, next to its class.
+   */
+  private static final String RESOURCE = "public_suffix_list.dat";
+  private static final String ICANN_BEGIN = "===BEGIN ICANN DOMAINS===";
+  private static final String ICANN_END = "===END ICANN DOMAINS===";
+
+  /**
+   * The number of bits of a slot that hold the length of the domain. The rest holds where it starts.
+   */
+  private static final int LENGTH_BITS = 6;
+  private static final int LENGTH_MASK = (1 << LENGTH_BITS) - 1;
+
+  /**
+   * All of the domains in lower case, one after the other.
+   */
+  private final String _domains;
+
+  /**
+   * The hash table. Each slot is 0 if it is empty, else the start of a domain in _domains shifted left by LENGTH_BITS,
+   * plus its length. The length of the table is a power of two.
+   */
+  private final int[] _slots;
+
+  private TopLevelDomains(List<String> domains) {
+    StringBuilder builder = new StringBuilder();
+    int size = Integer.highestOneBit(Math.max(domains.size(), 1) * 4);
+    _slots = new int[size];
+    for (String domain : domains) {
+      if (domain.isEmpty() || domain.length() > LENGTH_MASK || contains(builder, domain, 0, domain.length())) {
+        continue;
+      }
+      int slot = hash(domain, 0, domain.length()) & (size - 1);
+      while (_slots[slot] != 0) {
+        slot = (slot + 1) & (size - 1);
+      }
+      _slots[slot] = builder.length() << LENGTH_BITS | domain.length();
+      for (int i = 0; i < domain.length(); i++) {
+        builder.append(Character.toLowerCase(domain.charAt(i)));
+      }
+    }
+    _domains = builder.toString();
+  }
+
+  /**
+   * @return The bundled set of top level domains.
+   */
+  static TopLevelDomains getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Checks if text[start, end) is a known top level domain, ignoring case.
+   * @param text The text holding the domain, such as the buffer of the detector.
+   * @param start The index of the first character of the domain.
+   * @param end The index right after the last character of the domain.
+   * @return True if the domain is in the set.
+   */
+  boolean contains(CharSequence text, int start, int end) {
+    return contains(_domains, text, start, end);
+  }
+
+  /**
+   * Looks up text[start, end) in the table, with the domains that were added so far.
+   */
+  private boolean contains(CharSequence domains, CharSequence text, int start, int end) {
+    int length = end - start;
+    if (length <= 0 || length > LENGTH_MASK) {
+      return false;
+    }
+    int mask = _slots.length - 1;
+    for (int slot = hash(text, start, end) & mask; _slots[slot] != 0; slot = (slot + 1) & mask) {
+      if ((_slots[slot] & LENGTH_MASK) == length && regionMatches(domains, _slots[slot] >>> LENGTH_BITS, text, start,
+          length)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionMatches(CharSequence domains, int domainStart, CharSequence text, int start,
+      int length) {
+    for (int i = 0; i < length; i++) {
+      if (domains.charAt(domainStart + i) != Character.toLowerCase(text.charAt(start + i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + Character.toLowerCase(text.charAt(i));
+    }
+    //spread the high bits to the low bits, which pick the slot.
+    return hash ^ (hash >>> 16);
+  }
+
+  private static TopLevelDomains load() {
+    try (InputStream inputStream = PublicSuffixList.class.getResourceAsStream(RESOURCE)) {
+      if (inputStream == null) {
+        throw new IllegalStateException("The bundled public suffix list " + RESOURCE + " is missing.");
+      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+      List<String> domains = new ArrayList<String>();
+      boolean icann = false;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.contains(ICANN_BEGIN)) {
+          icann = true;
+        } else if (line.contains(ICANN_END)) {
+          break;
+        }
+        line = line.trim();
+        if (!icann || line.isEmpty() || line.startsWith("//")) {
+          continue;
+        }
+        //a rule ends at the first white space, and its last label is the top level domain, also for rules such as
+        //*.bd and !www.ck. The list has internationalized domains in their unicode form.
+        int end = 0;
+        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+          end++;
+        }
+        String domain = line.substring(line.lastIndexOf('.', end - 1) + 1, end);
+        String ascii = IDN.toASCII(domain);
+        domains.add(ascii);
+        if (!ascii.equals(domain)) {
+          domains.add(domain);
+        }
+      }
+      return new TopLevelDomains(domains);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Loads the domains only when STRICT_TLD is first used.
+   */
+  private static final class Holder {
+    private static final TopLevelDomains INSTANCE = load();
+  }
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+import com.linkedin.urls.UrlPart;
+import java.util.Arrays;
+
+
+/**
+ * The urls found in many documents, kept in columns of primitive arrays instead of one object per url: the id of the
+ * document, the start and end of the url in the document, and the index of each part of the url. Urls are read back
+ * by their index in the batch, from 0 to size() - 1, so going over a batch creates no objects.
+ *
+ * The batch doesn't keep the documents. The text of a url that is not an exact copy of its document is copied into a
+ * char array shared by all of the urls of the batch, so it isn't lost; with keepText, the text of every url is copied
+ * there. A batch can be cleared and filled again to reuse its arrays. It is not thread safe.
+ */
+public final class UrlBatch {
+
+  private static final UrlPart[] URL_PARTS = UrlPart.values();
+  private static final int PART_COUNT = URL_PARTS.length;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final boolean _keepText;
+
+  private int _size = 0;
+  private long[] _documentIds = new long[INITIAL_CAPACITY];
+  private int[] _starts = new int[INITIAL_CAPACITY];
+  private int[] _ends = new int[INITIAL_CAPACITY];
+  private int[] _lengths = new int[INITIAL_CAPACITY];
+
+  /**
+   * The index of each part of url i, relative to the start of the url, at [i * PART_COUNT, (i + 1) * PART_COUNT), in
+   * the order of UrlPart.values().
+   */
+  private int[] _partIndices = new int[INITIAL_CAPACITY * PART_COUNT];
+
+  /**
+   * Where the text of each url starts in _text, or -1 if it wasn't copied.
+   */
+  private int[] _textStarts = new int[INITIAL_CAPACITY];
+  private char[] _text = new char[0];
+  private int _textLength = 0;
+
+  /**
+   * Creates a batch that only copies the text of the urls that are not an exact copy of their document.
+   */
+  public UrlBatch() {
+    this(false);
+  }
+
+  /**
+   * @param keepText True to copy the text of every url into the batch, so the urls can be read without the documents.
+   */
+  public UrlBatch(boolean keepText) {
+    _keepText = keepText;
+  }
+
+  /**
+   * Detects the urls in the document and adds them to the batch.
+   * @param documentId The id of the document, stored with each of its urls.
+   * @param content The text of the document.
+   * @param options The UrlDetectorOptions to use when detecting the content.
+   */
+  public void detect(long documentId, String content, UrlDetectorOptions options) {
+    new UrlDetector(content, options).detect(getHandler(documentId));
+  }
+
+  /**
+   * Returns a handler that adds the urls found by a UrlDetector to the batch, for detectors that are set up by the
+   * caller, such as with a host blocklist.
+   * @param documentId The id of the document the detector reads, stored with each of its urls.
+   */
+  public UrlHandler getHandler(final long documentId) {
+    return new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        add(documentId, urlMarker, start);
+        return true;
+      }
+    };
+  }
+
+  /**
+   * Adds a url to the batch.
+   * @param documentId The id of the document the url was found in.
+   * @param urlMarker The marker of the url.
+   * @param start The index of the url in the document, or -1 if the url is not an exact copy of the document.
+   */
+  public void add(long documentId, UrlMarker urlMarker, int start) {
+    if (_size == _documentIds.length) {
+      grow();
+    }
+    String originalUrl = urlMarker.getOriginalUrl();
+    _documentIds[_size] = documentId;
+    _starts[_size] = start;
+    _ends[_size] = start == -1 ? -1 : start + originalUrl.length();
+    _lengths[_size] = originalUrl.length();
+    int offset = _size * PART_COUNT;
+    for (UrlPart urlPart : URL_PARTS) {
+      _partIndices[offset + urlPart.ordinal()] = urlMarker.indexOf(urlPart);
+    }
+
+    if (_keepText || start == -1) {
+      if (_textLength + originalUrl.length() > _text.length) {
+        _text = Arrays.copyOf(_text, Math.max(_textLength + originalUrl.length(), _text.length * 2));
+      }
+      originalUrl.getChars(0, originalUrl.length(), _text, _textLength);
+      _textStarts[_size] = _textLength;
+      _textLength += originalUrl.length();
+    } else {
+      _textStarts[_size] = -1;
+    }
+    _size++;
+  }
+
+  /**
+   * Removes all of the urls, keeping the arrays for the next ones.
+   */
+  public void clear() {
+    _size = 0;
+    _textLength = 0;
+  }
+
+  /**
+   * @return The number of urls in the batch.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @return The id of the document the url was found in.
+   */
+  public long getDocumentId(int index) {
+    return _documentIds[checkIndex(index)];
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @return The index in the document of the first character of the url, or -1 if the url is not an exact copy of
+   *     the document.
+   */
+  public int getStart(int index) {
+    return _starts[checkIndex(index)];
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @return The index in the document right after the url, or -1 if the url is not an exact copy of the document.
+   */
+  public int getEnd(int index) {
+    return _ends[checkIndex(index)];
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @return The number of characters of the url.
+   */
+  public int getLength(int index) {
+    return _lengths[checkIndex(index)];
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @param urlPart The part you want the index of.
+   * @return The index of the part within the url, or -1 if the url doesn't have that part.
+   */
+  public int indexOf(int index, UrlPart urlPart) {
+    return _partIndices[checkIndex(index) * PART_COUNT + urlPart.ordinal()];
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @return Where the text of the url starts in getText(), or -1 if it wasn't copied into the batch.
+   */
+  public int getTextStart(int index) {
+    return _textStarts[checkIndex(index)];
+  }
+
+  /**
+   * Returns the array holding the text that was copied into the batch. The text of url i is at
+   * [getTextStart(i), getTextStart(i) + getLength(i)). The array is shared, not copied, and is replaced when the batch
+   * grows, so it should be read again after adding urls.
+   */
+  public char[] getText() {
+    return _text;
+  }
+
+  /**
+   * @param index The index of the url in the batch.
+   * @param document The text of the document the url was found in, or null if the text of the url was copied.
+   * @return The text of the url.
+   */
+  public String getOriginalUrl(int index, String document) {
+    int textStart = getTextStart(index);
+    if (textStart != -1) {
+      return new String(_text, textStart, _lengths[index]);
+    }
+    if (document == null) {
+      throw new IllegalArgumentException("The text of url " + index + " is only in its document.");
+    }
+    return document.substring(_starts[index], _ends[index]);
+  }
+
+  /**
+   * Reads the host of one url of the batch without creating a Url object. The host is as written in the url, the same
+   * as Url.getHost(); it isn't normalized.
+   * @param index The index of the url in the batch.
+   * @param document The text of the document the url was found in, or null if the text of the url was copied.
+   * @return The host of the url, or null if it doesn't have one.
+   */
+  public String getHost(int index, String document) {
+    int host = indexOf(index, UrlPart.HOST);
+    if (host == -1) {
+      return null;
+    }
+    int end = _lengths[index];
+    for (UrlPart urlPart = UrlPart.HOST.getNextPart(); urlPart != null; urlPart = urlPart.getNextPart()) {
+      int next = indexOf(index, urlPart);
+      if (next >= 0) {
+        end = next;
+        break;
+      }
+    }
+    if (indexOf(index, UrlPart.PORT) >= 0) {
+      //the host ends with the colon before the port.
+      end--;
+    }
+    int textStart = _textStarts[index];
+    if (textStart != -1) {
+      return new String(_text, textStart + host, end - host);
+    }
+    if (document == null) {
+      throw new IllegalArgumentException("The text of url " + index + " is only in its document.");
+    }
+    return document.substring(_starts[index] + host, _starts[index] + end);
+  }
+
+  /**
+   * Creates a Url object for one url of the batch, for when a few of them are needed as objects.
+   * @param index The index of the url in the batch.
+   * @param document The text of the document the url was found in, or null if the text of the url was copied.
+   * @return The url.
+   */
+  public Url getUrl(int index, String document) {
+    UrlMarker urlMarker = new UrlMarker();
+    setUrlMarker(index, document, urlMarker);
+    return urlMarker.createUrl();
+  }
+
+  /**
+   * Sets the original url and the index of each part of a marker to those of one url of the batch, so that callers
+   * that go over many urls can reuse one marker.
+   * @param index The index of the url in the batch.
+   * @param document The text of the document the url was found in, or null if the text of the url was copied.
+   * @param urlMarker The marker to set.
+   */
+  public void setUrlMarker(int index, String document, UrlMarker urlMarker) {
+    urlMarker.setOriginalUrl(getOriginalUrl(index, document));
+    for (UrlPart urlPart : URL_PARTS) {
+      urlMarker.setIndex(urlPart, indexOf(index, urlPart));
+    }
+  }
+
+  private void grow() {
+    int capacity = _documentIds.length * 2;
+    _documentIds = Arrays.copyOf(_documentIds, capacity);
+    _starts = Arrays.copyOf(_starts, capacity);
+    _ends = Arrays.copyOf(_ends, capacity);
+    _lengths = Arrays.copyOf(_lengths, capacity);
+    _partIndices = Arrays.copyOf(_partIndices, capacity * PART_COUNT);
+    _textStarts = Arrays.copyOf(_textStarts, capacity);
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= _size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A cache in front of the UrlDetector for inputs that are seen many times, such as the same message sent over and
+ * over by spammers. The results are kept in the compact DetectionResult form and shared by everyone asking for the
+ * same content with the same options.
+ *
+ * The cache holds at most a maximum number of results and a maximum total weight, which is roughly the number of bytes
+ * kept alive by the cached content and results. The least recently used results are removed first. Content longer than
+ * the maximum content length is never cached. This class is thread safe; detection runs outside of the lock.
+ */
+public class UrlDetectionCache {
+
+  private final int _maxEntries;
+  private final long _maxWeight;
+  private final int _maxContentLength;
+
+  /**
+   * The cached results, in least recently used order.
+   */
+  private final LinkedHashMap<Key, DetectionResult> _results = new LinkedHashMap<Key, DetectionResult>(16, 0.75f, true);
+
+  private long _weight = 0;
+  private long _hitCount = 0;
+  private long _missCount = 0;
+
+  /**
+   * Creates a new cache.
+   * @param maxEntries The maximum number of results to keep.
+   * @param maxWeight The maximum approximate number of bytes the cached content and results can use.
+   * @param maxContentLength The content longer than this many characters is detected without being cached.
+   */
+  public UrlDetectionCache(int maxEntries, long maxWeight, int maxContentLength) {
+    if (maxEntries < 0 || maxWeight < 0 || maxContentLength < 0) {
+      throw new IllegalArgumentException("The cache limits can't be negative.");
+    }
+    _maxEntries = maxEntries;
+    _maxWeight = maxWeight;
+    _maxContentLength = maxContentLength;
+  }
+
+  /**
+   * Returns the urls of the content. They are only detected if the same content wasn't seen recently with the same
+   * options.
+   * @param content The content to search inside of.
+   * @param options The UrlDetectorOptions to use when detecting the content.
+   * @return The detected urls. This may be the same instance that was returned to other callers.
+   */
+  public DetectionResult detect(String content, UrlDetectorOptions options) {
+    if (content.length() > _maxContentLength) {
+      return DetectionResult.detect(content, options);
+    }
+
+    Key key = new Key(content, options);
+    synchronized (this) {
+      DetectionResult result = _results.get(key);
+      if (result != null) {
+        _hitCount++;
+        return result;
+      }
+      _missCount++;
+    }
+
+    DetectionResult result = DetectionResult.detect(content, options);
+    long weight = result.getWeight();
+    if (weight > _maxWeight) {
+      return result;
+    }
+
+    synchronized (this) {
+      //another thread may have detected the same content in the meantime, in which case share its result.
+      DetectionResult existing = _results.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      _results.put(key, result);
+      _weight += weight;
+      evict();
+    }
+    return result;
+  }
+
+  /**
+   * Removes all of the cached results.
+   */
+  public synchronized void clear() {
+    _results.clear();
+    _weight = 0;
+  }
+
+  /**
+   * @return The number of cached results.
+   */
+  public synchronized int size() {
+    return _results.size();
+  }
+
+  /**
+   * @return The total weight of the cached results.
+   */
+  public synchronized long getWeight() {
+    return _weight;
+  }
+
+  /**
+   * @return The number of times a cached result was returned.
+   */
+  public synchronized long getHitCount() {
+    return _hitCount;
+  }
+
+  /**
+   * @return The number of times the content had to be detected, not counting content too long to be cached.
+   */
+  public synchronized long getMissCount() {
+    return _missCount;
+  }
+
+  /**
+   * Removes the least recently used results until the cache is within its limits.
+   */
+  private void evict() {
+    Iterator<Map.Entry<Key, DetectionResult>> iterator = _results.entrySet().iterator();
+    while ((_results.size() > _maxEntries || _weight > _maxWeight) && iterator.hasNext()) {
+      _weight -= iterator.next().getValue().getWeight();
+      iterator.remove();
+    }
+  }
+
+  /**
+   * The cache key of a content and its options. The hash code of a String is computed once and kept by the String, so
+   * looking up the same String instance again is cheap. Keys with the same hash still compare the full content.
+   */
+  private static final class Key {
+    private final String _content;
+    private final int _options;
+    private final int _hash;
+
+    Key(String content, UrlDetectorOptions options) {
+      _content = content;
+      _options = options.getValue();
+      _hash = content.hashCode() * 31 + _options;
+    }
+
+    @Override
+    public int hashCode() {
+      return _hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) other;
+      return _hash == key._hash && _options == key._options && _content.equals(key._content);
+    }
+  }
+}
@@ -18,7 +18,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class UrlDetector {
@@ -27,6 +29,29 @@ public class UrlDetector {
    */
   private static final String HTML_MAILTO = "mailto:";
 
+  /**
+   * How far before the current position a url that was just read can end. This covers the terminating character
+   * and a closing quote that was cut off.
+   */
+  private static final int MAX_URL_END_LOOKBEHIND = 3;
+
+  /**
+   * The scheme of data: uris, which are read with a single scan instead of character by character.
+   */
+  private static final String DATA_SCHEME = "data";
+
+  /**
+   * The top level media types a data: uri can start with, such as the image of image/png. Types starting with "x-"
+   * are allowed too.
+   */
+  private static final Set<String> DATA_MEDIA_TYPES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+      "application", "audio", "example", "font", "image", "message", "model", "multipart", "text", "video")));
+
+  /**
+   * The shortest run of base64 characters that is skipped, see setSkipBase64Runs().
+   */
+  private static final int MIN_BASE64_RUN = 256;
+
   /**
    * Valid protocol schemes.
    */
@@ -97,6 +122,88 @@ public class UrlDetector {
    */
   private ArrayList<Url> _urlList = new ArrayList<Url>();
 
+  /**
+   * The handler that is called for every url found. By default the urls are added to the list of urls.
+   */
+  private UrlHandler _urlHandler = new UrlHandler() {
+    @Override
+    public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+      _urlList.add(urlMarker.createUrl());
+      return true;
+    }
+  };
+
+  /**
+   * Collects the distinct urls instead of the handler, in detectDistinct().
+   */
+  private DistinctUrls _distinctUrls = null;
+
+  /**
+   * Set when the handler asked to stop reading the input.
+   */
+  private boolean _stopped = false;
+
+  /**
+   * Set when a username and password got past the maximum url length and was dropped along with the rest of its url,
+   * so that the readers that called readUserPass() don't go back and read the dropped text again.
+   */
+  private boolean _droppedLongUrl = false;
+
+  /**
+   * The blocklist that the host of each url is checked against, if one was set.
+   */
+  private AtomicReference<HostBlocklist> _hostBlocklistReference = null;
+
+  /**
+   * The blocklist used by the current detection, so that it doesn't change in the middle of it.
+   */
+  private HostBlocklist _hostBlocklist = null;
+
+  /**
+   * Whether only the urls whose host matches the blocklist are passed to the handler.
+   */
+  private boolean _blockedOnly = false;
+
+  /**
+   * Whether the detection stops after the first url whose host matches the blocklist.
+   */
+  private boolean _stopAtFirstBlocked = false;
+
+  /**
+   * Whether the host of the current url matches the blocklist.
+   */
+  private boolean _blocked = false;
+
+  /**
+   * The longest url, in characters, that is read into the buffer. See setMaxUrlLength().
+   */
+  private int _maxUrlLength = Integer.MAX_VALUE;
+
+  /**
+   * Whether a url that reaches the maximum length is passed on cut at that length, instead of being dropped.
+   */
+  private boolean _truncateLongUrls = false;
+
+  /**
+   * The number of urls after which the detection stops. See setMaxUrlsPerDocument().
+   */
+  private int _maxUrlsPerDocument = Integer.MAX_VALUE;
+
+  /**
+   * The number of urls found so far.
+   */
+  private int _urlCount = 0;
+
+  /**
+   * Whether data: uris are passed on as urls instead of being skipped.
+   */
+  private boolean _reportDataUris = false;
+
+  /**
+   * Whether long runs of base64 characters are skipped.
+   */
+  private boolean _skipBase64Runs = false;
+
   /**
    * Keeps the count of special characters used to match quotes and different types of brackets.
    */
@@ -140,16 +247,124 @@ public class UrlDetector {
     return _urlList;
   }
 
+  /**
+   * Detects the urls and passes each of them to the handler as soon as it is read, instead of collecting them in a list.
+   * @param handler The handler to call for each url found. If it returns false, the detection stops.
+   */
+  public void detect(UrlHandler handler) {
+    _urlHandler = handler;
+    readDefault();
+  }
+
+  /**
+   * Detects the urls and returns each distinct url once, with the number of times and the places it was found. A url
+   * that was found before is recognized from the text that was read, before a string or Url is created for it.
+   * @param normalized True to treat urls with the same NormalizedUrl as the same url, false to only treat urls with
+   *     the same text as the same url.
+   * @return The distinct urls.
+   */
+  public DistinctUrls detectDistinct(boolean normalized) {
+    _distinctUrls = new DistinctUrls(normalized);
+    readDefault();
+    return _distinctUrls.finish();
+  }
+
+  /**
+   * Checks the host of each url against a blocklist as soon as the host is read. See isBlocked().
+   * @param hostBlocklist Holds the blocklist to use. The blocklist can be replaced at any time; each detection uses the
+   *     blocklist that was set when it started.
+   * @param blockedOnly True to only pass the urls whose host matches the blocklist to the handler.
+   * @param stopAtFirstBlocked True to stop detecting after the first url whose host matches the blocklist.
+   */
+  public void setHostBlocklist(AtomicReference<HostBlocklist> hostBlocklist, boolean blockedOnly,
+      boolean stopAtFirstBlocked) {
+    _hostBlocklistReference = hostBlocklist;
+    _blockedOnly = blockedOnly;
+    _stopAtFirstBlocked = stopAtFirstBlocked;
+  }
+
+  /**
+   * Limits how long a url can get, so that a long run of text without spaces, such as a base64 blob or a line of
+   * minified javascript, isn't read into one huge url. Once a url reaches the limit, the rest of it is skipped without
+   * being kept, up to the next space or quote or bracket. The same goes for text that reaches the limit before a url is
+   * found in it. A url whose host goes past the limit is dropped, since it can't be cut there.
+   * @param maxUrlLength The maximum number of characters of a url.
+   * @param truncate True to pass on a url that is too long cut at the maximum length, false to drop it.
+   */
+  public void setMaxUrlLength(int maxUrlLength, boolean truncate) {
+    if (maxUrlLength <= 0) {
+      throw new IllegalArgumentException("The maximum url length must be positive: " + maxUrlLength);
+    }
+    _maxUrlLength = maxUrlLength;
+    _truncateLongUrls = truncate;
+  }
+
+  /**
+   * Stops the detection once the given number of urls were found, so a document with a huge number of urls can't
+   * make a detection run long or collect a huge list.
+   * @param maxUrlsPerDocument The maximum number of urls to find.
+   */
+  public void setMaxUrlsPerDocument(int maxUrlsPerDocument) {
+    if (maxUrlsPerDocument <= 0) {
+      throw new IllegalArgumentException("The maximum number of urls must be positive: " + maxUrlsPerDocument);
+    }
+    _maxUrlsPerDocument = maxUrlsPerDocument;
+  }
+
+  /**
+   * Data: uris, such as data:image/png;base64,iVBORw0KGgo..., are always read with a single scan to their end, so
+   * that the characters of the data are never read as a domain name or path. By default they are then skipped. Only
+   * a data scheme that is a word of its own and is followed by a media type, ";" or "," is read this way, so
+   * data:user@host.com is still read as a url.
+   * @param reportDataUris True to pass them on as urls, with only a scheme and a path. See Url.isOpaque().
+   */
+  public void setReportDataUris(boolean reportDataUris) {
+    _reportDataUris = reportDataUris;
+  }
+
+  /**
+   * Skips runs of at least 256 base64 characters, such as an inline image, that start where a url could start. A url
+   * can't start with such a run, since the labels of a domain name are at most 63 characters.
+   * @param skipBase64Runs True to skip the runs with a single scan instead of reading them character by character.
+   */
+  public void setSkipBase64Runs(boolean skipBase64Runs) {
+    _skipBase64Runs = skipBase64Runs;
+  }
+
+  /**
+   * Tells a UrlHandler if the url it is handling is blocked.
+   * @return True if the host of the url that is being passed to the handler matches the host blocklist.
+   */
+  public boolean isBlocked() {
+    return _blocked;
+  }
+
   /**
    * The default input reader which looks for specific flags to start detecting the url.
    */
   private void readDefault() {
+    _hostBlocklist = _hostBlocklistReference == null ? null : _hostBlocklistReference.get();
+
     //Keeps track of the number of characters read to be able to later cut out the domain name.
     int length = 0;
     int position = 0;
 
     //until end of string read the contents
-    while (!_reader.eof()) {
+    while (!_reader.eof() && !_stopped) {
+      _droppedLongUrl = false;
+
+      //drop text that got too long to be the start of a url, along with the rest of it.
+      if (_buffer.length() >= _maxUrlLength) {
+        readEnd(ReadEndState.InvalidUrl);
+        skipToEndOfUrl();
+        length = 0;
+        continue;
+      }
+
+      //skip an inline blob in one go where a url could start.
+      if (_skipBase64Runs && _buffer.length() == 0 && _reader.skipBase64Run(MIN_BASE64_RUN) > 0) {
+        continue;
+      }
         
       //read the next char to process.
       char curr = _reader.read();
@@ -225,8 +440,10 @@ public class UrlDetector {
           if (!readDomainName(_buffer.substring(length))) {
             //if we didn't find an ipv6 address, then check inside the brackets for urls
             readEnd(ReadEndState.InvalidUrl);
-            _reader.seek(beginning);
-            _dontMatchIpv6 = true;
+            if (!_droppedLongUrl) {
+              _reader.seek(beginning);
+              _dontMatchIpv6 = true;
+            }
           }
           length = 0;
           break;
@@ -257,6 +474,10 @@ public class UrlDetector {
           }
           break;
         case ':':
+          if (endsWithDataScheme() && startsLikeDataUri() && readDataUri()) {
+            length = 0;
+            break;
+          }
           //add the ":" to the url and check for scheme/username
           _buffer.append(curr);
           length = processColon(length);
@@ -280,13 +501,89 @@ public class UrlDetector {
       
       position = _reader.getPosition();
     }
-    if (_options.hasFlag(UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN) && _buffer.length() > 0 && _hasScheme) {
+    if (_options.hasFlag(UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN) && _buffer.length() > 0 && _hasScheme
+        && !_stopped) {
       if (!readDomainName(_buffer.substring(length))) {
         readEnd(ReadEndState.InvalidUrl);
       }
     }
   }
 
+  /**
+   * @return True if the buffer ends with the data scheme, right before the ":" that was just read, as a word of its
+   *     own: not the end of a longer word such as "metadata", nor a host or username after a scheme or "//".
+   */
+  private boolean endsWithDataScheme() {
+    int start = _buffer.length() - DATA_SCHEME.length();
+    if (_hasScheme || start < 0) {
+      return false;
+    }
+    if (start > 0) {
+      char previous = _buffer.charAt(start - 1);
+      if (CharUtils.isAlphaNumeric(previous) || previous == '/' || previous == ':' || previous == '@'
+          || previous == '.' || previous == '-' || previous == '+') {
+        return false;
+      }
+    }
+    for (int i = 0; i < DATA_SCHEME.length(); i++) {
+      if (Character.toLowerCase(_buffer.charAt(start + i)) != DATA_SCHEME.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return True if the text after the ":" that was just read starts like the data of a data: uri: a media type such
+   *     as image/png, or the ";" or "," that follow a left out media type. Text such as data:user@host.com or
+   *     data:host.com/a is left to be read as a url.
+   */
+  private boolean startsLikeDataUri() {
+    if (!_reader.canReadChars(1)) {
+      return false;
+    }
+    char first = _reader.peekChar(0);
+    if (first == ';' || first == ',') {
+      return true;
+    }
+    int length = 0;
+    while (_reader.canReadChars(length + 1)
+        && (CharUtils.isAlpha(_reader.peekChar(length)) || _reader.peekChar(length) == '-')) {
+      length++;
+    }
+    if (length == 0 || !_reader.canReadChars(length + 2) || _reader.peekChar(length) != '/'
+        || !CharUtils.isAlphaNumeric(_reader.peekChar(length + 1))) {
+      return false;
+    }
+    String type = _reader.peek(length).toLowerCase(Locale.ROOT);
+    return DATA_MEDIA_TYPES.contains(type) || type.startsWith("x-");
+  }
+
+  /**
+   * Reads a data: uri after its ":" with a single scan to its end, then reports it as a url with a scheme and a path
+   * if setReportDataUris() was set, or drops it. It is dropped either way if it is longer than the maximum url
+   * length.
+   * @return False if there is no data after the ":", in which case nothing is read.
+   */
+  private boolean readDataUri() {
+    int start = _reader.getPosition() - DATA_SCHEME.length() - 1;
+    if (_reader.skipDataUriCharacters() == 0) {
+      return false;
+    }
+    int end = _reader.getPosition();
+    if (!_reportDataUris || end - start > _maxUrlLength
+        || !_reader.matches(start, _buffer.subSequence(_buffer.length() - DATA_SCHEME.length(), _buffer.length()))) {
+      readEnd(ReadEndState.InvalidUrl);
+      return true;
+    }
+    _buffer.delete(0, _buffer.length());
+    _reader.appendTo(_buffer, start, end);
+    _currentUrlMarker.setIndex(UrlPart.SCHEME, 0);
+    _currentUrlMarker.setIndex(UrlPart.PATH, DATA_SCHEME.length() + 1);
+    readEnd(ReadEndState.ValidUrl);
+    return true;
+  }
+
   /**
    * We found a ":" and is now trying to read either scheme, username/password
    * @param length first index of the previous part (could be beginning of the buffer, beginning of the username/password, or beginning
@@ -296,6 +593,10 @@ public class UrlDetector {
     if (_hasScheme) {
       //read it as username/password if it has scheme
       if (!readUserPass(length)) {
+        if (_droppedLongUrl) {
+          return 0;
+        }
+
         //unread the ":" so that the domain reader can process it
         _reader.goBack();
         
@@ -309,7 +610,9 @@ public class UrlDetector {
         int backtrackOnFail = _reader.getPosition() - _buffer.length() + length;
         if (!readDomainName(_buffer.substring(length))) {
           //go back to length location and restart search
-          _reader.seek(backtrackOnFail);
+          if (!_droppedLongUrl) {
+            _reader.seek(backtrackOnFail);
+          }
           readEnd(ReadEndState.InvalidUrl);
         }
         length = 0;
@@ -553,6 +856,13 @@ public class UrlDetector {
         //one of these characters indicates we are invalid state and should just return.
         rollback = true;
         done = true;
+      } else if (_buffer.length() >= _maxUrlLength) {
+        //too long to be a username and password. Drop it along with the rest of it, like readDefault() does, so that
+        //the limit doesn't make the text be read again from inside and find urls that aren't found without it.
+        readEnd(ReadEndState.InvalidUrl);
+        skipToEndOfUrl();
+        _droppedLongUrl = true;
+        return false;
       } else {
         //all else, just append character assuming its ok so far.
         _buffer.append(curr);
@@ -593,6 +903,12 @@ public class UrlDetector {
 
     //Try to read the dns and act on the response.
     DomainNameReader.ReaderNextState state = reader.readDomainName();
+    if (_hostBlocklist != null && state != DomainNameReader.ReaderNextState.InvalidDomainName
+        && state != DomainNameReader.ReaderNextState.ReadUserPass) {
+      //the character after the host is already in the buffer, unless the url ends with the host.
+      int hostEnd = _buffer.length() - (state == DomainNameReader.ReaderNextState.ValidDomainName ? 0 : 1);
+      _blocked = _hostBlocklist.findMatch(_buffer, reader.getDomainNameStart(), hostEnd) != -1;
+    }
     switch (state) {
       case ValidDomainName:
         return readEnd(ReadEndState.ValidUrl);
@@ -626,6 +942,9 @@ public class UrlDetector {
       //if it's the end or space, then a valid url was read.
       if (curr == ' ' || checkMatchingCharacter(curr) != CharacterMatch.CharacterNotMatched) {
         return readEnd(ReadEndState.ValidUrl);
+      } else if (_buffer.length() >= _maxUrlLength) {
+        _reader.goBack();
+        return readLongUrl();
       } else {
         //otherwise keep appending.
         _buffer.append(curr);
@@ -652,6 +971,9 @@ public class UrlDetector {
       } else if (curr == ' ' || checkMatchingCharacter(curr) != CharacterMatch.CharacterNotMatched) {
         //end of query string
         return readEnd(ReadEndState.ValidUrl);
+      } else if (_buffer.length() >= _maxUrlLength) {
+        _reader.goBack();
+        return readLongUrl();
       } else { //all else add to buffer.
         _buffer.append(curr);
       }
@@ -696,6 +1018,9 @@ public class UrlDetector {
         }
         _currentUrlMarker.unsetIndex(UrlPart.PORT);
         return readEnd(ReadEndState.ValidUrl);
+      } else if (_buffer.length() >= _maxUrlLength) {
+        _reader.goBack();
+        return readLongUrl();
       } else {
         //this is a valid character in the port string.
         _buffer.append(curr);
@@ -721,6 +1046,11 @@ public class UrlDetector {
         return readEnd(ReadEndState.ValidUrl);
       }
 
+      if (_buffer.length() >= _maxUrlLength) {
+        _reader.goBack();
+        return readLongUrl();
+      }
+
       //append the char
       _buffer.append(curr);
 
@@ -738,12 +1068,42 @@ public class UrlDetector {
     return readEnd(ReadEndState.ValidUrl);
   }
 
+  /**
+   * The url reached the maximum length before its end. Passes it on cut at the maximum length, or drops it, then skips
+   * the rest of it up to the character that ends it, without keeping what is skipped.
+   * @return True if the url was passed on.
+   */
+  private boolean readLongUrl() {
+    boolean valid = readEnd(_truncateLongUrls ? ReadEndState.ValidUrl : ReadEndState.InvalidUrl);
+    skipToEndOfUrl();
+    _droppedLongUrl = true;
+    return valid;
+  }
+
+  /**
+   * Reads up to and including the character that ends a url, such as a space, without keeping what is read.
+   */
+  private void skipToEndOfUrl() {
+    while (!_reader.eof()) {
+      char curr = _reader.read();
+      if (curr == ' ' || checkMatchingCharacter(curr) != CharacterMatch.CharacterNotMatched) {
+        return;
+      }
+    }
+  }
+
   /**
    * The url has been read to here. Remember the url if its valid, and reset state.
    * @param state The state indicating if this url is valid. If its valid it will be added to the list of urls.
    * @return True if the url was valid.
    */
   private boolean readEnd(ReadEndState state) {
+    //the host is read as a whole, so a url can only get past the maximum length there. It can't be cut in the host.
+    if (_buffer.length() > _maxUrlLength) {
+      state = ReadEndState.InvalidUrl;
+      _droppedLongUrl = true;
+    }
+
     //if the url is valid and greater then 0
     if (state == ReadEndState.ValidUrl && _buffer.length() > 0) {
       //get the last character. if its a quote, cut it off.
@@ -752,10 +1112,23 @@ public class UrlDetector {
         _buffer.delete(len - 1, len);
       }
 
-      //Add the url to the list of good urls.
-      if (_buffer.length() > 0) {
-        _currentUrlMarker.setOriginalUrl(_buffer.toString());
-        _urlList.add(_currentUrlMarker.createUrl());
+      //Pass the url to the handler, which adds it to the list of good urls by default.
+      if (_buffer.length() > 0 && (_blocked || !_blockedOnly)) {
+        int start = findUrlStart(_buffer);
+        int end = start == -1 ? -1 : start + _buffer.length();
+        boolean keepGoing = true;
+        if (_distinctUrls != null) {
+          if (!_distinctUrls.addRepeat(_buffer, start, end)) {
+            _currentUrlMarker.setOriginalUrl(_buffer.toString());
+            _distinctUrls.add(_currentUrlMarker, start, end);
+          }
+        } else {
+          _currentUrlMarker.setOriginalUrl(_buffer.toString());
+          keepGoing = _urlHandler.handleUrl(_currentUrlMarker, start, end);
+        }
+        if (!keepGoing || (_blocked && _stopAtFirstBlocked) || ++_urlCount >= _maxUrlsPerDocument) {
+          _stopped = true;
+        }
       }
     }
 
@@ -766,9 +1139,26 @@ public class UrlDetector {
     _quoteStart = false;
     _hasScheme = false;
     _dontMatchIpv6 = false;
+    _blocked = false;
     _currentUrlMarker = new UrlMarker();
 
     //return true if valid.
     return state == ReadEndState.ValidUrl;
   }
+
+  /**
+   * Finds where the url that was just read starts in the input. The url ends at most a few characters before the
+   * current position, since only the terminating character or a cut off quote can be read past it.
+   * @param url The url that was read.
+   * @return The index of the first character of the url in the input, or -1 if it isn't an exact copy of the input.
+   */
+  private int findUrlStart(CharSequence url) {
+    int position = Math.min(_reader.getPosition(), _reader.length());
+    for (int end = position; end >= url.length() && end >= position - MAX_URL_END_LOOKBEHIND; end--) {
+      if (_reader.matches(end - url.length(), url)) {
+        return end - url.length();
+      }
+    }
+    return -1;
+  }
 }
@@ -70,7 +70,14 @@ public enum UrlDetectorOptions {
   /**
    * Checks for URLs against the full IANA scheme list for maximum possible detections
    */
-  EXTENDED_IANA_DETECTION(128); //10000000
+  EXTENDED_IANA_DETECTION(128), //10000000
+
+  /**
+   * Only accepts domain names that end with a known top level domain, such as .com or .uk, so that text like readme.txt
+   * or obj.method is not detected. The top level domains are bundled with the detector. This doesn't affect ip
+   * addresses or the single level domains of ALLOW_SINGLE_LEVEL_DOMAIN.
+   */
+  STRICT_TLD(256); //100000000
 
   /**
    * The numeric value.
@@ -0,0 +1,31 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import com.linkedin.urls.UrlMarker;
+
+
+/**
+ * The interface that gets called by the UrlDetector for each url found, in the order the urls appear in the input.
+ * This lets callers consume the part indices and the location of each url without a Url object being created.
+ */
+public interface UrlHandler {
+
+  /**
+   * Called when a valid url was read.
+   * @param urlMarker The indices of the url parts. The url itself is urlMarker.getOriginalUrl(). The marker is not
+   *     reused by the detector, so it is safe to keep.
+   * @param start The index in the input of the first character of the url, or -1 if the url is not an exact copy of
+   *     a range of the input.
+   * @param end The index in the input right after the last character of the url, or -1 if start is -1.
+   * @return True to continue detecting, false to stop reading the input.
+   */
+  boolean handleUrl(UrlMarker urlMarker, int start, int end);
+}
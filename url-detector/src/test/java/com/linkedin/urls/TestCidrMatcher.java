@@ -0,0 +1,129 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestCidrMatcher {
+
+  private static final CidrMatcher MATCHER = CidrMatcher.create(Arrays.asList(
+      "10.0.0.0/8", "192.168.0.0/16", "192.168.5.0/24", "172.16.0.0/12", "8.8.8.8", "100.64.0.0/10", "100.128.0.0/10",
+      "2001:db8::/32", "[fe80::]/10", "::1", "::ffff:203.0.113.0/120"));
+
+  @ParameterizedTest
+  @CsvSource({
+    "http://10.1.2.3/, true",
+    "http://0x0a.1.2.3/, true",
+    "http://167772161/, true",
+    "http://11.0.0.1/, false",
+    "http://192.168.255.255/, true",
+    "http://192.169.0.0/, false",
+    "http://172.31.255.255/, true",
+    "http://172.32.0.0/, false",
+    "http://8.8.8.8/, true",
+    "http://8.8.8.9/, false",
+    "http://100.100.0.1/, true",
+    "http://100.191.255.255/, true",
+    "http://100.192.0.0/, false",
+    "http://203.0.113.7/, true",
+    "http://[2001:db8::1]/, true",
+    "http://[2001:db9::1]/, false",
+    "http://[fe80::1]/, true",
+    "http://[::1]/, true",
+    "http://[::2]/, false",
+    "http://[::ffff:10.0.0.1]/, true",
+    "http://linkedin.com/, false"
+  })
+  void testContains(String url, boolean expected) throws MalformedURLException {
+    assertEquals(MATCHER.contains(NormalizedUrl.create(url)), expected);
+  }
+
+  @Test
+  void testMerge() {
+    //100.64.0.0/10 and 100.128.0.0/10 touch, 192.168.5.0/24 is inside 192.168.0.0/16, and the mapped range is IPv4.
+    assertEquals(MATCHER.size(), 9);
+  }
+
+  @Test
+  void testAccessors() throws MalformedURLException {
+    NormalizedUrl ipv4 = NormalizedUrl.create("http://1.2.3.4/");
+    assertEquals(ipv4.isIpv4(), true);
+    assertEquals(ipv4.getIpv4Address(), 0x01020304);
+    assertEquals(ipv4.getIpv6AddressHigh(), 0L);
+    assertEquals(ipv4.getIpv6AddressLow(), 0x0000ffff01020304L);
+
+    NormalizedUrl ipv6 = NormalizedUrl.create("http://[2001:db8::ff00:42:8329]/");
+    assertEquals(ipv6.isIpv4(), false);
+    assertEquals(ipv6.getIpv6AddressHigh(), 0x20010db800000000L);
+    assertEquals(ipv6.getIpv6AddressLow(), 0x0000ff0000428329L);
+    assertThrows(IllegalStateException.class, ipv6::getIpv4Address);
+
+    NormalizedUrl host = NormalizedUrl.create("http://linkedin.com/");
+    assertEquals(host.isIpv4(), false);
+    assertThrows(IllegalStateException.class, host::getIpv6AddressHigh);
+  }
+
+  @Test
+  void testWholeRanges() {
+    CidrMatcher all = CidrMatcher.create(Collections.singletonList("::/0"));
+    assertEquals(all.containsIpv4(0), true);
+    assertEquals(all.containsIpv4(-1), true);
+    assertEquals(all.containsIpv6(-1L, -1L), true);
+    CidrMatcher allIpv4 = CidrMatcher.create(Collections.singletonList("0.0.0.0/0"));
+    assertEquals(allIpv4.containsIpv4(0x80000000), true);
+    assertEquals(allIpv4.containsIpv6(0L, 1L), false);
+    assertFalse(CidrMatcher.create(Collections.emptyList()).containsIpv4(0));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"10.0.0.0/33", "10.0.0.0/-1", "10.0.0.0/a", "::/129", "linkedin.com/8", "1.2.3/8"})
+  void testInvalid(String cidr) {
+    assertThrows(IllegalArgumentException.class, () -> CidrMatcher.create(Collections.singletonList(cidr)));
+  }
+
+  @Test
+  void testSameAsLinearScan() {
+    Random random = new Random(42);
+    List<String> cidrs = new ArrayList<String>();
+    List<int[]> ranges = new ArrayList<int[]>();
+    for (int i = 0; i < 2000; i++) {
+      int address = random.nextInt();
+      int prefixLength = 8 + random.nextInt(25);
+      int mask = prefixLength == 32 ? -1 : ~(-1 >>> prefixLength);
+      cidrs.add(((address >>> 24) & 0xff) + "." + ((address >>> 16) & 0xff) + "." + ((address >>> 8) & 0xff) + "."
+          + (address & 0xff) + "/" + prefixLength);
+      ranges.add(new int[] {address & mask, address | ~mask});
+    }
+    CidrMatcher matcher = CidrMatcher.create(cidrs);
+    for (int i = 0; i < 20000; i++) {
+      int address = i % 2 == 0 ? random.nextInt() : ranges.get(random.nextInt(ranges.size()))[0] + random.nextInt(3);
+      boolean expected = false;
+      for (int[] range : ranges) {
+        expected |= Integer.compareUnsigned(range[0], address) <= 0 && Integer.compareUnsigned(address, range[1]) <= 0;
+      }
+      assertEquals(matcher.containsIpv4(address), expected);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.linkedin.urls.detection.UrlBatch;
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import com.linkedin.urls.detection.UrlHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.openjdk.jol.info.GraphLayout;
+
+
+class TestCompactUrl {
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "http://www.google.com/",
+    "nooooo:password@teeee.com",
+    "lalal:@www.gogo.com",
+    "a:b:c@www.gogo.com",
+    ":pass@www.gogo.com",
+    "nono:boo@[::1]:80/dodododo",
+    "//www.google.com/a/b",
+    "ftp://www.google.com:abc/",
+    "HTTPS://user@google.com/h?hello=w#abc",
+    "linkedin.com:/lala",
+    "bewp.bop.com/boop?bip=2&bep=3#frag",
+    "see http://www.google.com/a?b#c and bob.com/x?y too"
+  })
+  void testSameAsUrl(String content) {
+    List<Url> urls = new UrlDetector(content, UrlDetectorOptions.Default).detect();
+    List<CompactUrl> compactUrls = CompactUrl.detect(content, UrlDetectorOptions.Default);
+    assertEquals(compactUrls.size(), urls.size());
+    for (int i = 0; i < urls.size(); i++) {
+      Url url = urls.get(i);
+      CompactUrl compactUrl = compactUrls.get(i);
+      assertSame(compactUrl.getSource(), content);
+      assertEquals(compactUrl.getOriginalUrl().toString(), url.getOriginalUrl());
+      assertEquals(compactUrl.getScheme().toString(), url.getScheme());
+      assertEquals(compactUrl.getUsername().toString(), url.getUsername());
+      assertEquals(compactUrl.getPassword().toString(), url.getPassword());
+      assertEquals(compactUrl.getHost().toString(), url.getHost());
+      assertEquals(compactUrl.getPort(), url.getPort());
+      assertEquals(compactUrl.getPath().toString(), url.getPath());
+      assertEquals(compactUrl.getQuery().toString(), url.getQuery());
+      assertEquals(compactUrl.getFragment().toString(), url.getFragment());
+      assertEquals(compactUrl.toUrl().getFullUrl(), url.getFullUrl());
+      assertEquals(CompactUrl.create(url).toString(), url.toString());
+    }
+  }
+
+  @Test
+  void testDataUri() {
+    final String content = "see data:text/plain;base64,SGVsbG8= there";
+    final List<Url> urls = new ArrayList<Url>();
+    final List<CompactUrl> compactUrls = new ArrayList<CompactUrl>();
+    final UrlBatch batch = new UrlBatch();
+    UrlDetector detector = new UrlDetector(content, UrlDetectorOptions.Default);
+    detector.setReportDataUris(true);
+    detector.detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        urls.add(urlMarker.createUrl());
+        compactUrls.add(CompactUrl.create(content, urlMarker, start));
+        batch.add(0, urlMarker, start);
+        return true;
+      }
+    });
+    assertEquals(urls.size(), 1);
+    Url url = urls.get(0);
+    assertTrue(url.isOpaque());
+
+    CompactUrl compactUrl = CompactUrl.create(url);
+    assertNull(compactUrl.getHost());
+    assertNull(compactUrls.get(0).getHost());
+    assertEquals(compactUrl.getScheme().toString(), "data");
+    assertEquals(compactUrl.getUsername().toString(), url.getUsername());
+    assertEquals(compactUrl.getPassword().toString(), url.getPassword());
+    assertEquals(compactUrl.getPort(), url.getPort());
+    assertEquals(compactUrl.getPath().toString(), url.getPath());
+    assertEquals(compactUrl.getQuery().toString(), url.getQuery());
+    assertEquals(compactUrl.getFragment().toString(), url.getFragment());
+    assertEquals(compactUrl.toString(), url.toString());
+    assertEquals(compactUrls.get(0).toUrl().getFullUrl(), url.getFullUrl());
+
+    SignatureMatcher matcher = SignatureMatcher.compile(Arrays.asList("base64", "gif"), false);
+    assertArrayEquals(matcher.match(compactUrl), new int[] {0});
+    assertArrayEquals(matcher.match(compactUrls.get(0)), new int[] {0});
+    assertArrayEquals(matcher.match(url), new int[] {0});
+
+    assertEquals(batch.getUrl(0, content).getFullUrl(), url.getFullUrl());
+    assertEquals(batch.getOriginalUrl(0, content), "data:text/plain;base64,SGVsbG8=");
+  }
+
+  @Test
+  void testOffsets() {
+    String content = "a https://user@google.com:90/h?hello=w#abc b";
+    CompactUrl url = CompactUrl.detect(content, UrlDetectorOptions.Default).get(0);
+    assertEquals(url.getStart(), 2);
+    assertEquals(url.getEnd(), 42);
+    assertEquals(url.indexOf(UrlPart.HOST), 15);
+    assertEquals(url.indexOf(UrlPart.PORT), 26);
+    assertEquals(url.indexOf(UrlPart.PATH), 28);
+    assertEquals(url.getHost().subSequence(1, 4).toString(), "oog");
+  }
+
+  /**
+   * The compact urls only keep the content they were found in, which has to be kept anyways, so they should use much
+   * less memory than the Url objects, which each copy their own url.
+   */
+  @Test
+  void testFootprint() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      builder.append("visit https://www.linkedin.com/in/someone-").append(i).append("?trk=abc#top today. ");
+    }
+    String content = builder.toString();
+    List<Url> urls = new UrlDetector(content, UrlDetectorOptions.Default).detect();
+    List<CompactUrl> compactUrls = CompactUrl.detect(content, UrlDetectorOptions.Default);
+    for (Url url : urls) {
+      url.getHost();
+      url.getPath();
+    }
+    assertEquals(compactUrls.size(), 500);
+
+    long urlSize = GraphLayout.parseInstance(urls.toArray()).totalSize();
+    long compactUrlSize = GraphLayout.parseInstance(compactUrls.toArray()).totalSize()
+        - GraphLayout.parseInstance(content).totalSize();
+    assertTrue(compactUrlSize * 3 < urlSize, "compact: " + compactUrlSize + ", url: " + urlSize);
+  }
+}
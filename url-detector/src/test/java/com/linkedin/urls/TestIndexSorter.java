@@ -0,0 +1,57 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestIndexSorter {
+
+  @ParameterizedTest
+  @CsvSource({
+    "0,     10",
+    "1,     10",
+    "17,    10",
+    "18,    3",
+    "1000,  1",
+    "1000,  5",
+    "10000, 1000000"
+  })
+  void testSameAsArraysSort(int length, int range) {
+    Random random = new Random(length + range);
+    final int[] values = new int[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = random.nextInt(range);
+    }
+    int[] expected = values.clone();
+    Arrays.sort(expected);
+
+    new IndexSorter() {
+      @Override
+      int compare(int i, int j) {
+        return Integer.compare(values[i], values[j]);
+      }
+
+      @Override
+      void swap(int i, int j) {
+        int value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+      }
+    }.sort(0, length - 1);
+    assertArrayEquals(values, expected);
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.MalformedURLException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestParsedUrls {
+
+  private static final String[] URLS = {
+    "http://www.google.com/",
+    "www.google.com/a/../b?c#d",
+    "http://3279880203/blah",
+    "http://[::1]/asdf%25%32%35asd",
+    "nono:boo@yahoo.com/@1234",
+    "HTTP://WWW.GOOGLE.COM:80/",
+    "!!!",
+    "",
+    "google.com,yahoo.com",
+    null
+  };
+
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void testSameAsNormalizedUrlCreate(boolean parallel) throws MalformedURLException {
+    //enough copies to span several chunks
+    String[] urls = new String[URLS.length * 1000];
+    for (int i = 0; i < urls.length; i++) {
+      urls[i] = URLS[i % URLS.length];
+    }
+    ParsedUrls parsedUrls = ParsedUrls.normalize(urls, parallel);
+    assertEquals(parsedUrls.size(), urls.length);
+    assertEquals(parsedUrls.getFailureCount(), 4000);
+
+    for (int i = 0; i < urls.length; i++) {
+      String url = urls[i];
+      if (url == null) {
+        assertEquals(parsedUrls.getStatus(i), ParsedUrls.Status.NULL);
+      } else if (url.isEmpty() || url.equals("!!!")) {
+        assertEquals(parsedUrls.getStatus(i), ParsedUrls.Status.NO_URL);
+        assertThrows(MalformedURLException.class, () -> NormalizedUrl.create(url));
+      } else if (url.contains(",")) {
+        assertEquals(parsedUrls.getStatus(i), ParsedUrls.Status.MULTIPLE_URLS);
+        assertThrows(MalformedURLException.class, () -> NormalizedUrl.create(url));
+      } else {
+        NormalizedUrl expected = NormalizedUrl.create(url);
+        NormalizedUrl actual = parsedUrls.getNormalizedUrl(i);
+        assertEquals(parsedUrls.getStatus(i), ParsedUrls.Status.OK);
+        assertEquals(actual.getFullUrl(), expected.getFullUrl());
+        assertArrayEquals(actual.getHostBytes(), expected.getHostBytes());
+      }
+      if (!parsedUrls.isValid(i)) {
+        assertNull(parsedUrls.getUrl(i));
+      }
+    }
+  }
+
+  @Test
+  void testParse() throws MalformedURLException {
+    ParsedUrls parsedUrls = ParsedUrls.parse(Arrays.asList(URLS), false);
+    assertEquals(parsedUrls.getUrl(1).getPath(), Url.create(URLS[1]).getPath());
+    assertEquals(parsedUrls.getUrl(1).getPath(), "/a/../b");
+    assertThrows(IllegalStateException.class, () -> parsedUrls.getNormalizedUrl(1));
+  }
+}
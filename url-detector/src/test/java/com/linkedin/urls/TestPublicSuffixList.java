@@ -0,0 +1,108 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestPublicSuffixList {
+
+  @ParameterizedTest
+  @CsvSource({
+    "www.linkedin.co.uk, co.uk, linkedin.co.uk",
+    "linkedin.com, com, linkedin.com",
+    "com, com, ",
+    "co.uk, co.uk, ",
+    "WWW.LinkedIn.COM, COM, LinkedIn.COM",
+    "www.linkedin.com., com, linkedin.com",
+    "example.zzz, zzz, example.zzz",
+    "a.b.c.kawasaki.jp, c.kawasaki.jp, b.c.kawasaki.jp",
+    "city.kawasaki.jp, kawasaki.jp, city.kawasaki.jp",
+    "www.city.kawasaki.jp, kawasaki.jp, city.kawasaki.jp",
+    "www.ck, ck, www.ck",
+    "a.b.ck, b.ck, a.b.ck",
+    "foo.xn--fiqs8s, xn--fiqs8s, foo.xn--fiqs8s",
+    "user.github.io, github.io, user.github.io",
+    "a.user.github.io, github.io, user.github.io"
+  })
+  void testDefaultList(String host, String publicSuffix, String registrableDomain) {
+    PublicSuffixList list = PublicSuffixList.getDefault();
+    assertEquals(toString(list.getPublicSuffix(host)), publicSuffix);
+    assertEquals(toString(list.getRegistrableDomain(host)), registrableDomain);
+  }
+
+  @Test
+  void testInvalidHosts() {
+    PublicSuffixList list = PublicSuffixList.getDefault();
+    for (String host : Arrays.asList("", ".", ".com", "a..com", "a.com..")) {
+      assertEquals(list.getPublicSuffixStart(host), -1, host);
+      assertNull(list.getRegistrableDomain(host), host);
+    }
+  }
+
+  @Test
+  void testNormalizedUrl() throws MalformedURLException {
+    NormalizedUrl url = NormalizedUrl.create("http://WWW.LINKEDIN.CO.UK/in/someone");
+    assertEquals(url.getPublicSuffix().toString(), "co.uk");
+    assertEquals(url.getRegistrableDomain().toString(), "linkedin.co.uk");
+
+    NormalizedUrl ipUrl = NormalizedUrl.create("http://192.168.1.1/");
+    assertNull(ipUrl.getPublicSuffix());
+    assertNull(ipUrl.getRegistrableDomain());
+  }
+
+  @Test
+  void testLoad() throws IOException {
+    Path file = Files.createTempFile("public_suffix_list", ".dat");
+    try {
+      Files.write(file, Arrays.asList(
+          "// comment",
+          "",
+          "example",
+          "*.wild.example",
+          "!not.wild.example",
+          "中国   trailing text is ignored"), StandardCharsets.UTF_8);
+      PublicSuffixList list = PublicSuffixList.load(file);
+      assertEquals(toString(list.getRegistrableDomain("a.b.example")), "b.example");
+      assertEquals(toString(list.getRegistrableDomain("a.b.wild.example")), "a.b.wild.example");
+      assertEquals(toString(list.getRegistrableDomain("a.not.wild.example")), "not.wild.example");
+      assertEquals(toString(list.getRegistrableDomain("a.b.xn--fiqs8s")), "b.xn--fiqs8s");
+      assertEquals(toString(list.getPublicSuffix("a.b.com")), "com");
+
+      PublicSuffixList bundled = PublicSuffixList.getDefault();
+      try {
+        PublicSuffixList.setDefault(list);
+        assertEquals(NormalizedUrl.create("http://a.b.example/").getRegistrableDomain().toString(), "b.example");
+      } finally {
+        PublicSuffixList.setDefault(bundled);
+      }
+      assertThrows(IllegalArgumentException.class, () -> PublicSuffixList.setDefault(null));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static String toString(CharSequence text) {
+    return text == null ? null : text.toString();
+  }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestQueryNormalizer {
+
+  @ParameterizedTest
+  @CsvSource({
+    "?b=2&a=1, ?a=1&b=2",
+    "b=2&a=1, ?a=1&b=2",
+    "?b=2&utm_source=mail&a=%7e+x, ?a=~%20x&b=2",
+    "?fbclid=123&utm_medium=x, ''",
+    "'', ''",
+    "?a=2&b&a=1, ?a=2&a=1&b",
+    "?a=1&&b=2&, ?a=1&b=2",
+    "?q=%e2%82%ac, ?q=%E2%82%AC",
+    "?q=€, ?q=%E2%82%AC",
+    "?q=a%2fb%3F, ?q=a/b?",
+    "?q=%26%3D%2B, ?q=%26%3D%2B",
+    "?q=100%, ?q=100%25",
+    "?%61=1, ?a=1"
+  })
+  void testNormalizeQuery(String query, String expected) {
+    assertEquals(QueryNormalizer.DEFAULT.normalizeQuery(query), expected);
+  }
+
+  @Test
+  void testManyParametersKeepTheirOrder() {
+    Random random = new Random(7);
+    StringBuilder query = new StringBuilder();
+    List<String> parameters = new ArrayList<String>();
+    for (int i = 0; i < 200; i++) {
+      String parameter = "k" + random.nextInt(20) + "=" + i;
+      parameters.add(parameter);
+      query.append(i == 0 ? "?" : "&").append(parameter);
+    }
+    //a stable sort by key.
+    parameters.sort(Comparator.comparing(parameter -> parameter.substring(0, parameter.indexOf('='))));
+    assertEquals(QueryNormalizer.DEFAULT.normalizeQuery(query.toString()), "?" + String.join("&", parameters));
+  }
+
+  @Test
+  void testCustomKeys() {
+    QueryNormalizer normalizer = new QueryNormalizer(Arrays.asList("trk"), Collections.<String>emptyList());
+    assertEquals(normalizer.normalizeQuery("?utm_source=a&trk=b"), "?utm_source=a");
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "http://www.linkedin.com/in/someone?trk=abc&utm_campaign=x&a=1#top, http://www.linkedin.com/in/someone?a=1&trk=abc,"
+        + " ?a=1&trk=abc",
+    "http://www.linkedin.com/in/someone?a=1&trk=abc, http://www.linkedin.com/in/someone?a=1&trk=abc, ?a=1&trk=abc",
+    "http://www.linkedin.com/?utm_campaign=x, http://www.linkedin.com/, ''"
+  })
+  void testNormalizedUrl(String url, String expected, String expectedQuery) throws MalformedURLException {
+    NormalizedUrl normalizedUrl = NormalizedUrl.create(url, QueryNormalizer.DEFAULT);
+    assertEquals(normalizedUrl.getFullUrlWithoutFragment(), expected);
+    assertEquals(normalizedUrl.getQuery(), expectedQuery);
+  }
+
+  @Test
+  void testOptIn() throws MalformedURLException {
+    assertEquals(NormalizedUrl.create("a.com/?b=1&a=2").getQuery(), "?b=1&a=2");
+  }
+}
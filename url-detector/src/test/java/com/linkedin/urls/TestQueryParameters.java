@@ -0,0 +1,76 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.MalformedURLException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestQueryParameters {
+
+  @ParameterizedTest
+  @CsvSource({
+    "http://www.google.com/search?q=linkedin&hl=en#top, q, linkedin",
+    "http://www.google.com/search?q=linkedin&hl=en#top, hl, en",
+    "http://www.google.com/search?q=linkedin&hl=en#top, top, ",
+    "google.com?a=1&&b=2&b=3, b, 2",
+    "google.com?flag&x=1, flag, ''",
+    "google.com?a=x=y, a, x=y",
+    "google.com?q=hello+world%21, q, hello world!",
+    "google.com?%71=%E2%82%AC, q, €",
+    "google.com?q=100%, q, 100%",
+    "google.com?q=%zz%4, q, %zz%4",
+    "google.com/path, q, "
+  })
+  void testGetQueryParameter(String url, String name, String value) throws MalformedURLException {
+    assertEquals(Url.create(url).getQueryParameter(name), value);
+  }
+
+  @Test
+  void testOffsets() throws MalformedURLException {
+    Url url = Url.create("http://a.com/?x=1&yy&=z#f=g");
+    QueryParameters parameters = url.getQueryParameters();
+
+    assertTrue(parameters.next());
+    assertEquals(parameters.getKeyStart(), 14);
+    assertEquals(parameters.getKeyEnd(), 15);
+    assertEquals(parameters.getValueStart(), 16);
+    assertEquals(parameters.getValueEnd(), 17);
+    assertEquals(parameters.getKey().toString(), "x");
+    assertEquals(parameters.getValue().toString(), "1");
+
+    assertTrue(parameters.next());
+    assertEquals(parameters.getKey().toString(), "yy");
+    assertFalse(parameters.hasValue());
+    assertNull(parameters.getValue());
+    assertNull(parameters.getDecodedValue());
+
+    assertTrue(parameters.next());
+    assertEquals(parameters.getKey().toString(), "");
+    assertEquals(parameters.getDecodedValue(), "z");
+
+    assertFalse(parameters.next());
+    assertThrows(IllegalStateException.class, parameters::getKey);
+  }
+
+  @Test
+  void testNoQuery() throws MalformedURLException {
+    assertFalse(Url.create("http://a.com/#?a=b").getQueryParameters().next());
+  }
+}
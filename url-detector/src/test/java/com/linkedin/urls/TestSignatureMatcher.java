@@ -0,0 +1,114 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestSignatureMatcher {
+
+  private static final List<String> SIGNATURES =
+      Arrays.asList("/wp-admin/", "cmd=", "../", "login.php", "he", "she", "his", "hers", "", "evil.com");
+
+  private static final SignatureMatcher MATCHER = SignatureMatcher.compile(SIGNATURES, false);
+
+  @ParameterizedTest
+  @CsvSource({
+    "http://a.com/wp-admin/login.php?cmd=ls, 0 1 3",
+    "http://a.com/wp-admin/login.php#cmd=ls, 0 3",
+    "http://evil.com/ushers, 4 5 7",
+    "http://a.com?q=his, 6",
+    "http://a.com/x?next=http://evil.com/, 9",
+    "http://a.com/../../x, 2",
+    "http://he.com/, ''",
+    "http://a.com/WP-ADMIN/, ''"
+  })
+  void testMatch(String url, String expected) throws MalformedURLException {
+    int[] expectedIds = ids(expected);
+    assertArrayEquals(MATCHER.match(Url.create(url)), expectedIds);
+    assertArrayEquals(MATCHER.match(CompactUrl.create(Url.create(url))), expectedIds);
+  }
+
+  @Test
+  void testIgnoreCase() throws MalformedURLException {
+    SignatureMatcher matcher = SignatureMatcher.compile(SIGNATURES, true);
+    assertArrayEquals(matcher.match(Url.create("http://a.com/WP-ADMIN/Login.PHP")), new int[] {0, 3});
+    assertEquals(matcher.size(), SIGNATURES.size());
+  }
+
+  @Test
+  void testDuringDetection() {
+    List<int[]> matches = new ArrayList<int[]>();
+    new UrlDetector("see http://a.com/wp-admin/?cmd=1 and http://b.com/ok", UrlDetectorOptions.Default).detect(
+        (urlMarker, start, end) -> {
+          matches.add(MATCHER.match(urlMarker.createUrl()));
+          return true;
+        });
+    assertEquals(matches.size(), 2);
+    assertArrayEquals(matches.get(0), new int[] {0, 1});
+    assertArrayEquals(matches.get(1), new int[0]);
+  }
+
+  @Test
+  void testSameAsIndexOf() {
+    Random random = new Random(42);
+    List<String> signatures = new ArrayList<String>();
+    for (int i = 0; i < 300; i++) {
+      signatures.add(randomText(random, 1 + random.nextInt(5)));
+    }
+    SignatureMatcher matcher = SignatureMatcher.compile(signatures, false);
+    for (int i = 0; i < 1000; i++) {
+      String text = randomText(random, random.nextInt(40));
+      List<Integer> expected = new ArrayList<Integer>();
+      for (int id = 0; id < signatures.size(); id++) {
+        if (text.contains(signatures.get(id))) {
+          expected.add(id);
+        }
+      }
+      int[] expectedIds = expected.stream().mapToInt(Integer::intValue).toArray();
+      assertArrayEquals(matcher.match(text, 0, text.length()), expectedIds, text);
+    }
+  }
+
+  @Test
+  void testRepetitiveText() {
+    SignatureMatcher matcher = SignatureMatcher.compile(Arrays.asList("ab", "b", "zz", "a"), false);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      text.append("ab");
+    }
+    assertArrayEquals(matcher.match(text, 0, text.length()), new int[] {0, 1, 3});
+  }
+
+  private static String randomText(Random random, int length) {
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append((char) ('a' + random.nextInt(3)));
+    }
+    return text.toString();
+  }
+
+  private static int[] ids(String ids) {
+    return ids.isEmpty() ? new int[0] : Arrays.stream(ids.split(" ")).mapToInt(Integer::parseInt).toArray();
+  }
+}
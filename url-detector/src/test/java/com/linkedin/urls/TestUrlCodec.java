@@ -0,0 +1,116 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestUrlCodec {
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "http://www.google.com/",
+    "nooooo:password@teeee.com",
+    "nono:boo@[::1]:80/dodododo",
+    "//www.google.com/a/b",
+    "HTTPS://user@google.com/h?hello=w#abc",
+    "bewp.bop.com/boop?bip=2&bep=3#frag",
+    "http://例え.テスト/パス?クエリ=値#断片",
+    "http://host.com/😀/x?y=😀",
+    "http://host.com/a/../b/%2525252525252525"
+  })
+  void testRoundTrip(String text) throws MalformedURLException {
+    Url url = Url.create(text);
+    Url decoded = UrlCodec.decode(UrlCodec.encode(url));
+    assertEquals(decoded.getClass(), Url.class);
+    assertEquals(decoded.getOriginalUrl(), url.getOriginalUrl());
+    for (UrlPart urlPart : UrlPart.values()) {
+      assertEquals(decoded.getUrlMarker().indexOf(urlPart), url.getUrlMarker().indexOf(urlPart));
+    }
+    assertEquals(decoded, url);
+
+    NormalizedUrl normalizedUrl = NormalizedUrl.create(text);
+    Url decodedNormalizedUrl = UrlCodec.decode(UrlCodec.encode(normalizedUrl));
+    assertEquals(decodedNormalizedUrl.getClass(), NormalizedUrl.class);
+    assertEquals(decodedNormalizedUrl, normalizedUrl);
+  }
+
+  @Test
+  void testRecordIsCompact() throws MalformedURLException {
+    Url url = Url.create("http://www.linkedin.com/in/someone?trk=abc");
+    //the flags, the length, the url and one byte per part.
+    assertEquals(UrlCodec.encode(url).length, 1 + 1 + url.getOriginalUrl().length() + UrlPart.values().length);
+  }
+
+  @Test
+  void testInvalidRecords() throws MalformedURLException {
+    byte[] bytes = UrlCodec.encode(Url.create("http://www.linkedin.com/"));
+    assertThrows(IllegalArgumentException.class, () -> UrlCodec.decode(Arrays.copyOf(bytes, bytes.length - 1)));
+    assertThrows(IllegalArgumentException.class, () -> UrlCodec.decode(Arrays.copyOf(bytes, bytes.length + 1)));
+    byte[] badIndex = bytes.clone();
+    badIndex[badIndex.length - 1] = 100;
+    assertThrows(IllegalArgumentException.class, () -> UrlCodec.decode(badIndex));
+  }
+
+  @Test
+  void testWriterAndReader() throws IOException {
+    List<Url> urls = detectUrls(3000);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (UrlRecordWriter writer = new UrlRecordWriter(outputStream)) {
+      for (int i = 0; i < urls.size(); i++) {
+        writer.write(i % 2 == 0 ? urls.get(i) : urls.get(i).normalize());
+      }
+      assertEquals(writer.getCount(), urls.size());
+    }
+
+    byte[] bytes = outputStream.toByteArray();
+    try (UrlRecordReader reader = new UrlRecordReader(new ByteArrayInputStream(bytes))) {
+      for (int i = 0; i < urls.size(); i++) {
+        Url url = reader.read();
+        assertEquals(url, i % 2 == 0 ? urls.get(i) : urls.get(i).normalize());
+      }
+      assertNull(reader.read());
+    }
+
+    UrlRecordReader truncated = new UrlRecordReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 3)));
+    assertThrows(EOFException.class, () -> {
+      while (truncated.read() != null) {
+        continue;
+      }
+    });
+    assertThrows(IOException.class, () -> new UrlRecordReader(new ByteArrayInputStream(new byte[] {'U', 'R', 'L'})));
+  }
+
+  private static List<Url> detectUrls(int count) {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      content.append("see https://user@www.host").append(i % 97).append(".com:8080/path/").append(i)
+          .append("?q=").append(i * 7).append("#frag and www.other").append(i).append(".org/x ");
+    }
+    return new UrlDetector(content.toString(), UrlDetectorOptions.Default).detect().subList(0, count);
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestUrlDeduplicator {
+
+  @ParameterizedTest
+  @CsvSource({
+    "9223372036854775807, 5000",
+    "100000,              5000",
+    "5000,                5000",
+    //more runs than a pass of the merge reads at once.
+    "2000,                20000",
+    //enough urls in one run to sort it in parallel.
+    "9223372036854775807, 100000",
+    "1000000,             100000"
+  })
+  void testSameAsTreeSet(long memoryBudget, int count) throws IOException {
+    Random random = new Random(3);
+    List<Url> urls = new ArrayList<Url>();
+    for (int i = 0; i < count; i++) {
+      String text = (random.nextBoolean() ? "http://" : "HTTP://") + "www.host" + random.nextInt(40) + ".com/"
+          + (random.nextBoolean() ? "a/../" : "") + "p" + random.nextInt(30);
+      urls.add(NormalizedUrl.create(text));
+    }
+    TreeSet<Url> expected = new TreeSet<Url>(UrlComparator.INSTANCE);
+    expected.addAll(urls);
+
+    Path tempDirectory = Files.createTempDirectory("urls");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try (UrlDeduplicator deduplicator = new UrlDeduplicator(tempDirectory, memoryBudget, pool);
+        UrlRecordWriter writer = new UrlRecordWriter(outputStream)) {
+      for (Url url : urls) {
+        deduplicator.add(url);
+      }
+      assertEquals(deduplicator.getCount(), urls.size());
+      assertEquals(deduplicator.getRunCount() > 0, memoryBudget != Long.MAX_VALUE);
+      assertEquals(deduplicator.merge(writer), expected.size());
+      assertThrows(IllegalStateException.class, () -> deduplicator.merge(writer));
+    }
+
+    try (UrlRecordReader reader = new UrlRecordReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+      for (Url url : expected) {
+        Url read = reader.read();
+        assertTrue(read instanceof NormalizedUrl);
+        assertEquals(read.getFullUrl(), url.getFullUrl());
+      }
+      assertNull(reader.read());
+    }
+
+    pool.shutdown();
+
+    try (Stream<Path> files = Files.list(tempDirectory)) {
+      assertEquals(files.count(), 0L);
+    }
+    Files.delete(tempDirectory);
+  }
+
+  @Test
+  void testKeysKeepTheOrderOfTheComparator() throws IOException {
+    String[] schemes = {"http://", "https://", "ftp://"};
+    String[] users = {"", "a@", "a:b@", "a:c@", "b@"};
+    String[] hosts = {"x.com", "x.co", "xy.com", "\u00e9.com", "\u4e2d.com", "xn--bcher-kva.com"};
+    String[] ports = {"", ":80", ":8080", ":99", ":443"};
+    StringBuilder longPath = new StringBuilder("/");
+    for (int i = 0; i < 1000; i++) {
+      longPath.append('p');
+    }
+    String[] paths = {"", "/", "/a", "/a/b", "/\u00e9", "/\ud83d\ude00", "/\uffff", "/ab", longPath.toString()};
+    String[] queries = {"", "?", "?a", "?a=1", "?b"};
+    Random random = new Random(11);
+    List<Url> urls = new ArrayList<Url>();
+    for (int i = 0; i < 1000; i++) {
+      urls.add(Url.create(schemes[random.nextInt(schemes.length)] + users[random.nextInt(users.length)]
+          + hosts[random.nextInt(hosts.length)] + ports[random.nextInt(ports.length)]
+          + paths[random.nextInt(paths.length)] + queries[random.nextInt(queries.length)]
+          + (random.nextInt(4) == 0 ? "#f" : "")));
+    }
+    TreeSet<Url> expected = new TreeSet<Url>(UrlComparator.INSTANCE);
+    expected.addAll(urls);
+
+    //a budget smaller than the urls with the long path, so they go to runs of their own.
+    Path tempDirectory = Files.createTempDirectory("urls");
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (UrlDeduplicator deduplicator = new UrlDeduplicator(tempDirectory, 3000);
+        UrlRecordWriter writer = new UrlRecordWriter(outputStream)) {
+      for (Url url : urls) {
+        deduplicator.add(url);
+      }
+      assertEquals(deduplicator.merge(writer), expected.size());
+    }
+    try (UrlRecordReader reader = new UrlRecordReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+      for (Url url : expected) {
+        assertEquals(reader.read().getFullUrl(), url.getFullUrl());
+      }
+      assertNull(reader.read());
+    }
+    Files.delete(tempDirectory);
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+
+class TestUrlDictionary {
+
+  @Test
+  void testSameAsSortedList() throws IOException {
+    Random random = new Random(11);
+    Set<String> urls = new LinkedHashSet<String>();
+    for (int i = 0; i < 3000; i++) {
+      String host = random.nextInt(5) == 0 ? "例え" + random.nextInt(5) + ".jp"
+          : "www.host" + random.nextInt(60) + ".com";
+      urls.add("http://" + host + "/" + (random.nextBoolean() ? "in/" : "") + "p" + random.nextInt(100));
+    }
+    List<String> sorted = new ArrayList<String>(urls);
+    Collections.sort(sorted, (first, second) -> compareUtf8(first, second));
+
+    List<String> input = new ArrayList<String>(urls);
+    input.addAll(sorted.subList(0, 100));
+    Collections.shuffle(input, random);
+    UrlDictionary dictionary = UrlDictionary.create(input);
+    check(dictionary, sorted);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    dictionary.write(outputStream);
+    check(UrlDictionary.wrap(ByteBuffer.wrap(outputStream.toByteArray())), sorted);
+
+    Path file = Files.createTempFile("urls", ".dict");
+    try {
+      try (OutputStream fileStream = Files.newOutputStream(file)) {
+        dictionary.write(fileStream);
+      }
+      check(UrlDictionary.load(file), sorted);
+    } finally {
+      Files.delete(file);
+    }
+
+    int totalLength = 0;
+    for (String url : sorted) {
+      totalLength += url.getBytes(StandardCharsets.UTF_8).length;
+    }
+    assertTrue(dictionary.getSizeInBytes() * 2 < totalLength, dictionary.getSizeInBytes() + " of " + totalLength);
+  }
+
+  private static void check(UrlDictionary dictionary, List<String> sorted) {
+    assertEquals(dictionary.size(), sorted.size());
+    for (int i = 0; i < sorted.size(); i++) {
+      String url = sorted.get(i);
+      assertEquals(dictionary.select(i), url);
+      assertEquals(dictionary.indexOf(url), i);
+      assertEquals(dictionary.rank(url), i);
+      assertTrue(dictionary.contains(url));
+      assertFalse(dictionary.contains(url + "x"));
+      assertEquals(dictionary.rank(url + "\u0000"), i + 1);
+    }
+    assertFalse(dictionary.contains("http://"));
+    assertEquals(dictionary.rank(""), 0);
+    assertEquals(dictionary.rank("\uffff"), sorted.size());
+
+    for (String prefix : Arrays.asList("http://www.host7", "http://www.host7.com/", "http://www.host7.com/in/",
+        "http://例え1.jp/", "http://", "", "https://", "http://www.host7.com/in/p5")) {
+      int expectedStart = 0;
+      while (expectedStart < sorted.size() && compareUtf8(sorted.get(expectedStart), prefix) < 0) {
+        expectedStart++;
+      }
+      int expectedEnd = expectedStart;
+      while (expectedEnd < sorted.size() && sorted.get(expectedEnd).startsWith(prefix)) {
+        expectedEnd++;
+      }
+      assertEquals(dictionary.getPrefixStart(prefix), expectedStart, prefix);
+      assertEquals(dictionary.getPrefixEnd(prefix), expectedEnd, prefix);
+    }
+    assertThrows(IndexOutOfBoundsException.class, () -> dictionary.select(sorted.size()));
+  }
+
+  @Test
+  void testNormalizedUrls() throws MalformedURLException {
+    List<Url> urls = Arrays.asList(NormalizedUrl.create("http://WWW.LinkedIn.com/a/../b"),
+        NormalizedUrl.create("http://www.linkedin.com/b#frag"), NormalizedUrl.create("https://linkedin.com/"));
+    UrlDictionary dictionary = UrlDictionary.create(urls.iterator());
+    assertEquals(dictionary.size(), 2);
+    assertTrue(dictionary.contains("http://www.linkedin.com/b"));
+    assertTrue(dictionary.contains("https://linkedin.com/"));
+  }
+
+  @Test
+  void testEmptyAndInvalid() {
+    UrlDictionary dictionary = UrlDictionary.create(Collections.<String>emptyList());
+    assertEquals(dictionary.size(), 0);
+    assertFalse(dictionary.contains("http://www.linkedin.com/"));
+    assertEquals(dictionary.getPrefixEnd("http://"), 0);
+    assertThrows(IllegalArgumentException.class, () -> UrlDictionary.wrap(ByteBuffer.wrap(new byte[24])));
+  }
+
+  private static int compareUtf8(String first, String second) {
+    byte[] firstBytes = first.getBytes(StandardCharsets.UTF_8);
+    byte[] secondBytes = second.getBytes(StandardCharsets.UTF_8);
+    for (int i = 0; i < Math.min(firstBytes.length, secondBytes.length); i++) {
+      int difference = (firstBytes[i] & 0xff) - (secondBytes[i] & 0xff);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return firstBytes.length - secondBytes.length;
+  }
+}
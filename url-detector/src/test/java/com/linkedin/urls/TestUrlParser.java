@@ -0,0 +1,98 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestUrlParser {
+
+  private static final String[] SCHEMES = {"", "http://", "HTTPS://", "ftp://", "ftps://", "//", "mailto:", "hxxp://"};
+  private static final String[] USER_INFOS = {"", "user@", "u:p@"};
+  private static final String[] HOSTS = {
+    "www.google.com", "google.com", "a.b.c.co.uk", "localhost", "192.168.1.1", "0x7f.com", "xn--fsqu00a.xn--0zwm56d",
+    "abc.abcdefghijklmnopqrstuvw", "a..com", ".a.com", "a.com.", "[::1]", "exa_mple.com", "1.2", "-a-.com", "abc.1x",
+    "abcdefghijabcdefghijabcdefghijabcdefghijabcdefghijabcdefghijabcde.com", "www.google%2ecom", "goo。gle.com"
+  };
+  private static final String[] PORTS = {"", ":80", ":", ":abc", ":8080"};
+  private static final String[] RESTS = {
+    "", "/", "/a/b.html", "?q=1", "#frag", "/p?q#f", "/p#f?q", "?a?b#c#d", "/%20x", "/a b", " ", "\t", "/a\tb",
+    "/@x", "/a:b", "/http://x.com/"
+  };
+
+  /**
+   * Every url that is parsed directly must have the same marker as the UrlDetector would give it.
+   */
+  @Test
+  void testSameAsDetector() {
+    for (String scheme : SCHEMES) {
+      for (String userInfo : USER_INFOS) {
+        for (String host : HOSTS) {
+          for (String port : PORTS) {
+            for (String rest : RESTS) {
+              String url = scheme + userInfo + host + port + rest;
+              UrlMarker urlMarker = UrlParser.parse(url);
+              if (urlMarker == null) {
+                continue;
+              }
+              List<Url> urls = new UrlDetector(url, UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN).detect();
+              assertEquals(urls.size(), 1, url);
+              UrlMarker expected = urls.get(0).getUrlMarker();
+              assertEquals(urlMarker.getOriginalUrl(), expected.getOriginalUrl(), url);
+              for (UrlPart urlPart : UrlPart.values()) {
+                assertEquals(urlMarker.indexOf(urlPart), expected.indexOf(urlPart), url + " " + urlPart);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "www.google.com",
+    "http://www.google.com/",
+    "HTTPS://www.linkedin.com:443/in/someone?trk=abc#top",
+    "ftp://files.example.org/pub/a.txt",
+    "google.com?q=1",
+    "google.com#frag",
+    "abc.xn--p1ai/path"
+  })
+  void testParsed(String url) {
+    assertNotNull(UrlParser.parse(url));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "user:pass@google.com",
+    "192.168.1.1",
+    "localhost",
+    "//google.com",
+    " google.com",
+    "google.com/a b",
+    "google.com:",
+    "google.com:80abc",
+    "[::1]:80"
+  })
+  void testLeftToDetector(String url) {
+    assertNull(UrlParser.parse(url));
+  }
+}
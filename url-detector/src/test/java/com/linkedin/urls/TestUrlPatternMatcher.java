@@ -0,0 +1,140 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestUrlPatternMatcher {
+
+  private static final List<String> PATTERNS = Arrays.asList(
+      "*://*.example.com/docs/*",
+      "https://www.example.com/*",
+      "http://example.com/",
+      "*://*/*.pdf",
+      "ftp://files.example.org/pub/*/readme*",
+      "*://localhost:8080/*",
+      "<all_urls>",
+      "https://*/a*b*c");
+
+  private static final UrlPatternMatcher MATCHER = UrlPatternMatcher.compile(PATTERNS);
+
+  @ParameterizedTest
+  @CsvSource({
+    "http://example.com/docs/intro, 0 6",
+    "https://a.b.example.com/docs/, 0 6",
+    "https://www.example.com/docs/x?y=1, 0 1 6",
+    "https://WWW.EXAMPLE.COM/index.html, 1 6",
+    "http://example.com, 2 6",
+    "http://example.com/?q=1, 6",
+    "http://notexample.com/docs/x, 6",
+    "http://other.org/files/report.pdf, 3 6",
+    "http://other.org/files/report.pdf#page=2, 3 6",
+    "http://other.org/files/report.pdf?x, 6",
+    "ftp://files.example.org/pub/linux/readme.txt, 6 4",
+    "ftp://files.example.org/pub/readme.txt, 6",
+    "http://localhost:8080/admin, 5 6",
+    "http://localhost:9090/admin, 6",
+    "https://x.org/a-b-c, 6 7",
+    "https://x.org/abcabc, 6 7",
+    "https://x.org/acb, 6"
+  })
+  void testMatch(String url, String expected) throws MalformedURLException {
+    int[] expectedIds = Arrays.stream(expected.split(" ")).mapToInt(Integer::parseInt).sorted().toArray();
+    assertArrayEquals(MATCHER.match(Url.create(url)), expectedIds);
+    assertEquals(MATCHER.matches(Url.create(url)), true);
+  }
+
+  @Test
+  void testNoMatch() throws MalformedURLException {
+    UrlPatternMatcher matcher = UrlPatternMatcher.compile(Collections.singletonList("https://example.com/*"));
+    assertArrayEquals(matcher.match(Url.create("http://example.com/")), new int[0]);
+    assertEquals(matcher.matches(Url.create("https://example.com/")), true);
+    assertEquals(matcher.size(), 1);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"example.com/*", "*://example.com", "://example.com/", "h*p://example.com/",
+      "*://www.*.com/*", "*://*example.com/*", "http:///*", "*://example.com:port/*", "*://a..com/*"})
+  void testInvalid(String pattern) {
+    assertThrows(IllegalArgumentException.class, () -> UrlPatternMatcher.compile(Collections.singletonList(pattern)));
+  }
+
+  @Test
+  void testSameAsRegex() throws MalformedURLException {
+    List<String> hosts = Arrays.asList("*", "*.a.com", "a.com", "b.a.com", "*.b.a.com", "c.com");
+    List<String> paths = Arrays.asList("/*", "/", "/x*", "/*y", "/x*y*", "/**z", "/x/y", "/*?q=*");
+    List<String> patterns = new ArrayList<String>();
+    for (String scheme : Arrays.asList("*", "https")) {
+      for (String host : hosts) {
+        for (String path : paths) {
+          patterns.add(scheme + "://" + host + path);
+        }
+      }
+    }
+    UrlPatternMatcher matcher = UrlPatternMatcher.compile(patterns);
+
+    for (String scheme : Arrays.asList("http", "https", "ftp")) {
+      for (String host : Arrays.asList("a.com", "b.a.com", "c.b.a.com", "c.com", "d.com")) {
+        for (String path : Arrays.asList("", "/", "/x", "/xy", "/x/y", "/yz", "/x?q=1", "/z?y", "?q=1")) {
+          String url = scheme + "://" + host + path;
+          List<Integer> expected = new ArrayList<Integer>();
+          for (int id = 0; id < patterns.size(); id++) {
+            if (toRegex(patterns.get(id)).matcher(scheme + "://" + host + (path.startsWith("/") ? path : "/" + path))
+                .matches()) {
+              expected.add(id);
+            }
+          }
+          assertArrayEquals(matcher.match(Url.create(url)), expected.stream().mapToInt(Integer::intValue).toArray(),
+              url);
+        }
+      }
+    }
+  }
+
+  /**
+   * The way the patterns used to be checked: one regex per pattern against the whole url.
+   */
+  private static Pattern toRegex(String pattern) {
+    int schemeEnd = pattern.indexOf("://");
+    int pathStart = pattern.indexOf('/', schemeEnd + 3);
+    String scheme = pattern.substring(0, schemeEnd);
+    String host = pattern.substring(schemeEnd + 3, pathStart);
+    String path = pattern.substring(pathStart);
+    StringBuilder regex = new StringBuilder(scheme.equals("*") ? "https?" : Pattern.quote(scheme));
+    regex.append("://");
+    if (host.equals("*")) {
+      regex.append("[^/]*");
+    } else if (host.startsWith("*.")) {
+      regex.append("([^/]*\\.)?").append(Pattern.quote(host.substring(2)));
+    } else {
+      regex.append(Pattern.quote(host));
+    }
+    for (String part : path.split("\\*", -1)) {
+      regex.append(Pattern.quote(part)).append(".*");
+    }
+    regex.setLength(regex.length() - 2);
+    return Pattern.compile(regex.toString());
+  }
+}
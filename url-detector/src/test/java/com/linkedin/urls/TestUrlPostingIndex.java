@@ -0,0 +1,142 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.linkedin.urls.UrlPostingIndex.KeyType;
+import com.linkedin.urls.detection.UrlDetector;
+import com.linkedin.urls.detection.UrlDetectorOptions;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestUrlPostingIndex {
+
+  @TempDir
+  Path _tempDirectory;
+
+  @ParameterizedTest
+  @CsvSource({
+    "HOST, 1000000, 30",
+    "HOST, 500,     30",
+    //more runs than a pass of the merge reads at once.
+    "HOST, 50,      30",
+    "URL,  1000000, 30",
+    "URL,  500,     8"
+  })
+  void testSameAsTreeMap(KeyType keyType, int runSize, int segmentShift) throws IOException {
+    Random random = new Random(5);
+    long[] documentIds = new long[3000];
+    String[] documents = new String[documentIds.length];
+    for (int i = 0; i < documents.length; i++) {
+      documentIds[i] = i * 3L - 1000;
+      documents[i] = "see http://www.Host" + random.nextInt(200) + ".com/" + random.nextInt(5) + " and host"
+          + random.nextInt(50) + ".org/a?b, or nothing";
+      if (i % 10 == 0) {
+        //hosts that are only equal once normalized.
+        documents[i] += " http://user:pw@HOST" + random.nextInt(50) + ".org:8080/c, m\u00fcnchen.de/x,"
+            + " XN--MNCHEN-3YA.DE and http://[::1]:90/ or 0x7f.1/";
+      }
+    }
+
+    Map<Long, TreeSet<Long>> expected = new TreeMap<Long, TreeSet<Long>>();
+    for (int i = 0; i < documents.length; i++) {
+      for (Url url : new UrlDetector(documents[i], UrlDetectorOptions.Default).detect()) {
+        expected.computeIfAbsent(UrlPostingIndex.getKey(keyType, url), k -> new TreeSet<Long>()).add(documentIds[i]);
+      }
+    }
+
+    Path path = _tempDirectory.resolve("index");
+    try (UrlPostingIndexBuilder builder = new UrlPostingIndexBuilder(_tempDirectory, keyType, runSize)) {
+      builder.addDocuments(documentIds, documents, UrlDetectorOptions.Default);
+      assertTrue(runSize > 1000 || builder.getRunCount() > 1);
+      assertEquals(builder.write(path), expected.size());
+    }
+    try (Stream<Path> files = Files.list(_tempDirectory)) {
+      assertEquals(files.count(), 1);
+    }
+
+    UrlPostingIndex index = UrlPostingIndex.load(path, segmentShift);
+    assertEquals(index.getKeyType(), keyType);
+    assertEquals(index.getKeyCount(), expected.size());
+    for (Map.Entry<Long, TreeSet<Long>> entry : expected.entrySet()) {
+      long[] expectedIds = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+      assertArrayEquals(index.getDocumentIds(entry.getKey()), expectedIds);
+    }
+    for (int i = 0; i < 1000; i++) {
+      long key = random.nextLong();
+      if (!expected.containsKey(key)) {
+        assertEquals(index.getDocumentIds(key).length, 0);
+      }
+    }
+  }
+
+  @Test
+  void testLookupByUrl() throws IOException {
+    Path path = _tempDirectory.resolve("index");
+    try (UrlPostingIndexBuilder builder = new UrlPostingIndexBuilder(_tempDirectory, KeyType.HOST)) {
+      builder.add(7, Url.create("http://www.linkedin.com/in/someone"));
+      builder.add(3, Url.create("WWW.LinkedIn.com/feed"));
+      builder.add(7, Url.create("https://www.linkedin.com/"));
+      builder.add(Long.MIN_VALUE, Url.create("http://www.linkedin.com/"));
+      builder.add(5, Url.create("http://google.com/"));
+      assertEquals(builder.write(path), 2);
+      assertThrows(IllegalStateException.class, () -> builder.add(1, Url.create("http://google.com/")));
+    }
+
+    UrlPostingIndex index = UrlPostingIndex.load(path);
+    assertArrayEquals(index.getDocumentIds(Url.create("www.linkedin.com")), new long[] {Long.MIN_VALUE, 3, 7});
+    assertArrayEquals(index.getDocumentIds(Url.create("http://google.com/x")), new long[] {5});
+    assertArrayEquals(index.getDocumentIds(Url.create("linkedin.com")), new long[0]);
+  }
+
+  @Test
+  void testEmptyAndInvalid() throws IOException {
+    Path path = _tempDirectory.resolve("index");
+    try (UrlPostingIndexBuilder builder = new UrlPostingIndexBuilder(_tempDirectory, KeyType.URL)) {
+      assertEquals(builder.write(path), 0);
+    }
+    UrlPostingIndex index = UrlPostingIndex.load(path);
+    assertEquals(index.getKeyCount(), 0);
+    assertEquals(index.getDocumentIds(0).length, 0);
+
+    Path invalid = _tempDirectory.resolve("invalid");
+    Files.write(invalid, new byte[64]);
+    assertThrows(IllegalArgumentException.class, () -> UrlPostingIndex.load(invalid));
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(invalid, Arrays.copyOf(bytes, bytes.length + 1));
+    assertThrows(IllegalArgumentException.class, () -> UrlPostingIndex.load(invalid));
+  }
+
+  @Test
+  void testKeysOfTheSameUrl() throws MalformedURLException {
+    assertEquals(UrlPostingIndex.getKey(KeyType.URL, Url.create("http://www.Google.com/a/../b#x")),
+        UrlPostingIndex.getKey(KeyType.URL, NormalizedUrl.create("http://www.google.com/b")));
+    assertEquals(UrlPostingIndex.getKey(KeyType.HOST, Url.create("http://www.Google.com/a")),
+        UrlPostingIndex.getKey(KeyType.HOST, Url.create("https://www.google.com:8080/b")));
+  }
+}
@@ -11,6 +11,7 @@ package com.linkedin.urls;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
@@ -51,6 +52,14 @@ class TestUrlUtil {
     assertEquals(UrlUtil.encode(input), expectedEncodedString);
   }
 
+  @Test
+  void testRemoveSpecialSpaces() {
+    assertEquals(UrlUtil.removeSpecialSpaces("http://www.google.com/foo\tbar\rbaz\n2"), "http://www.google.com/foobarbaz2");
+    assertEquals(UrlUtil.removeSpecialSpaces("a\t\t\n\nb\r\n"), "ab");
+    assertEquals(UrlUtil.removeSpecialSpaces("  "), "");
+    assertEquals(UrlUtil.removeSpecialSpaces("abc"), "abc");
+  }
+
   @ParameterizedTest
   @CsvSource({
     ".s..ales.....com, s.ales.com",
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlPart;
+
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.api.Test;
+
+
+class TestDetectionResult {
+
+  @ParameterizedTest
+  @CsvSource({
+    "'see http://www.google.com/a?b#c now', http://www.google.com/a?b#c, 4",
+    "'user:pass@linkedin.com:80/x', user:pass@linkedin.com:80/x, 0",
+    "'go to x.com:abc', x.com, 6",
+    "'asdf%asdf.google.com', asdfasdf.google.com, -1"
+  })
+  void testSameAsDetector(String content, String originalUrl, int start) {
+    DetectionResult result = DetectionResult.detect(content, UrlDetectorOptions.Default);
+    List<Url> urls = new UrlDetector(content, UrlDetectorOptions.Default).detect();
+    assertEquals(result.size(), 1);
+    assertEquals(result.getStart(0), start);
+    assertEquals(result.getEnd(0), start == -1 ? -1 : start + originalUrl.length());
+    assertEquals(result.getOriginalUrl(0), originalUrl);
+
+    Url url = result.getUrl(0);
+    assertEquals(url.getOriginalUrl(), urls.get(0).getOriginalUrl());
+    assertEquals(url.getFullUrl(), urls.get(0).getFullUrl());
+    assertEquals(url.getHost(), urls.get(0).getHost());
+  }
+
+  @Test
+  void testPartIndices() {
+    DetectionResult result =
+        DetectionResult.detect("a https://user@google.com/h?hello=w#abc b", UrlDetectorOptions.Default);
+    assertEquals(result.indexOf(0, UrlPart.SCHEME), 0);
+    assertEquals(result.indexOf(0, UrlPart.USERNAME_PASSWORD), 8);
+    assertEquals(result.indexOf(0, UrlPart.HOST), 13);
+    assertEquals(result.indexOf(0, UrlPart.PORT), -1);
+    assertEquals(result.indexOf(0, UrlPart.PATH), 23);
+    assertEquals(result.indexOf(0, UrlPart.QUERY), 25);
+    assertEquals(result.indexOf(0, UrlPart.FRAGMENT), 33);
+    assertThrows(IndexOutOfBoundsException.class, () -> result.getStart(1));
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.linkedin.urls.NormalizedUrl;
+import com.linkedin.urls.Url;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+class TestDistinctUrls {
+
+  @Test
+  void testRawDistinct() {
+    String content = "a http://x.com/a b www.y.com c http://x.com/a d HTTP://X.com/a e http://x.com/a";
+    DistinctUrls distinctUrls = new UrlDetector(content, UrlDetectorOptions.Default).detectDistinct(false);
+    assertEquals(distinctUrls.size(), 3);
+    assertEquals(distinctUrls.getUrl(0).getOriginalUrl(), "http://x.com/a");
+    assertEquals(distinctUrls.getCount(0), 3);
+    assertEquals(distinctUrls.getStart(0, 0), 2);
+    assertEquals(distinctUrls.getEnd(0, 0), 16);
+    assertEquals(distinctUrls.getStart(0, 1), content.indexOf("http://x.com/a", 3));
+    assertEquals(distinctUrls.getStart(0, 2), content.lastIndexOf("http://x.com/a"));
+    assertEquals(distinctUrls.getUrl(1).getOriginalUrl(), "www.y.com");
+    assertEquals(distinctUrls.getCount(1), 1);
+    assertEquals(distinctUrls.getUrl(2).getOriginalUrl(), "HTTP://X.com/a");
+    assertEquals(distinctUrls.getCount(2), 1);
+    assertThrows(IndexOutOfBoundsException.class, () -> distinctUrls.getStart(1, 1));
+  }
+
+  @Test
+  void testNormalizedDistinct() {
+    String content = "http://x.com/a/../b http://X.COM/b http://x.com/b http://x.com/c http://x.com/a/../b";
+    DistinctUrls distinctUrls = new UrlDetector(content, UrlDetectorOptions.Default).detectDistinct(true);
+    assertTrue(distinctUrls.isNormalized());
+    assertEquals(distinctUrls.size(), 2);
+    assertTrue(distinctUrls.getUrl(0) instanceof NormalizedUrl);
+    assertEquals(distinctUrls.getUrl(0).getFullUrl(), "http://x.com/b");
+    assertEquals(distinctUrls.getCount(0), 4);
+    assertEquals(distinctUrls.getStart(0, 1), content.indexOf("http://X.COM/b"));
+    assertEquals(distinctUrls.getStart(0, 3), content.lastIndexOf("http://x.com/a/../b"));
+    assertEquals(distinctUrls.getUrl(1).getFullUrl(), "http://x.com/c");
+    assertEquals(distinctUrls.getCount(1), 1);
+  }
+
+  @Test
+  void testSameAsDetect() {
+    Random random = new Random(7);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      content.append(" see http://host").append(random.nextInt(50)).append(".com/").append(random.nextInt(5));
+    }
+    List<Url> urls = new UrlDetector(content.toString(), UrlDetectorOptions.Default).detect();
+    Map<String, List<Integer>> expected = new LinkedHashMap<String, List<Integer>>();
+    int position = 0;
+    for (Url url : urls) {
+      position = content.indexOf(url.getOriginalUrl(), position);
+      expected.computeIfAbsent(url.getOriginalUrl(), key -> new ArrayList<Integer>()).add(position);
+      position++;
+    }
+
+    DistinctUrls distinctUrls = new UrlDetector(content.toString(), UrlDetectorOptions.Default).detectDistinct(false);
+    assertEquals(distinctUrls.size(), expected.size());
+    int index = 0;
+    for (Map.Entry<String, List<Integer>> entry : expected.entrySet()) {
+      assertEquals(distinctUrls.getUrl(index).getOriginalUrl(), entry.getKey());
+      assertEquals(distinctUrls.getCount(index), entry.getValue().size());
+      for (int i = 0; i < entry.getValue().size(); i++) {
+        assertEquals(distinctUrls.getStart(index, i), (int) entry.getValue().get(i));
+      }
+      index++;
+    }
+  }
+}
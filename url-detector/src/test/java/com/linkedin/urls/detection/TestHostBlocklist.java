@@ -0,0 +1,114 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.linkedin.urls.Url;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestHostBlocklist {
+
+  private static final HostBlocklist BLOCKLIST =
+      HostBlocklist.create(Arrays.asList("evil.com", "*.bad.co.uk", "phish.example.org.", "10.0.0.1", "", "*."));
+
+  @ParameterizedTest
+  @CsvSource({
+    "evil.com, 0",
+    "EVIL.COM, 0",
+    "www.evil.com, 4",
+    "a.b.evil.com., 4",
+    "notevil.com, -1",
+    "evil.com.au, -1",
+    "bad.co.uk, 0",
+    "x.bad.co.uk, 2",
+    "co.uk, -1",
+    "phish.example.org, 0",
+    "example.org, -1",
+    "10.0.0.1, 0",
+    "110.0.0.1, -1",
+    "'', -1"
+  })
+  void testFindMatch(String host, int expected) {
+    assertEquals(BLOCKLIST.findMatch(host, 0, host.length()), expected);
+    assertEquals(BLOCKLIST.matches(host), expected != -1);
+  }
+
+  @Test
+  void testSize() {
+    assertEquals(BLOCKLIST.size(), 4);
+    assertEquals(HostBlocklist.create(Arrays.asList("a.com", "A.COM", "*.a.com")).size(), 1);
+  }
+
+  @Test
+  void testManyEntries() {
+    List<String> entries = new ArrayList<String>();
+    for (int i = 0; i < 100000; i++) {
+      entries.add("host" + i + ".com");
+    }
+    HostBlocklist blocklist = HostBlocklist.create(entries);
+    assertEquals(blocklist.size(), entries.size());
+    for (int i = 0; i < 100000; i++) {
+      assertTrue(blocklist.matches("www.host" + i + ".com"));
+      assertFalse(blocklist.matches("host" + i + ".org"));
+    }
+  }
+
+  @Test
+  void testDetector() {
+    String text = "go to google.com, then http://www.evil.com/path?q=1 or x.bad.co.uk/page and yahoo.com";
+    AtomicReference<HostBlocklist> reference = new AtomicReference<HostBlocklist>(BLOCKLIST);
+
+    List<String> blocked = new ArrayList<String>();
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.Default);
+    detector.setHostBlocklist(reference, false, false);
+    detector.detect((urlMarker, start, end) -> {
+      if (detector.isBlocked()) {
+        blocked.add(urlMarker.createUrl().getHost());
+      }
+      return true;
+    });
+    assertEquals(blocked, Arrays.asList("www.evil.com", "x.bad.co.uk"));
+
+    assertEquals(detect(text, reference, false, false),
+        Arrays.asList("google.com", "http://www.evil.com/path?q=1", "x.bad.co.uk/page", "yahoo.com"));
+    assertEquals(detect(text, reference, true, false),
+        Arrays.asList("http://www.evil.com/path?q=1", "x.bad.co.uk/page"));
+    assertEquals(detect(text, reference, true, true), Arrays.asList("http://www.evil.com/path?q=1"));
+    assertEquals(detect(text, reference, false, true), Arrays.asList("google.com", "http://www.evil.com/path?q=1"));
+
+    //a new blocklist is used by the next detection.
+    reference.set(HostBlocklist.create(Arrays.asList("yahoo.com")));
+    assertEquals(detect(text, reference, true, false), Arrays.asList("yahoo.com"));
+    reference.set(null);
+    assertEquals(detect(text, reference, true, false), Arrays.asList());
+  }
+
+  private static List<String> detect(String text, AtomicReference<HostBlocklist> reference, boolean blockedOnly,
+      boolean stopAtFirstBlocked) {
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.Default);
+    detector.setHostBlocklist(reference, blockedOnly, stopAtFirstBlocked);
+    List<String> urls = new ArrayList<String>();
+    for (Url url : detector.detect()) {
+      urls.add(url.getOriginalUrl());
+    }
+    return urls;
+  }
+}
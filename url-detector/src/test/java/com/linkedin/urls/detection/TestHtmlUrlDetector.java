@@ -0,0 +1,116 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestHtmlUrlDetector {
+
+  private static final String EMAIL = "<!DOCTYPE html><html><head><title>Hi</title>"
+      + "<style>@import \"http://style.com/a.css\";</style>"
+      + "<script type=\"text/javascript\">var u = 'http://script.com/x';</script></head>"
+      + "<body class=\"foo.bar\"><!-- http://comment.com/ -->"
+      + "<p>Read <a href=\"https://www.linkedin.com/feed?a=1&amp;b=2\" title='see linkedin.com'>this</a>"
+      + " or go to www.google.com&#47;search?q=x&amp;y=1&nbsp;now.</p>"
+      + "<img src=http://img.com/i.png alt=\"\"></body></html>";
+
+  @Test
+  void testDecodedUrls() {
+    assertEquals(detect(EMAIL, true), Arrays.asList("https://www.linkedin.com/feed?a=1&b=2", "linkedin.com",
+        "www.google.com/search?q=x&y=1", "http://img.com/i.png"));
+  }
+
+  @Test
+  void testScriptAndStyle() {
+    assertEquals(detect(EMAIL, false), Arrays.asList("http://style.com/a.css", "http://script.com/x",
+        "https://www.linkedin.com/feed?a=1&b=2", "linkedin.com", "www.google.com/search?q=x&y=1",
+        "http://img.com/i.png"));
+  }
+
+  @Test
+  void testOffsetsInMarkup() {
+    final List<String> spans = new ArrayList<String>();
+    new HtmlUrlDetector(EMAIL, UrlDetectorOptions.Default).detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        spans.add(EMAIL.substring(start, end));
+        return true;
+      }
+    });
+    assertEquals(spans, Arrays.asList("https://www.linkedin.com/feed?a=1&amp;b=2", "linkedin.com",
+        "www.google.com&#47;search?q=x&amp;y=1", "http://img.com/i.png"));
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "'a &lt;b.com&gt; c',                         'a <b.com> c '",
+    "'&#x1F600;x &#0; &bogus; &amp',              '😀x &#0; &bogus; &amp '",
+    "'1 < 2 <b>x</b>',                            '1  < 2  x '",
+    "'<a href=\"x\"/><br/><![CDATA[a.com]]>',     'x a.com '"
+  })
+  void testText(String markup, String text) {
+    assertEquals(new HtmlUrlDetector(markup, UrlDetectorOptions.Default).getText(), text);
+  }
+
+  @Test
+  void testUnclosedMarkup() {
+    assertEquals(detect("<a href=\"http://a.com/x", true), Arrays.asList("http://a.com/x"));
+    assertEquals(detect("text <!-- b.com", true), Arrays.asList());
+    assertEquals(detect("<script>c.com", true), Arrays.asList());
+    assertEquals(detect("<script>c.com", false), Arrays.asList("c.com"));
+  }
+
+  @Test
+  void testTurkishLocale() {
+    Locale locale = Locale.getDefault();
+    try {
+      //the default locale would lowercase SCRIPT and TITLE with a dotless i.
+      Locale.setDefault(new Locale("tr"));
+      assertEquals(detect("<SCRIPT>c.com</SCRIPT><A TITLE=\"d.com\" CLASS=\"e.com\">x</A>", true),
+          Arrays.asList("d.com"));
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  @Test
+  void testMaxUrlsAcrossRuns() {
+    HtmlUrlDetector detector = new HtmlUrlDetector(EMAIL, UrlDetectorOptions.Default);
+    detector.setMaxUrlsPerDocument(2);
+    List<String> found = new ArrayList<String>();
+    for (Url url : detector.detect()) {
+      found.add(url.getOriginalUrl());
+    }
+    assertEquals(found, Arrays.asList("https://www.linkedin.com/feed?a=1&b=2", "linkedin.com"));
+    //the limit counts from the start of each detection.
+    assertEquals(detector.detect().size(), 2);
+  }
+
+  private static List<String> detect(String markup, boolean skipScriptAndStyle) {
+    List<String> found = new ArrayList<String>();
+    for (Url url : new HtmlUrlDetector(markup, UrlDetectorOptions.HTML, skipScriptAndStyle).detect()) {
+      found.add(url.getOriginalUrl());
+    }
+    return found;
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestJsonUrlDetector {
+
+  private static final String EVENT = "{\"type\": \"share\", \"www.key.com\": 1.5, \"actor\": {\"name\": \"a.b\"},"
+      + " \"events\": [{\"url\": \"http:\\/\\/www.linkedin.com\\/feed?a=1\\u0026b=2\", \"count\": 3},"
+      + " {\"url\": \"see google.com now\", \"tags\": [\"x\", \"y.com\"]}],"
+      + " \"odd key\": \"http://odd.com/\", \"it's\": {\"\\\"q\\\"\": [[\"q.com\"]]}}";
+
+  @Test
+  void testStringValues() {
+    List<String> found = new ArrayList<String>();
+    for (Url url : new JsonUrlDetector(EVENT, UrlDetectorOptions.Default).detect()) {
+      found.add(url.getOriginalUrl());
+    }
+    assertEquals(found, Arrays.asList("http://www.linkedin.com/feed?a=1&b=2", "google.com", "y.com", "http://odd.com/",
+        "q.com"));
+  }
+
+  @Test
+  void testPathsAndOffsets() {
+    assertEquals(detect(EVENT, null), Arrays.asList(
+        "$.events[0].url http:\\/\\/www.linkedin.com\\/feed?a=1\\u0026b=2",
+        "$.events[1].url google.com",
+        "$.events[1].tags[1] y.com",
+        "$['odd key'] http://odd.com/",
+        "$['it\\'s']['\"q\"'][0][0] q.com"));
+  }
+
+  @Test
+  void testSelectedPaths() {
+    assertEquals(detect(EVENT, Arrays.asList("$.events[*].url", "$['it\\'s']")), Arrays.asList(
+        "$.events[0].url http:\\/\\/www.linkedin.com\\/feed?a=1\\u0026b=2",
+        "$.events[1].url google.com",
+        "$['it\\'s']['\"q\"'][0][0] q.com"));
+    assertEquals(detect(EVENT, Arrays.asList("$.events")).size(), 3);
+    assertEquals(detect(EVENT, Arrays.asList("$.type", "$.missing[*]")).size(), 0);
+    assertEquals(detect("\"top.com\"", Arrays.asList("$")), Arrays.asList("$ top.com"));
+  }
+
+  @Test
+  void testSelectedPathThroughString() {
+    String json = "{\"a\": \"a.com\", \"list\": [\"b.com\", {\"b\": \"c.com\"}], \"c\": {\"b\": \"d.com\"}}";
+    assertEquals(detect(json, Arrays.asList("$.a.b", "$.list[*].b", "$.c")), Arrays.asList("$.list[1].b c.com",
+        "$.c.b d.com"));
+    assertEquals(detect("\"e.com\"", Arrays.asList("$.a")), Arrays.asList());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"events", "$events", "$.", "$.a[0]", "$['a"})
+  void testInvalidPaths(String path) {
+    assertThrows(IllegalArgumentException.class,
+        () -> new JsonUrlDetector(EVENT, UrlDetectorOptions.Default, Arrays.asList(path)));
+  }
+
+  @Test
+  void testStop() {
+    final List<String> found = new ArrayList<String>();
+    new JsonUrlDetector(EVENT, UrlDetectorOptions.Default).detect(new JsonUrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, String path, int start, int end) {
+        found.add(urlMarker.getOriginalUrl());
+        return found.size() < 2;
+      }
+    });
+    assertEquals(found, Arrays.asList("http://www.linkedin.com/feed?a=1&b=2", "google.com"));
+  }
+
+  @Test
+  void testInvalidJson() {
+    assertEquals(detect("[\"a.com\", \"b.com", null), Arrays.asList("$[0] a.com", "$[1] b.com"));
+    assertEquals(detect("]} {\"k\": \"c.com\\", null), Arrays.asList("$.k c.com"));
+    assertEquals(detect("{\"k\" \"d.com\"}", null), Arrays.asList("$.k d.com"));
+    assertEquals(detect("\"bad \\u12 e.com\"", null), Arrays.asList("$ e.com"));
+  }
+
+  /**
+   * @return The path of each url, followed by the range of the json it was read from.
+   */
+  private static List<String> detect(final String json, List<String> paths) {
+    final List<String> found = new ArrayList<String>();
+    new JsonUrlDetector(json, UrlDetectorOptions.Default, paths).detect(new JsonUrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, String path, int start, int end) {
+        found.add(path + " " + json.substring(start, end));
+        return true;
+      }
+    });
+    return found;
+  }
+}
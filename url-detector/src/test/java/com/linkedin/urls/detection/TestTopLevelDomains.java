@@ -0,0 +1,48 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+
+class TestTopLevelDomains {
+
+  @ParameterizedTest
+  @CsvSource({
+    "com, true",
+    "COM, true",
+    "uk, true",
+    "io, true",
+    "xn--fiqs8s, true",
+    "中国, true",
+    "txt, false",
+    "method, false",
+    "exe, false",
+    "c, false",
+    "co.uk, false"
+  })
+  void testContains(String domain, boolean expected) {
+    assertEquals(TopLevelDomains.getInstance().contains(domain, 0, domain.length()), expected);
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "www.linkedin.com, 13, 16, true",
+    "www.linkedin.com, 12, 16, false",
+    "www.linkedin.com, 4, 12, false",
+    "www.linkedin.com, 16, 16, false"
+  })
+  void testContainsRange(String text, int start, int end, boolean expected) {
+    assertEquals(TopLevelDomains.getInstance().contains(new StringBuilder(text), start, end), expected);
+  }
+}
@@ -14,7 +14,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.params.provider.Arguments.arguments;
 
 import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlMarker;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
@@ -369,6 +371,22 @@ class TestUriDetection {
         "%77%77%77%2e%67%75%6d%62%6c%61%72%2e%63%6e%2e");
   }
 
+  @Test
+  void testStrictTopLevelDomain() {
+    runTest("see readme.txt or file.exe, and call obj.method()", UrlDetectorOptions.STRICT_TLD);
+    runTest("see readme.txt at linkedin.com", UrlDetectorOptions.STRICT_TLD, "linkedin.com");
+    runTest("www.linkedin.COM/in/someone", UrlDetectorOptions.STRICT_TLD, "www.linkedin.COM/in/someone");
+    runTest("http://www.bbc.co.uk. is news", UrlDetectorOptions.STRICT_TLD, "http://www.bbc.co.uk.");
+    runTest("%77%77%77%2e%67%75%6d%62%6c%61%72%2e%63%6e%2e", UrlDetectorOptions.STRICT_TLD,
+        "%77%77%77%2e%67%75%6d%62%6c%61%72%2e%63%6e%2e");
+    runTest("http://例子.xn--fiqs8s/ and http://例子.中国/", UrlDetectorOptions.STRICT_TLD, "http://例子.xn--fiqs8s/",
+        "http://例子.中国/");
+    runTest("http://example.xn--zzzzz/", UrlDetectorOptions.STRICT_TLD);
+    runTest("http://192.168.1.1/ and http://[::1]/", UrlDetectorOptions.STRICT_TLD, "http://192.168.1.1/",
+        "http://[::1]/");
+    runTest("readme.txt", UrlDetectorOptions.Default, "readme.txt");
+  }
+
   @Test
   void testSingleLevelDomain() {
     runTest("localhost:9000/lalala hehe", UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN, "localhost:9000/lalala");
@@ -772,6 +790,174 @@ class TestUriDetection {
     }
   }
 
+  @Test
+  void testUrlHandlerSpans() {
+    final String text = "see \"http://linkedin.com/abc\" and (www.google.com) or x.com:hello.world";
+    final List<String> spans = new ArrayList<String>();
+    new UrlDetector(text, UrlDetectorOptions.JSON).detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        assertEquals(text.substring(start, end), urlMarker.getOriginalUrl());
+        spans.add(start + "-" + end);
+        return true;
+      }
+    });
+    assertEquals(spans, Arrays.asList("5-28", "35-49", "54-59", "60-71"));
+  }
+
+  @Test
+  void testUrlHandlerStop() {
+    final List<String> found = new ArrayList<String>();
+    new UrlDetector("a.com b.com c.com", UrlDetectorOptions.Default).detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        found.add(urlMarker.getOriginalUrl());
+        return found.size() < 2;
+      }
+    });
+    assertEquals(found, Arrays.asList("a.com", "b.com"));
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "true,  'see http://a.com/abcdefghijklmnop and b.com/x',  'http://a.com/abcdefg,b.com/x'",
+    "false, 'see http://a.com/abcdefghijklmnop and b.com/x',  b.com/x",
+    "true,  'a.com?abcdefghijklmnopqrstuvwxyz.c.d b.com',       'a.com?abcdefghijklmn,b.com'",
+    "true,  'a.com#abcdefghijklmnopqrstuvwxyz.c.d b.com',       'a.com#abcdefghijklmn,b.com'",
+    "false, 'a.com:12345678901234567890123 b.com',              b.com",
+    "false, 'xxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxxx.com b.com', b.com",
+    "true,  'http://www.averyveryverylonghost.com b.com',       b.com",
+    "true,  'short.com/ok',                                     short.com/ok"
+  })
+  void testMaxUrlLength(boolean truncate, String text, String expected) {
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.Default);
+    detector.setMaxUrlLength(20, truncate);
+    List<String> found = new ArrayList<String>();
+    for (Url url : detector.detect()) {
+      found.add(url.getOriginalUrl());
+    }
+    assertEquals(found, Arrays.asList(expected.split(",")));
+  }
+
+  /**
+   * A url that is dropped for its length is skipped as a whole, so the limit never makes the detector read it again
+   * from inside and find urls that it doesn't find without the limit.
+   */
+  @ParameterizedTest
+  @CsvSource({
+    "12, '{https://.:9-.com=::8080user:pw@google:8080:8080 b.com'",
+    "21, '8080http://9-user[@user.com#/// b.com'",
+    "11, ': /=[a%3a@9-.com b.com'"
+  })
+  void testMaxUrlLengthFindsNoNewUrls(int maxUrlLength, String text) {
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.Default);
+    detector.setMaxUrlLength(maxUrlLength, false);
+    List<Url> found = detector.detect();
+    assertEquals(found.size(), 1);
+    assertEquals(found.get(0).getOriginalUrl(), "b.com");
+  }
+
+  @Test
+  void testMaxUrlLengthKeepsSpans() {
+    final String text = "go to http://www.linkedin.com/aaaaaaaaaaaaaaaaaaaa now";
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.Default);
+    detector.setMaxUrlLength(30, true);
+    final List<String> found = new ArrayList<String>();
+    detector.detect(new UrlHandler() {
+      @Override
+      public boolean handleUrl(UrlMarker urlMarker, int start, int end) {
+        assertEquals(text.substring(start, end), urlMarker.getOriginalUrl());
+        found.add(urlMarker.getOriginalUrl());
+        return true;
+      }
+    });
+    assertEquals(found, Arrays.asList("http://www.linkedin.com/aaaaaa"));
+  }
+
+  @Test
+  void testMaxUrlLengthOnLongToken() {
+    StringBuilder text = new StringBuilder("http://a.com/");
+    for (int i = 0; i < 100000; i++) {
+      text.append("QUJD.RE/+");
+    }
+    text.append(" b.com");
+    UrlDetector detector = new UrlDetector(text.toString(), UrlDetectorOptions.Default);
+    detector.setMaxUrlLength(2048, false);
+    List<Url> found = detector.detect();
+    assertEquals(found.size(), 1);
+    assertEquals(found.get(0).getOriginalUrl(), "b.com");
+  }
+
+  @Test
+  void testMaxUrlsPerDocument() {
+    UrlDetector detector = new UrlDetector("a.com b.com c.com d.com", UrlDetectorOptions.Default);
+    detector.setMaxUrlsPerDocument(2);
+    List<Url> found = detector.detect();
+    assertEquals(found.size(), 2);
+    assertEquals(found.get(1).getOriginalUrl(), "b.com");
+
+    detector = new UrlDetector("a.com b.com a.com c.com", UrlDetectorOptions.Default);
+    detector.setMaxUrlsPerDocument(3);
+    assertEquals(detector.detectDistinct(false).size(), 2);
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "'<img src=\"data:image/png;base64,iVBORw0KGgo/AAA+ANSU.hEUg==\"> linkedin.com', 'linkedin.com'",
+    "'url(data:text/plain;x.com,hello.com) and www.google.com',                 'www.google.com'",
+    "'metadata:x.com',                                                          'x.com'",
+    "'Data: see x.com',                                                         'x.com'"
+  })
+  void testDataUriSkipped(String text, String expected) {
+    runTest(text, UrlDetectorOptions.HTML, expected);
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "'http://data:pw@host.com/',            'http://data:pw@host.com/'",
+    "'data:secret@linkedin.com/x',          'data:secret@linkedin.com/x'",
+    "'login data:pass@www.example.com',     'data:pass@www.example.com'",
+    "'Data:x.com/a',                        'x.com/a'"
+  })
+  void testDataWordNotDataUri(String text, String expected) {
+    runTest(text, UrlDetectorOptions.Default, expected);
+    runTest(text, UrlDetectorOptions.HTML, expected);
+  }
+
+  @Test
+  void testDataUriReported() {
+    String text = "<img src=\"DATA:image/gif;base64,R0lGOD//lhAQABAIAAAA.AAAP//=\"> x.com";
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.HTML);
+    detector.setReportDataUris(true);
+    List<Url> found = detector.detect();
+    assertEquals(found.size(), 2);
+    Url dataUri = found.get(0);
+    assertEquals(dataUri.getOriginalUrl(), "DATA:image/gif;base64,R0lGOD//lhAQABAIAAAA.AAAP//=");
+    assertEquals(dataUri.isOpaque(), true);
+    assertEquals(dataUri.getScheme(), "DATA");
+    assertEquals(dataUri.getHost(), null);
+    assertEquals(dataUri.getPath(), "image/gif;base64,R0lGOD//lhAQABAIAAAA.AAAP//=");
+    assertEquals(dataUri.normalize().getFullUrl(), dataUri.getOriginalUrl());
+    assertEquals(found.get(1).getOriginalUrl(), "x.com");
+    assertEquals(found.get(1).isOpaque(), false);
+  }
+
+  @ParameterizedTest
+  @CsvSource({"false, //x.com/a", "true, www.google.com"})
+  void testSkipBase64Runs(boolean skipBase64Runs, String expected) {
+    StringBuilder blob = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      blob.append("QUJD//RE+");
+    }
+    //the end of the blob looks like a url, which is only found if the blob isn't skipped.
+    String text = "\"" + blob + "//x.com/a\" and \"" + blob + "\"" + (skipBase64Runs ? " www.google.com" : "");
+    UrlDetector detector = new UrlDetector(text, UrlDetectorOptions.JSON);
+    detector.setSkipBase64Runs(skipBase64Runs);
+    List<Url> found = detector.detect();
+    assertEquals(found.size(), 1);
+    assertEquals(found.get(0).getOriginalUrl(), expected);
+  }
+
   private void runTest(String text, UrlDetectorOptions options, String... expected) {
     //do the detection
     UrlDetector parser = new UrlDetector(text, options);
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.linkedin.urls.Url;
+import com.linkedin.urls.UrlPart;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+
+class TestUrlBatch {
+
+  private static final String[] DOCUMENTS = {
+    "see http://www.google.com/a?b#c now and https://user@linkedin.com:90/x",
+    "nothing here",
+    "asdf%asdf.google.com and bob.com/x?y",
+    "go to x.com:abc"
+  };
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void testSameAsDetector(boolean keepText) {
+    UrlBatch batch = new UrlBatch(keepText);
+    for (int i = 0; i < DOCUMENTS.length; i++) {
+      batch.detect(100 + i, DOCUMENTS[i], UrlDetectorOptions.Default);
+    }
+
+    int index = 0;
+    for (int i = 0; i < DOCUMENTS.length; i++) {
+      List<Url> urls = new UrlDetector(DOCUMENTS[i], UrlDetectorOptions.Default).detect();
+      for (Url url : urls) {
+        assertEquals(batch.getDocumentId(index), 100 + i);
+        assertEquals(batch.getLength(index), url.getOriginalUrl().length());
+        String document = batch.getTextStart(index) == -1 ? DOCUMENTS[i] : null;
+        assertEquals(batch.getOriginalUrl(index, document), url.getOriginalUrl());
+        assertEquals(batch.getUrl(index, DOCUMENTS[i]).getFullUrl(), url.getFullUrl());
+        assertEquals(batch.getHost(index, document), url.getHost());
+        if (batch.getStart(index) != -1) {
+          assertEquals(DOCUMENTS[i].substring(batch.getStart(index), batch.getEnd(index)), url.getOriginalUrl());
+        }
+        if (keepText || batch.getStart(index) == -1) {
+          assertEquals(new String(batch.getText(), batch.getTextStart(index), batch.getLength(index)),
+              url.getOriginalUrl());
+        }
+        index++;
+      }
+    }
+    assertEquals(batch.size(), index);
+  }
+
+  @Test
+  void testPartIndices() {
+    UrlBatch batch = new UrlBatch();
+    batch.detect(7, "a https://user@google.com/h?hello=w#abc b", UrlDetectorOptions.Default);
+    assertEquals(batch.size(), 1);
+    assertEquals(batch.getStart(0), 2);
+    assertEquals(batch.getTextStart(0), -1);
+    assertEquals(batch.indexOf(0, UrlPart.SCHEME), 0);
+    assertEquals(batch.indexOf(0, UrlPart.HOST), 13);
+    assertEquals(batch.indexOf(0, UrlPart.PORT), -1);
+    assertEquals(batch.indexOf(0, UrlPart.FRAGMENT), 33);
+    assertThrows(IllegalArgumentException.class, () -> batch.getOriginalUrl(0, null));
+    assertThrows(IndexOutOfBoundsException.class, () -> batch.getStart(1));
+  }
+
+  @Test
+  void testGrowAndClear() {
+    UrlBatch batch = new UrlBatch(true);
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      content.append("www.host").append(i).append(".com ");
+    }
+    batch.detect(1, content.toString(), UrlDetectorOptions.Default);
+    assertEquals(batch.size(), 1000);
+    assertEquals(batch.getOriginalUrl(999, null), "www.host999.com");
+
+    batch.clear();
+    assertEquals(batch.size(), 0);
+    batch.detect(2, "linkedin.com", UrlDetectorOptions.Default);
+    assertEquals(batch.size(), 1);
+    assertEquals(batch.getDocumentId(0), 2);
+    assertEquals(batch.getTextStart(0), 0);
+    assertEquals(batch.getOriginalUrl(0, null), "linkedin.com");
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015 LinkedIn Corp. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ */
+package com.linkedin.urls.detection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+
+class TestUrlDetectionCache {
+  private static final String CONTENT = "buy now at http://spam.example.com/deal?id=1 or www.spam.example.org";
+
+  @Test
+  void testHit() {
+    UrlDetectionCache cache = new UrlDetectionCache(10, 1 << 20, 1000);
+    DetectionResult first = cache.detect(CONTENT, UrlDetectorOptions.Default);
+    DetectionResult second = cache.detect(new String(CONTENT), UrlDetectorOptions.Default);
+    assertSame(first, second);
+    assertSame(first.getUrls(), second.getUrls());
+    assertEquals(first.size(), 2);
+    assertEquals(first.getUrl(0).getHost(), "spam.example.com");
+    assertEquals(cache.getHitCount(), 1);
+    assertEquals(cache.getMissCount(), 1);
+  }
+
+  @Test
+  void testOptionsAreDifferentKeys() {
+    UrlDetectionCache cache = new UrlDetectionCache(10, 1 << 20, 1000);
+    DetectionResult result = cache.detect("go/home", UrlDetectorOptions.Default);
+    DetectionResult singleLevel = cache.detect("go/home", UrlDetectorOptions.ALLOW_SINGLE_LEVEL_DOMAIN);
+    assertNotSame(result, singleLevel);
+    assertEquals(result.size(), 0);
+    assertEquals(singleLevel.size(), 1);
+    assertEquals(cache.size(), 2);
+  }
+
+  @Test
+  void testLongContentIsNotCached() {
+    UrlDetectionCache cache = new UrlDetectionCache(10, 1 << 20, 10);
+    DetectionResult first = cache.detect(CONTENT, UrlDetectorOptions.Default);
+    DetectionResult second = cache.detect(CONTENT, UrlDetectorOptions.Default);
+    assertNotSame(first, second);
+    assertEquals(second.size(), 2);
+    assertEquals(cache.size(), 0);
+    assertEquals(cache.getMissCount(), 0);
+  }
+
+  @Test
+  void testMaxEntries() {
+    UrlDetectionCache cache = new UrlDetectionCache(2, 1 << 20, 1000);
+    DetectionResult first = cache.detect("a.com", UrlDetectorOptions.Default);
+    cache.detect("b.com", UrlDetectorOptions.Default);
+    cache.detect("a.com", UrlDetectorOptions.Default);
+    cache.detect("c.com", UrlDetectorOptions.Default);
+    assertEquals(cache.size(), 2);
+    //b.com was the least recently used one.
+    assertSame(cache.detect("a.com", UrlDetectorOptions.Default), first);
+    assertEquals(cache.getMissCount(), 3);
+  }
+
+  @Test
+  void testMaxWeight() {
+    DetectionResult result = DetectionResult.detect(CONTENT, UrlDetectorOptions.Default);
+    UrlDetectionCache cache = new UrlDetectionCache(10, result.getWeight() * 2, 1000);
+    cache.detect(CONTENT, UrlDetectorOptions.Default);
+    cache.detect(CONTENT + " ", UrlDetectorOptions.Default);
+    cache.detect(CONTENT + "  ", UrlDetectorOptions.Default);
+    assertEquals(cache.size(), 1);
+    assertEquals(cache.getWeight(), DetectionResult.detect(CONTENT + "  ", UrlDetectorOptions.Default).getWeight());
+
+    UrlDetectionCache tinyCache = new UrlDetectionCache(10, 10, 1000);
+    tinyCache.detect(CONTENT, UrlDetectorOptions.Default);
+    assertEquals(tinyCache.size(), 0);
+  }
+}